@@ -2,6 +2,7 @@ package com.gshelgaas.bankcards;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Главный класс Spring Boot приложения.
@@ -9,6 +10,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  *
  * @author Георгий Шельгаас
  */
+@EnableScheduling
 @SpringBootApplication
 public class BankCardsApplication {
     public static void main(String[] args) {
@@ -0,0 +1,117 @@
+package com.gshelgaas.bankcards.config;
+
+import com.gshelgaas.bankcards.dto.TransferResponseDto;
+import com.gshelgaas.bankcards.repository.CardRepository;
+import com.gshelgaas.bankcards.security.AuthenticatedUser;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Конфигурация внутрипроцессных кешей приложения.
+ * Все кеши ограничены по размеру и времени жизни, а их статистика
+ * (попадания, промахи, вытеснения) публикуется в Micrometer.
+ *
+ * @author Георгий Шельгаас
+ */
+@Configuration
+public class CacheConfig {
+
+    /**
+     * Исполнитель загрузок асинхронных кешей: каждая загрузка выполняется в своем виртуальном потоке.
+     * Загрузчик ждет соединение и ответ базы данных вне блокировок кеша, а вызывающий поток
+     * ждет future и не закрепляет поток-носитель.
+     */
+    private static final Executor LOADER_EXECUTOR =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("cache-loader-", 0).factory());
+
+    /**
+     * Создает кеш результатов идемпотентных переводов.
+     * Ключ кеша: идентификатор пользователя, ключ идемпотентности и хеш параметров запроса.
+     *
+     * @param maxSize       максимальное количество записей (LRU-вытеснение)
+     * @param ttl           время жизни записи
+     * @param meterRegistry реестр метрик
+     * @return кеш ответов на переводы
+     */
+    @Bean
+    public Cache<String, TransferResponseDto> transferIdempotencyCache(
+            @Value("${transfer.idempotency.cache.max-size:10000}") long maxSize,
+            @Value("${transfer.idempotency.cache.ttl:PT10M}") Duration ttl,
+            MeterRegistry meterRegistry) {
+
+        Cache<String, TransferResponseDto> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "transferIdempotency");
+        return cache;
+    }
+
+    /**
+     * Создает кеш данных пользователей для аутентификации.
+     * Ключ кеша: email пользователя. Записи инвалидируются событием
+     * {@link com.gshelgaas.bankcards.service.UserChangedEvent} при создании, удалении
+     * и изменении пользователя; TTL ограничивает время жизни записи при изменениях в обход сервиса.
+     * Кеш асинхронный: промах загружается из базы данных на {@link #LOADER_EXECUTOR}.
+     *
+     * @param maxSize       максимальное количество записей (LRU-вытеснение)
+     * @param ttl           время жизни записи
+     * @param meterRegistry реестр метрик
+     * @return кеш principal пользователей
+     */
+    @Bean
+    public AsyncCache<String, AuthenticatedUser> userDetailsCache(
+            @Value("${user-details.cache.max-size:10000}") long maxSize,
+            @Value("${user-details.cache.ttl:PT5M}") Duration ttl,
+            MeterRegistry meterRegistry) {
+
+        AsyncCache<String, AuthenticatedUser> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .executor(LOADER_EXECUTOR)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDetails");
+        return cache;
+    }
+
+    /**
+     * Создает кеш балансов карт для частого опроса баланса клиентами.
+     * Ключ кеша: идентификатор карты; значение хранит и владельца, поэтому проверка прав
+     * выполняется и для закешированного баланса. Записи инвалидируются событием
+     * {@link com.gshelgaas.bankcards.service.CardBalanceChangedEvent} после фиксации переводов;
+     * короткий TTL ограничивает устаревание при изменениях в обход сервисов.
+     * Кеш асинхронный: промах загружается из базы данных на {@link #LOADER_EXECUTOR}.
+     *
+     * @param maxSize       максимальное количество записей (LRU-вытеснение)
+     * @param ttl           время жизни записи
+     * @param meterRegistry реестр метрик
+     * @return кеш балансов карт
+     */
+    @Bean
+    public AsyncCache<Long, CardRepository.BalanceView> cardBalanceCache(
+            @Value("${card.balance.cache.max-size:100000}") long maxSize,
+            @Value("${card.balance.cache.ttl:PT2S}") Duration ttl,
+            MeterRegistry meterRegistry) {
+
+        AsyncCache<Long, CardRepository.BalanceView> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .executor(LOADER_EXECUTOR)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "cardBalance");
+        return cache;
+    }
+}
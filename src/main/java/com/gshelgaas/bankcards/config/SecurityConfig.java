@@ -1,7 +1,13 @@
 package com.gshelgaas.bankcards.config;
 
+import com.gshelgaas.bankcards.security.BCryptStrengthCalibrator;
 import com.gshelgaas.bankcards.security.JwtAuthFilter;
+import com.gshelgaas.bankcards.security.LoginRateLimitFilter;
+import com.gshelgaas.bankcards.security.MeteredPasswordEncoder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpStatus;
@@ -13,6 +19,7 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -20,9 +27,11 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Конфигурация безопасности Spring Security.
@@ -35,11 +44,14 @@ import java.util.List;
 @RequiredArgsConstructor
 public class SecurityConfig {
 
+    private static final String BCRYPT_ID = "bcrypt";
+
     private final JwtAuthFilter jwtAuthFilter;
+    private final LoginRateLimitFilter loginRateLimitFilter;
 
     /**
      * Настраивает цепочку фильтров безопасности HTTP запросов.
-     * Включает CORS, JWT аутентификацию и ролевой доступ.
+     * Включает CORS, ограничение частоты попыток входа, JWT аутентификацию и ролевой доступ.
      *
      * @param http объект для настройки безопасности
      * @return сконфигурированная цепочка фильтров
@@ -54,6 +66,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/auth/**").permitAll()
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers("/admin/**").hasRole("ADMIN")
                         .requestMatchers("/user/**").hasAnyRole("USER", "ADMIN")
                         .anyRequest().authenticated()
@@ -70,6 +84,7 @@ public class SecurityConfig {
                             response.getWriter().write(createErrorJson("Access denied", HttpStatus.FORBIDDEN));
                         })
                 )
+                .addFilterBefore(loginRateLimitFilter, UsernamePasswordAuthenticationFilter.class)
                 .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
@@ -120,13 +135,39 @@ public class SecurityConfig {
     }
 
     /**
-     * Создает кодировщик паролей BCrypt.
+     * Создает кодировщик паролей.
+     * Новые хеши создаются BCrypt с префиксом {bcrypt}; хеши без префикса, сохраненные ранее,
+     * проверяются BCrypt. Стоимость BCrypt задается явно или подбирается при запуске
+     * под целевое время хеширования. Устаревшие хеши (без префикса или с меньшей стоимостью)
+     * пересчитываются при успешном входе через {@link org.springframework.security.core.userdetails.UserDetailsPasswordService}.
      *
-     * @return BCryptPasswordEncoder для хеширования паролей
+     * @param strength      стоимость BCrypt; 0 - подобрать автоматически
+     * @param targetLatency целевое время одного хеширования для подбора стоимости
+     * @param minStrength   минимальная стоимость при подборе
+     * @param maxStrength   максимальная стоимость при подборе
+     * @param meterRegistry реестр метрик
+     * @return кодировщик паролей с метриками процессорного времени
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${security.password.bcrypt.strength:0}") int strength,
+            @Value("${security.password.bcrypt.target-latency:PT0.25S}") Duration targetLatency,
+            @Value("${security.password.bcrypt.min-strength:10}") int minStrength,
+            @Value("${security.password.bcrypt.max-strength:14}") int maxStrength,
+            MeterRegistry meterRegistry) {
+
+        int bcryptStrength = strength > 0
+                ? strength
+                : BCryptStrengthCalibrator.calibrate(targetLatency, minStrength, maxStrength);
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(BCRYPT_ID, Map.of(BCRYPT_ID, bcrypt));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        Gauge.builder("auth.password.bcrypt.strength", () -> bcryptStrength)
+                .description("BCrypt cost factor used for new password hashes")
+                .register(meterRegistry);
+        return new MeteredPasswordEncoder(encoder, meterRegistry);
     }
 
     /**
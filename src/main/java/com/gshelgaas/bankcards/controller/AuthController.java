@@ -2,18 +2,24 @@ package com.gshelgaas.bankcards.controller;
 
 import com.gshelgaas.bankcards.dto.AuthRequestDto;
 import com.gshelgaas.bankcards.dto.AuthResponseDto;
+import com.gshelgaas.bankcards.dto.RefreshRequestDto;
+import com.gshelgaas.bankcards.exception.UnauthorizedException;
 import com.gshelgaas.bankcards.service.AuthService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
  * Контроллер для аутентификации пользователей.
- * Предоставляет endpoint'ы для входа в систему и получения JWT токенов.
+ * Предоставляет endpoint'ы для входа в систему, получения и отзыва JWT токенов.
  *
  * @author Георгий Шельгаас
  */
@@ -36,4 +42,37 @@ public class AuthController {
         log.info("POST /auth/login - login attempt for email: {}", authRequest.getEmail());
         return authService.login(authRequest);
     }
-}
\ No newline at end of file
+
+    /**
+     * Обновляет пару токенов по refresh токену без повторного ввода пароля.
+     * Переданный refresh токен становится недействительным.
+     *
+     * @param refreshRequest refresh токен
+     * @return новые JWT и refresh токены
+     */
+    @PostMapping("/refresh")
+    public AuthResponseDto refresh(@Valid @RequestBody RefreshRequestDto refreshRequest) {
+        log.info("POST /auth/refresh");
+        return authService.refresh(refreshRequest.getRefreshToken());
+    }
+
+    /**
+     * Завершает сеанс: отзывает JWT токен из заголовка Authorization
+     * и, если передан, refresh токен этого сеанса.
+     * После выхода токен отклоняется всеми защищенными endpoint'ами.
+     *
+     * @param authorization  заголовок Authorization в формате "Bearer &lt;token&gt;"
+     * @param refreshRequest refresh токен сеанса (необязательно)
+     */
+    @PostMapping("/logout")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void logout(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization,
+                       @RequestBody(required = false) RefreshRequestDto refreshRequest) {
+        log.info("POST /auth/logout");
+        if (!authorization.startsWith("Bearer ")) {
+            throw new UnauthorizedException("Bearer token required");
+        }
+        authService.logout(authorization.substring(7),
+                refreshRequest != null ? refreshRequest.getRefreshToken() : null);
+    }
+}
@@ -0,0 +1,70 @@
+package com.gshelgaas.bankcards.controller;
+
+import com.gshelgaas.bankcards.dto.BlockRequestBulkDto;
+import com.gshelgaas.bankcards.dto.BlockRequestBulkResultDto;
+import com.gshelgaas.bankcards.dto.BlockRequestPageResponseDto;
+import com.gshelgaas.bankcards.service.CardService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Контроллер для административной обработки очереди запросов на блокировку карт.
+ * Предоставляет endpoint'ы для просмотра очереди и пакетного одобрения или отклонения запросов.
+ * Доступно только пользователям с ролью ADMIN.
+ *
+ * @author Георгий Шельгаас
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin/block-requests")
+@RequiredArgsConstructor
+public class BlockRequestControllerAdmin {
+
+    private final CardService cardService;
+
+    /**
+     * Получает страницу запросов на блокировку с курсорной пагинацией, от старых к новым.
+     * Для следующей страницы передается nextCursor из предыдущего ответа.
+     *
+     * @param status статус запросов: PENDING, APPROVED или REJECTED
+     * @param cursor курсор из предыдущей страницы (опционально)
+     * @param size   количество запросов на странице (не более 100)
+     * @return страница запросов на блокировку
+     */
+    @GetMapping
+    public BlockRequestPageResponseDto getBlockRequests(
+            @RequestParam(defaultValue = "PENDING") String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        log.info("GET /admin/block-requests - get block requests, status: {}, size: {}", status, size);
+        return cardService.getBlockRequests(status, cursor, size);
+    }
+
+    /**
+     * Одобряет пакет запросов на блокировку и блокирует их карты в одной транзакции.
+     *
+     * @param request идентификаторы запросов
+     * @return идентификаторы обработанных и пропущенных запросов
+     */
+    @PostMapping("/approve")
+    public BlockRequestBulkResultDto approveBlockRequests(@Valid @RequestBody BlockRequestBulkDto request) {
+        log.info("POST /admin/block-requests/approve - approve {} block requests", request.getIds().size());
+        return cardService.approveBlockRequests(request.getIds());
+    }
+
+    /**
+     * Отклоняет пакет запросов на блокировку и возвращает их карты в активный статус
+     * в одной транзакции.
+     *
+     * @param request идентификаторы запросов
+     * @return идентификаторы обработанных и пропущенных запросов
+     */
+    @PostMapping("/reject")
+    public BlockRequestBulkResultDto rejectBlockRequests(@Valid @RequestBody BlockRequestBulkDto request) {
+        log.info("POST /admin/block-requests/reject - reject {} block requests", request.getIds().size());
+        return cardService.rejectBlockRequests(request.getIds());
+    }
+}
@@ -1,15 +1,26 @@
 package com.gshelgaas.bankcards.controller;
 
+import com.gshelgaas.bankcards.dto.TransferBatchItemResultDto;
+import com.gshelgaas.bankcards.dto.TransferBatchRequestDto;
+import com.gshelgaas.bankcards.dto.TransferExportFormat;
+import com.gshelgaas.bankcards.dto.TransferFilterDto;
+import com.gshelgaas.bankcards.dto.TransferPageResponseDto;
 import com.gshelgaas.bankcards.dto.TransferRequestDto;
 import com.gshelgaas.bankcards.dto.TransferResponseDto;
-import com.gshelgaas.bankcards.entity.User;
+import com.gshelgaas.bankcards.security.AuthenticatedUser;
 import com.gshelgaas.bankcards.service.TransferService;
 import com.gshelgaas.bankcards.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -31,26 +42,105 @@ public class TransferController {
     /**
      * Выполняет перевод денежных средств между картами пользователя.
      *
+     * Повторный запрос с тем же заголовком Idempotency-Key возвращает результат
+     * первого перевода без повторного списания.
+     *
+     * @param idempotencyKey  ключ идемпотентности (опционально, непустой, не более 255 символов)
      * @param transferRequest данные перевода (карты, сумма, описание)
      * @return информация о выполненном переводе
      */
     @PostMapping
-    public TransferResponseDto transferBetweenCards(@Valid @RequestBody TransferRequestDto transferRequest) {
-        User currentUser = userService.getCurrentUser();
+    public TransferResponseDto transferBetweenCards(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @Valid @RequestBody TransferRequestDto transferRequest) {
+
+        AuthenticatedUser currentUser = userService.getCurrentUser();
         log.info("POST /user/transfers - transfer from user: {}", currentUser.getId());
-        return transferService.transferBetweenCards(transferRequest, currentUser.getId());
+        return transferService.transferBetweenCards(transferRequest, currentUser.getId(), idempotencyKey);
+    }
+
+    /**
+     * Выполняет пакет переводов текущего пользователя в одной транзакции.
+     *
+     * Результаты по каждому переводу возвращаются JSON-массивом в порядке пакета.
+     * Результат известен только после фиксации транзакции всего пакета, поэтому ответ
+     * формируется целиком; размер пакета ограничен валидацией запроса.
+     *
+     * @param batchRequest пакет переводов
+     * @return результаты выполнения переводов
+     */
+    @PostMapping("/batch")
+    public List<TransferBatchItemResultDto> transferBatch(@Valid @RequestBody TransferBatchRequestDto batchRequest) {
+        AuthenticatedUser currentUser = userService.getCurrentUser();
+        log.info("POST /user/transfers/batch - {} transfers from user: {}",
+                batchRequest.getTransfers().size(), currentUser.getId());
+
+        return transferService.transferBatch(batchRequest.getTransfers(), currentUser.getId());
     }
 
     /**
-     * Получает историю переводов текущего пользователя.
-     * Включает как исходящие, так и входящие переводы.
+     * Получает страницу истории переводов текущего пользователя.
+     * Включает как исходящие, так и входящие переводы, от новых к старым.
      *
-     * @return список переводов пользователя
+     * @param dateFrom начало периода включительно, ISO-8601 (опционально)
+     * @param dateTo   конец периода не включительно, ISO-8601 (опционально)
+     * @param cardId   идентификатор карты для фильтрации (опционально)
+     * @param cursor   курсор следующей страницы из предыдущего ответа (опционально)
+     * @param size     количество переводов на странице (не более 100)
+     * @return страница переводов пользователя
      */
     @GetMapping
-    public List<TransferResponseDto> getUserTransfers() {
-        User currentUser = userService.getCurrentUser();
+    public TransferPageResponseDto getUserTransfers(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTo,
+            @RequestParam(required = false) Long cardId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        AuthenticatedUser currentUser = userService.getCurrentUser();
         log.info("GET /user/transfers - get transfers for user: {}", currentUser.getId());
-        return transferService.getUserTransfers(currentUser.getId());
+
+        TransferFilterDto filter = TransferFilterDto.builder()
+                .dateFrom(dateFrom)
+                .dateTo(dateTo)
+                .cardId(cardId)
+                .build();
+        return transferService.getUserTransfers(currentUser.getId(), filter, cursor, size);
+    }
+
+    /**
+     * Выгружает всю историю переводов текущего пользователя, подходящую под фильтры.
+     * Строки пишутся в ответ по мере чтения из базы данных.
+     *
+     * @param format   формат выгрузки: csv или ndjson
+     * @param dateFrom начало периода включительно, ISO-8601 (опционально)
+     * @param dateTo   конец периода не включительно, ISO-8601 (опционально)
+     * @param cardId   идентификатор карты для фильтрации (опционально)
+     * @return поток с выгрузкой переводов
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUserTransfers(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTo,
+            @RequestParam(required = false) Long cardId) {
+
+        AuthenticatedUser currentUser = userService.getCurrentUser();
+        log.info("GET /user/transfers/export - export transfers for user: {}, format: {}", currentUser.getId(), format);
+
+        TransferExportFormat exportFormat = TransferExportFormat.from(format);
+        TransferFilterDto filter = TransferFilterDto.builder()
+                .dateFrom(dateFrom)
+                .dateTo(dateTo)
+                .cardId(cardId)
+                .build();
+
+        StreamingResponseBody body = outputStream ->
+                transferService.exportUserTransfers(currentUser.getId(), filter, exportFormat, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"transfers." + exportFormat.getFileExtension() + "\"")
+                .body(body);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package com.gshelgaas.bankcards.controller;
+
+import com.gshelgaas.bankcards.dto.TransferExportFormat;
+import com.gshelgaas.bankcards.dto.TransferFilterDto;
+import com.gshelgaas.bankcards.service.TransferService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+
+/**
+ * Контроллер для административного доступа к переводам.
+ * Предоставляет выгрузку истории переводов всех пользователей.
+ * Доступно только пользователям с ролью ADMIN.
+ *
+ * @author Георгий Шельгаас
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin/transfers")
+@RequiredArgsConstructor
+public class TransferControllerAdmin {
+
+    private final TransferService transferService;
+
+    /**
+     * Выгружает историю переводов, подходящую под фильтры.
+     * Строки пишутся в ответ по мере чтения из базы данных.
+     *
+     * @param format   формат выгрузки: csv или ndjson
+     * @param userId   идентификатор пользователя для фильтрации (опционально)
+     * @param dateFrom начало периода включительно, ISO-8601 (опционально)
+     * @param dateTo   конец периода не включительно, ISO-8601 (опционально)
+     * @param cardId   идентификатор карты для фильтрации (опционально)
+     * @return поток с выгрузкой переводов
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransfers(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTo,
+            @RequestParam(required = false) Long cardId) {
+
+        log.info("GET /admin/transfers/export - export transfers, user: {}, format: {}", userId, format);
+
+        TransferExportFormat exportFormat = TransferExportFormat.from(format);
+        TransferFilterDto filter = TransferFilterDto.builder()
+                .dateFrom(dateFrom)
+                .dateTo(dateTo)
+                .cardId(cardId)
+                .build();
+
+        StreamingResponseBody body = outputStream -> {
+            if (userId != null) {
+                transferService.exportUserTransfers(userId, filter, exportFormat, outputStream);
+            } else {
+                transferService.exportAllTransfers(filter, exportFormat, outputStream);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"transfers." + exportFormat.getFileExtension() + "\"")
+                .body(body);
+    }
+}
@@ -3,8 +3,8 @@ package com.gshelgaas.bankcards.controller;
 import com.gshelgaas.bankcards.dto.BlockRequestDto;
 import com.gshelgaas.bankcards.dto.BlockRequestResponseDto;
 import com.gshelgaas.bankcards.dto.CardResponseDto;
+import com.gshelgaas.bankcards.security.AuthenticatedUser;
 import com.gshelgaas.bankcards.service.CardService;
-import com.gshelgaas.bankcards.entity.User;
 import com.gshelgaas.bankcards.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -12,6 +12,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
@@ -46,7 +48,7 @@ public class UserCardController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
 
-        User currentUser = userService.getCurrentUser();
+        AuthenticatedUser currentUser = userService.getCurrentUser();
         log.info("GET /user/cards - get cards for user: {}, status: {}, page: {}, size: {}",
                 currentUser.getId(), status, page, size);
 
@@ -68,15 +70,22 @@ public class UserCardController {
 
     /**
      * Получает баланс конкретной карты пользователя.
+     * Ответ содержит ETag, вычисленный из баланса: при повторном запросе с совпадающим
+     * If-None-Match возвращается 304 Not Modified без тела.
      *
      * @param cardId идентификатор карты
      * @return текущий баланс карты
      */
     @GetMapping("/{cardId}/balance")
-    public BigDecimal getCardBalance(@PathVariable Long cardId) {
-        User currentUser = userService.getCurrentUser();
+    public ResponseEntity<BigDecimal> getCardBalance(@PathVariable Long cardId) {
+        AuthenticatedUser currentUser = userService.getCurrentUser();
         log.info("GET /user/cards/{}/balance - get balance for user: {}", cardId, currentUser.getId());
-        return cardService.getCardBalance(cardId, currentUser.getId());
+
+        BigDecimal balance = cardService.getCardBalance(cardId, currentUser.getId());
+        return ResponseEntity.ok()
+                .eTag(balance.toPlainString())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(balance);
     }
 
     /**
@@ -91,7 +100,7 @@ public class UserCardController {
             @PathVariable Long cardId,
             @Valid @RequestBody BlockRequestDto blockRequestDto) {
 
-        User currentUser = userService.getCurrentUser();
+        AuthenticatedUser currentUser = userService.getCurrentUser();
         log.info("POST /user/cards/{}/block-request - block request for user: {}", cardId, currentUser.getId());
         return cardService.requestCardBlock(cardId, currentUser.getId(), blockRequestDto);
     }
@@ -7,7 +7,8 @@ import lombok.NoArgsConstructor;
 
 /**
  * Ответ с результатом аутентификации.
- * Содержит JWT токен для доступа к защищенным endpoint'ам.
+ * Содержит короткоживущий JWT токен для доступа к защищенным endpoint'ам
+ * и refresh токен для его обновления без повторного ввода пароля.
  *
  * @author Георгий Шельгаас
  */
@@ -22,4 +23,14 @@ public class AuthResponseDto {
      * Должен передаваться в заголовке Authorization: Bearer {token}
      */
     private String token;
+
+    /**
+     * Одноразовый refresh токен для получения новой пары токенов через /auth/refresh.
+     */
+    private String refreshToken;
+
+    /**
+     * Время жизни JWT токена в секундах.
+     */
+    private long expiresIn;
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.gshelgaas.bankcards.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Запрос на пакетное одобрение или отклонение запросов на блокировку.
+ * Все запросы пакета обрабатываются в одной транзакции.
+ *
+ * @author Георгий Шельгаас
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlockRequestBulkDto {
+
+    /**
+     * Идентификаторы запросов на блокировку.
+     * Не может быть пустым, не более 1000 элементов.
+     */
+    @NotEmpty(message = "Block request ids cannot be empty")
+    @Size(max = 1000, message = "Cannot process more than 1000 block requests at once")
+    private List<@NotNull Long> ids;
+}
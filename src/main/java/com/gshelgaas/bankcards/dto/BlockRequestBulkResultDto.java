@@ -0,0 +1,31 @@
+package com.gshelgaas.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Результат пакетной обработки запросов на блокировку.
+ *
+ * @author Георгий Шельгаас
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlockRequestBulkResultDto {
+
+    /**
+     * Идентификаторы обработанных запросов.
+     */
+    private List<Long> processedIds;
+
+    /**
+     * Идентификаторы пропущенных запросов: не найденные, уже обработанные
+     * или (при одобрении) относящиеся к истекшей карте.
+     */
+    private List<Long> skippedIds;
+}
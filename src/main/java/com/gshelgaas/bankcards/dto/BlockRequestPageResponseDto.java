@@ -0,0 +1,37 @@
+package com.gshelgaas.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница очереди запросов на блокировку с курсорной (keyset) пагинацией.
+ * Для получения следующей страницы значение nextCursor передается в параметре cursor.
+ *
+ * @author Георгий Шельгаас
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlockRequestPageResponseDto {
+
+    /**
+     * Запросы страницы, от старых к новым.
+     */
+    private List<BlockRequestResponseDto> content;
+
+    /**
+     * Курсор следующей страницы.
+     * Равен null, если страница последняя.
+     */
+    private String nextCursor;
+
+    /**
+     * Признак наличия следующей страницы.
+     */
+    private boolean hasNext;
+}
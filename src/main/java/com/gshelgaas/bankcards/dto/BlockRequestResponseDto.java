@@ -1,5 +1,6 @@
 package com.gshelgaas.bankcards.dto;
 
+import com.gshelgaas.bankcards.entity.BlockRequest;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -43,4 +44,19 @@ public class BlockRequestResponseDto {
      * Дата и время создания запроса.
      */
     private LocalDateTime requestedAt;
+
+    /**
+     * Дата и время обработки запроса администратором.
+     * Равна null, пока запрос не обработан.
+     */
+    private LocalDateTime processedAt;
+
+    /**
+     * Конструктор для JPQL-проекции.
+     * Позволяет выбирать запросы сразу в DTO без загрузки сущностей карт.
+     */
+    public BlockRequestResponseDto(Long id, Long cardId, String reason, BlockRequest.BlockStatus status,
+                                   LocalDateTime requestedAt, LocalDateTime processedAt) {
+        this(id, cardId, reason, status.name(), requestedAt, processedAt);
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.gshelgaas.bankcards.dto;
 
+import com.gshelgaas.bankcards.entity.Card;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -56,4 +57,14 @@ public class CardResponseDto {
      * Идентификатор пользователя-владельца карты.
      */
     private Long userId;
-}
\ No newline at end of file
+
+    /**
+     * Конструктор для JPQL-проекции.
+     * Позволяет выбирать карты сразу в DTO без загрузки сущностей карты и владельца.
+     * Номер карты берется из сохраненной маски и равен null, если маска еще не заполнена.
+     */
+    public CardResponseDto(Long id, String cardNumberMasked, String cardHolder, LocalDate expiryDate,
+                           Card.CardStatus status, BigDecimal balance, Long userId) {
+        this(id, cardNumberMasked, cardHolder, expiryDate, status.name(), balance, userId);
+    }
+}
@@ -0,0 +1,26 @@
+package com.gshelgaas.bankcards.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Запрос с refresh токеном.
+ * Используется для обновления пары токенов и для завершения сеанса.
+ *
+ * @author Георгий Шельгаас
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshRequestDto {
+
+    /**
+     * Refresh токен, полученный при входе или предыдущем обновлении.
+     */
+    @NotBlank(message = "Refresh token cannot be blank")
+    private String refreshToken;
+}
@@ -0,0 +1,57 @@
+package com.gshelgaas.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Результат выполнения одного перевода из пакета.
+ *
+ * @author Георгий Шельгаас
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferBatchItemResultDto {
+
+    /**
+     * Порядковый номер перевода в пакете (начинается с 0).
+     */
+    private int index;
+
+    /**
+     * Идентификатор созданного перевода.
+     * Заполняется только для успешных переводов.
+     */
+    private Long transferId;
+
+    /**
+     * Идентификатор карты-отправителя.
+     */
+    private Long fromCardId;
+
+    /**
+     * Идентификатор карты-получателя.
+     */
+    private Long toCardId;
+
+    /**
+     * Сумма перевода.
+     */
+    private BigDecimal amount;
+
+    /**
+     * Статус перевода.
+     * Возможные значения: SUCCESS, FAILED
+     */
+    private String status;
+
+    /**
+     * Причина отказа для неуспешного перевода.
+     */
+    private String error;
+}
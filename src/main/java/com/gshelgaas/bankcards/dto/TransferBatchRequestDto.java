@@ -0,0 +1,32 @@
+package com.gshelgaas.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Запрос на пакетное выполнение переводов.
+ * Все переводы пакета выполняются в одной транзакции.
+ *
+ * @author Георгий Шельгаас
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferBatchRequestDto {
+
+    /**
+     * Переводы пакета в порядке выполнения.
+     * Не может быть пустым, не более 10000 элементов.
+     */
+    @NotEmpty(message = "Transfers cannot be empty")
+    @Size(max = 10000, message = "Batch cannot contain more than 10000 transfers")
+    private List<@Valid TransferRequestDto> transfers;
+}
@@ -0,0 +1,49 @@
+package com.gshelgaas.bankcards.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Формат выгрузки истории переводов.
+ *
+ * @author Георгий Шельгаас
+ */
+@Getter
+@RequiredArgsConstructor
+public enum TransferExportFormat {
+
+    /**
+     * CSV с заголовком, разделитель - запятая.
+     */
+    CSV("text/csv", "csv"),
+
+    /**
+     * NDJSON: один JSON-объект перевода на строку.
+     */
+    NDJSON("application/x-ndjson", "ndjson");
+
+    /**
+     * MIME-тип ответа.
+     */
+    private final String contentType;
+
+    /**
+     * Расширение файла выгрузки.
+     */
+    private final String fileExtension;
+
+    /**
+     * Определяет формат по значению параметра запроса без учета регистра.
+     *
+     * @param value значение параметра
+     * @return формат выгрузки
+     * @throws IllegalArgumentException если формат не поддерживается
+     */
+    public static TransferExportFormat from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid export format: " + value);
+        }
+    }
+}
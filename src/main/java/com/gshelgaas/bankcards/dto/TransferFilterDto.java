@@ -0,0 +1,36 @@
+package com.gshelgaas.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Фильтры истории переводов пользователя.
+ * Все поля необязательны: незаполненный фильтр не ограничивает выборку.
+ *
+ * @author Георгий Шельгаас
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferFilterDto {
+
+    /**
+     * Начало периода (включительно).
+     */
+    private LocalDateTime dateFrom;
+
+    /**
+     * Конец периода (не включительно).
+     */
+    private LocalDateTime dateTo;
+
+    /**
+     * Идентификатор карты, участвующей в переводе как отправитель или получатель.
+     */
+    private Long cardId;
+}
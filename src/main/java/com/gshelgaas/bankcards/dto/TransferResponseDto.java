@@ -1,5 +1,6 @@
 package com.gshelgaas.bankcards.dto;
 
+import com.gshelgaas.bankcards.entity.Transfer;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -54,4 +55,13 @@ public class TransferResponseDto {
      * Описание перевода.
      */
     private String description;
-}
\ No newline at end of file
+
+    /**
+     * Конструктор для JPQL-проекции.
+     * Позволяет выбирать переводы сразу в DTO без загрузки сущностей карт.
+     */
+    public TransferResponseDto(Long id, Long fromCardId, Long toCardId, BigDecimal amount,
+                               LocalDateTime transferDate, Transfer.TransferStatus status, String description) {
+        this(id, fromCardId, toCardId, amount, transferDate, status.name(), description);
+    }
+}
@@ -20,7 +20,7 @@ import java.util.List;
  */
 @Getter
 @Setter
-@ToString(exclude = {"cardNumber", "user", "outgoingTransfers", "incomingTransfers", "blockRequests"})
+@ToString(exclude = {"cardNumber", "cardNumberHash", "user", "outgoingTransfers", "incomingTransfers", "blockRequests"})
 @EqualsAndHashCode(exclude = {"user", "outgoingTransfers", "incomingTransfers", "blockRequests"})
 @Entity
 @Builder
@@ -45,6 +45,20 @@ public class Card {
     @Column(nullable = false, unique = true)
     private String cardNumber;
 
+    /**
+     * Слепой индекс номера карты: HMAC-SHA256 от номера в открытом виде.
+     * Используется для поиска и проверки уникальности номера без расшифровки.
+     */
+    @Column(name = "card_number_hash", unique = true, length = 64)
+    private String cardNumberHash;
+
+    /**
+     * Замаскированный номер карты для отображения (например, "**** **** **** 1234").
+     * Заполняется при создании карты, чтобы чтение и списки карт не требовали расшифровки.
+     */
+    @Column(name = "card_number_masked", length = 32)
+    private String cardNumberMasked;
+
     /**
      * Имя владельца карты.
      * Соответствует имени на физической карте.
@@ -0,0 +1,72 @@
+package com.gshelgaas.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сущность refresh токена.
+ * Хранится только хеш токена; сам токен известен лишь клиенту.
+ * Токен одноразовый: при обновлении он помечается использованным и заменяется новым
+ * из того же семейства. Повторное предъявление использованного токена отзывает все семейство.
+ * Таблица: refresh_tokens
+ *
+ * @author Георгий Шельгаас
+ */
+@Getter
+@Setter
+@ToString(exclude = {"user"})
+@EqualsAndHashCode(exclude = {"user"})
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "refresh_tokens")
+public class RefreshToken {
+
+    /**
+     * Уникальный идентификатор записи.
+     * Автоинкрементный первичный ключ.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Пользователь, которому выдан токен.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    /**
+     * Хеш токена (HMAC-SHA256).
+     */
+    @Column(nullable = false, unique = true, length = 64)
+    private String tokenHash;
+
+    /**
+     * Идентификатор семейства токенов, выданных при одном входе в систему.
+     */
+    @Column(nullable = false, length = 36)
+    private String familyId;
+
+    /**
+     * Дата и время истечения срока действия токена.
+     */
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    /**
+     * Дата и время выдачи токена.
+     */
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Дата и время использования или отзыва токена.
+     * Null для действующего токена.
+     */
+    private LocalDateTime revokedAt;
+}
@@ -0,0 +1,51 @@
+package com.gshelgaas.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сущность отозванного JWT токена.
+ * Хранит идентификатор токена (claim jti) до истечения срока его действия,
+ * после чего запись удаляется: просроченный токен отклоняется и без нее.
+ * Таблица: revoked_tokens
+ *
+ * @author Георгий Шельгаас
+ */
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "revoked_tokens")
+public class RevokedToken {
+
+    /**
+     * Идентификатор токена (claim jti).
+     */
+    @Id
+    @Column(length = 36)
+    private String jti;
+
+    /**
+     * Идентификатор пользователя, которому был выдан токен.
+     */
+    @Column(name = "user_id")
+    private Long userId;
+
+    /**
+     * Дата и время истечения срока действия токена.
+     */
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    /**
+     * Дата и время отзыва токена.
+     */
+    @Column(nullable = false)
+    private LocalDateTime revokedAt;
+}
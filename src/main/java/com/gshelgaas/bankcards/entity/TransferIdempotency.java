@@ -0,0 +1,70 @@
+package com.gshelgaas.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сущность ключа идемпотентности перевода.
+ * Связывает ключ из заголовка Idempotency-Key с выполненным переводом,
+ * чтобы повторный запрос клиента возвращал сохраненный результат без повторного списания.
+ * Таблица: transfer_idempotency
+ *
+ * @author Георгий Шельгаас
+ */
+@Getter
+@Setter
+@ToString(exclude = {"transfer"})
+@EqualsAndHashCode(exclude = {"transfer"})
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "transfer_idempotency",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_transfer_idempotency_user_key",
+                columnNames = {"user_id", "idempotency_key"}))
+public class TransferIdempotency {
+
+    /**
+     * Уникальный идентификатор записи.
+     * Автоинкрементный первичный ключ.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Идентификатор пользователя, выполнившего перевод.
+     * Ключ уникален в пределах пользователя.
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /**
+     * Ключ идемпотентности, переданный клиентом.
+     */
+    @Column(nullable = false)
+    private String idempotencyKey;
+
+    /**
+     * SHA-256 хеш параметров запроса.
+     * Позволяет отклонить повторное использование ключа с другими параметрами.
+     */
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    /**
+     * Перевод, выполненный по данному ключу.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transfer_id")
+    private Transfer transfer;
+
+    /**
+     * Дата и время первого запроса с данным ключом.
+     */
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
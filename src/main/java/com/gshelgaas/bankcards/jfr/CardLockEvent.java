@@ -0,0 +1,36 @@
+package com.gshelgaas.bankcards.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * JFR событие захвата блокировок строк карт при переводе.
+ * Длительность события - время ожидания блокировок и выполнения блокирующих запросов.
+ *
+ * @author Георгий Шельгаас
+ */
+@Name("bankcards.CardLock")
+@Label("Card Lock")
+@Category({"Bank Cards", "Transfer"})
+@Description("Row lock acquisition for transfer cards")
+@Threshold("10 ms")
+@StackTrace(false)
+@Setter
+public class CardLockEvent extends Event {
+
+    @Label("From Card Id")
+    private long fromCardId;
+
+    @Label("To Card Id")
+    private long toCardId;
+
+    @Label("Engine")
+    @Description("Transfer engine: entity or atomic")
+    private String engine;
+}
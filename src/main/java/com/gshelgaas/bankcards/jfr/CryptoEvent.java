@@ -0,0 +1,36 @@
+package com.gshelgaas.bankcards.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * JFR событие криптографической операции над номером карты.
+ * Длительность события - время шифрования, расшифровки или хеширования.
+ *
+ * @author Георгий Шельгаас
+ */
+@Name("bankcards.Crypto")
+@Label("Crypto Operation")
+@Category({"Bank Cards", "Crypto"})
+@Description("Card number encryption, decryption or hashing")
+@Threshold("1 ms")
+@StackTrace(false)
+@Setter
+public class CryptoEvent extends Event {
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Input Length")
+    @Description("Length of the input string in characters")
+    private int inputLength;
+
+    @Label("Succeeded")
+    private boolean succeeded;
+}
@@ -0,0 +1,33 @@
+package com.gshelgaas.bankcards.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * JFR событие проверки JWT токена в фильтре аутентификации.
+ * Длительность события - разбор и проверка подписи, проверка отзыва и построение principal.
+ *
+ * @author Георгий Шельгаас
+ */
+@Name("bankcards.JwtAuth")
+@Label("JWT Authentication")
+@Category({"Bank Cards", "Auth"})
+@Description("JWT verification in the authentication filter")
+@Threshold("1 ms")
+@StackTrace(false)
+@Setter
+public class JwtAuthEvent extends Event {
+
+    @Label("User Id")
+    @Description("Authenticated user id, 0 if the token was rejected")
+    private long userId;
+
+    @Label("Result")
+    private String result;
+}
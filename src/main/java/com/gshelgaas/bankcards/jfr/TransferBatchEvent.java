@@ -0,0 +1,41 @@
+package com.gshelgaas.bankcards.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * JFR событие выполнения пакета переводов.
+ * Длительность события - полное время пакета, включая блокировку карт и запись в базу данных.
+ *
+ * @author Георгий Шельгаас
+ */
+@Name("bankcards.TransferBatch")
+@Label("Transfer Batch")
+@Category({"Bank Cards", "Transfer"})
+@Description("Batch of transfers between cards")
+@Threshold("10 ms")
+@StackTrace(false)
+@Setter
+public class TransferBatchEvent extends Event {
+
+    @Label("User Id")
+    private long userId;
+
+    @Label("Items")
+    private int items;
+
+    @Label("Succeeded")
+    private int succeeded;
+
+    @Label("Failed")
+    private int failed;
+
+    @Label("Outcome")
+    private String outcome;
+}
@@ -0,0 +1,66 @@
+package com.gshelgaas.bankcards.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * JFR событие выполнения перевода между картами.
+ * Длительность события - полное время перевода; время ожидания блокировок карт
+ * записывается вложенным событием {@link CardLockEvent} в том же потоке.
+ *
+ * @author Георгий Шельгаас
+ */
+@Name("bankcards.Transfer")
+@Label("Transfer")
+@Category({"Bank Cards", "Transfer"})
+@Description("Transfer between cards")
+@Threshold("10 ms")
+@StackTrace(false)
+@Setter
+public class TransferEvent extends Event {
+
+    @Label("User Id")
+    private long userId;
+
+    @Label("From Card Id")
+    private long fromCardId;
+
+    @Label("To Card Id")
+    private long toCardId;
+
+    @Label("Amount Bucket")
+    @Description("Order of magnitude of the amount, without the exact value")
+    private String amountBucket;
+
+    @Label("Outcome")
+    private String outcome;
+
+    /**
+     * Определяет порядок суммы перевода, чтобы не записывать точное значение в запись JFR.
+     *
+     * @param amount сумма перевода
+     * @return диапазон суммы, например "100-1000"
+     */
+    public static String bucketOf(BigDecimal amount) {
+        if (amount == null) {
+            return "unknown";
+        }
+        int digits = amount.signum() <= 0 ? 0 : amount.precision() - amount.scale();
+        if (digits <= 1) {
+            return "<10";
+        }
+        if (digits > 6) {
+            return ">=1000000";
+        }
+        BigDecimal lower = BigDecimal.TEN.pow(digits - 1);
+        return lower.toPlainString() + "-" + lower.multiply(BigDecimal.TEN).toPlainString();
+    }
+}
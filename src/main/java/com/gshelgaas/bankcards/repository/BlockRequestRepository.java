@@ -1,9 +1,17 @@
 package com.gshelgaas.bankcards.repository;
 
+import com.gshelgaas.bankcards.dto.BlockRequestResponseDto;
 import com.gshelgaas.bankcards.entity.BlockRequest;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -40,4 +48,102 @@ public interface BlockRequestRepository extends JpaRepository<BlockRequest, Long
      * @return список запросов с указанным статусом
      */
     List<BlockRequest> findByStatus(BlockRequest.BlockStatus status);
+
+    /**
+     * Находит первую страницу запросов с указанным статусом в виде DTO-проекции
+     * в порядке от старых запросов к новым.
+     * Порядок (requested_at, id) совпадает с индексом (status, requested_at, id),
+     * поэтому PostgreSQL читает индекс по условию на статус без сортировки.
+     *
+     * @param status статус запросов
+     * @param limit  максимальное количество запросов
+     * @return запросы от старых к новым
+     */
+    @Query("SELECT new com.gshelgaas.bankcards.dto.BlockRequestResponseDto(" +
+            "b.id, b.card.id, b.reason, b.status, b.requestedAt, b.processedAt) " +
+            "FROM BlockRequest b WHERE b.status = :status " +
+            "ORDER BY b.requestedAt, b.id")
+    List<BlockRequestResponseDto> findFirstPageByStatus(
+            @Param("status") BlockRequest.BlockStatus status,
+            Limit limit);
+
+    /**
+     * Находит страницу запросов с указанным статусом, начиная строго после пары (cursorDate, cursorId)
+     * в порядке (requested_at, id). Граница задана сравнением строк, поэтому PostgreSQL
+     * начинает чтение индекса (status, requested_at, id) сразу с позиции курсора,
+     * а не отфильтровывает предыдущие страницы.
+     *
+     * @param status     статус запросов
+     * @param cursorDate дата последнего запроса предыдущей страницы
+     * @param cursorId   идентификатор последнего запроса предыдущей страницы
+     * @param limit      максимальное количество запросов
+     * @return запросы от старых к новым
+     */
+    @Query("SELECT new com.gshelgaas.bankcards.dto.BlockRequestResponseDto(" +
+            "b.id, b.card.id, b.reason, b.status, b.requestedAt, b.processedAt) " +
+            "FROM BlockRequest b WHERE b.status = :status AND " +
+            "(b.requestedAt, b.id) > (:cursorDate, :cursorId) " +
+            "ORDER BY b.requestedAt, b.id")
+    List<BlockRequestResponseDto> findPageByStatusAfter(
+            @Param("status") BlockRequest.BlockStatus status,
+            @Param("cursorDate") LocalDateTime cursorDate,
+            @Param("cursorId") Long cursorId,
+            Limit limit);
+
+    /**
+     * Находит pending запросы из списка и блокирует строки запросов и их карт (SELECT ... FOR UPDATE).
+     * Карты блокируются в порядке возрастания id, как и при переводах, поэтому пакетная обработка
+     * не может взаимно заблокироваться с переводом; конкурентная обработка тех же запросов
+     * ждет фиксации и уже не видит их в статусе PENDING.
+     * Срок действия проверяется только по дате: карта с pending запросом уже в статусе PENDING_BLOCK.
+     *
+     * @param ids   идентификаторы запросов
+     * @param today текущая дата для проверки срока действия карт
+     * @return pending запросы с идентификаторами карт
+     */
+    @Query(value = "SELECT b.id AS \"id\", b.card_id AS \"cardId\", " +
+            "(c.expiry_date < :today) AS \"cardExpired\" " +
+            "FROM block_requests b JOIN cards c ON c.id = b.card_id " +
+            "WHERE b.id IN (:ids) AND b.status = 'PENDING' " +
+            "ORDER BY c.id FOR UPDATE",
+            nativeQuery = true)
+    List<PendingBlockRequestView> findPendingByIdInForUpdate(
+            @Param("ids") Collection<Long> ids,
+            @Param("today") LocalDate today);
+
+    /**
+     * Переводит запросы в указанный статус одним UPDATE.
+     *
+     * @param ids         идентификаторы запросов
+     * @param status      новый статус
+     * @param processedAt дата и время обработки
+     * @return количество измененных строк
+     */
+    @Modifying
+    @Query("UPDATE BlockRequest b SET b.status = :status, b.processedAt = :processedAt WHERE b.id IN :ids")
+    int updateStatusByIdIn(
+            @Param("ids") Collection<Long> ids,
+            @Param("status") BlockRequest.BlockStatus status,
+            @Param("processedAt") LocalDateTime processedAt);
+
+    /**
+     * Проекция pending запроса на блокировку для пакетной обработки.
+     */
+    interface PendingBlockRequestView {
+
+        /**
+         * @return идентификатор запроса
+         */
+        Long getId();
+
+        /**
+         * @return идентификатор карты
+         */
+        Long getCardId();
+
+        /**
+         * @return true, если срок действия карты истек
+         */
+        Boolean getCardExpired();
+    }
 }
\ No newline at end of file
@@ -1,13 +1,24 @@
 package com.gshelgaas.bankcards.repository;
 
+import com.gshelgaas.bankcards.dto.CardResponseDto;
 import com.gshelgaas.bankcards.entity.Card;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Репозиторий для работы с банковскими картами.
  * Предоставляет методы для доступа к данным карт и их фильтрации.
@@ -18,27 +29,212 @@ import org.springframework.stereotype.Repository;
 public interface CardRepository extends JpaRepository<Card, Long> {
 
     /**
-     * Проверяет существование карты с указанным номером.
-     * Номер карты должен быть предварительно зашифрован.
+     * Проверяет существование карты с указанным номером по слепому индексу.
      *
-     * @param cardNumber зашифрованный номер карты
+     * @param cardNumberHash HMAC-хеш номера карты
      * @return true если карта с таким номером существует, иначе false
      */
-    boolean existsByCardNumber(String cardNumber);
+    boolean existsByCardNumberHash(String cardNumberHash);
+
+    /**
+     * Находит карту по слепому индексу номера.
+     *
+     * @param cardNumberHash HMAC-хеш номера карты
+     * @return карта с указанным номером, если существует
+     */
+    Optional<Card> findByCardNumberHash(String cardNumberHash);
 
     /**
-     * Находит страницу карт пользователя с возможностью фильтрации по статусу.
+     * Находит порцию карт, для которых еще не заполнены производные от номера столбцы:
+     * слепой индекс или замаскированный номер.
+     *
+     * @param limit максимальное количество карт
+     * @return карты без хеша или маски номера в порядке возрастания id
+     */
+    List<Card> findByCardNumberHashIsNullOrCardNumberMaskedIsNullOrderById(Limit limit);
+
+    /**
+     * Находит карту по идентификатору в виде DTO-проекции.
+     * Выбираются только отображаемые столбцы; владелец читается из внешнего ключа user_id
+     * без загрузки пользователя, сущность карты в контекст персистентности не попадает.
+     *
+     * @param id идентификатор карты
+     * @return карта с замаскированным номером (null, если маска еще не заполнена)
+     */
+    @Query("SELECT new com.gshelgaas.bankcards.dto.CardResponseDto(" +
+            "c.id, c.cardNumberMasked, c.cardHolder, c.expiryDate, c.status, c.balance, c.user.id) " +
+            "FROM Card c WHERE c.id = :id")
+    Optional<CardResponseDto> findResponseById(@Param("id") Long id);
+
+    /**
+     * Находит страницу карт пользователя в виде DTO-проекции
+     * с возможностью фильтрации по статусу.
      *
      * @param userId   идентификатор пользователя
      * @param status   статус карты для фильтрации (может быть null)
      * @param pageable параметры пагинации
      * @return страница карт пользователя
      */
-    @Query("SELECT c FROM Card c WHERE " +
+    @Query(value = "SELECT new com.gshelgaas.bankcards.dto.CardResponseDto(" +
+            "c.id, c.cardNumberMasked, c.cardHolder, c.expiryDate, c.status, c.balance, c.user.id) " +
+            "FROM Card c WHERE " +
             "c.user.id = :userId AND " +
-            "(:status IS NULL OR c.status = :status)")
-    Page<Card> findByUserIdWithFilters(
+            "(:status IS NULL OR c.status = :status)",
+            countQuery = "SELECT COUNT(c) FROM Card c WHERE " +
+                    "c.user.id = :userId AND " +
+                    "(:status IS NULL OR c.status = :status)")
+    Page<CardResponseDto> findByUserIdWithFilters(
             @Param("userId") Long userId,
             @Param("status") Card.CardStatus status,
             Pageable pageable);
-}
\ No newline at end of file
+
+    /**
+     * Находит страницу всех карт системы в виде DTO-проекции.
+     *
+     * @param pageable параметры пагинации
+     * @return страница карт
+     */
+    @Query(value = "SELECT new com.gshelgaas.bankcards.dto.CardResponseDto(" +
+            "c.id, c.cardNumberMasked, c.cardHolder, c.expiryDate, c.status, c.balance, c.user.id) " +
+            "FROM Card c",
+            countQuery = "SELECT COUNT(c) FROM Card c")
+    Page<CardResponseDto> findAllResponses(Pageable pageable);
+
+    /**
+     * Находит баланс карты и идентификатор ее владельца.
+     * Одна строка по первичному ключу: владелец возвращается вместе с балансом,
+     * поэтому отсутствующая и чужая карта различаются без второго запроса.
+     *
+     * @param id идентификатор карты
+     * @return баланс и владелец карты, если карта существует
+     */
+    @Query("SELECT c.balance AS balance, c.user.id AS userId FROM Card c WHERE c.id = :id")
+    Optional<BalanceView> findBalanceById(@Param("id") Long id);
+
+    /**
+     * Находит зашифрованный номер карты.
+     * Используется для маскирования номера карт, еще не обработанных фоновым заполнением маски.
+     *
+     * @param id идентификатор карты
+     * @return зашифрованный номер карты, если карта существует
+     */
+    @Query("SELECT c.cardNumber FROM Card c WHERE c.id = :id")
+    Optional<String> findCardNumberById(@Param("id") Long id);
+
+    /**
+     * Находит идентификаторы всех карт пользователя.
+     * Использует индекс (user_id, status).
+     *
+     * @param userId идентификатор пользователя
+     * @return идентификаторы карт пользователя
+     */
+    @Query("SELECT c.id FROM Card c WHERE c.user.id = :userId")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
+
+    /**
+     * Находит карты по идентификаторам и блокирует их строки (SELECT ... FOR UPDATE).
+     * Строки блокируются одним запросом в порядке возрастания id, поэтому
+     * встречные переводы A→B и B→A не могут взаимно заблокировать друг друга.
+     *
+     * @param ids идентификаторы карт
+     * @return заблокированные карты, отсортированные по id
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<Card> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Находит карту по идентификатору и блокирует ее строку (SELECT ... FOR UPDATE).
+     * Сериализует изменения статуса одной карты: конкурентные запросы ждут фиксации
+     * предыдущего и видят уже обновленный статус.
+     *
+     * @param id идентификатор карты
+     * @return заблокированная карта, если существует
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Переводит карты в указанный статус одним UPDATE.
+     *
+     * @param ids    идентификаторы карт
+     * @param status новый статус
+     * @return количество измененных строк
+     */
+    @Modifying
+    @Query("UPDATE Card c SET c.status = :status WHERE c.id IN :ids")
+    int updateStatusByIdIn(
+            @Param("ids") Collection<Long> ids,
+            @Param("status") Card.CardStatus status);
+
+    /**
+     * Переводит карты из текущего статуса в новый одним UPDATE.
+     * Карты в другом статусе не изменяются.
+     *
+     * @param ids           идентификаторы карт
+     * @param currentStatus ожидаемый текущий статус
+     * @param status        новый статус
+     * @return количество измененных строк
+     */
+    @Modifying
+    @Query("UPDATE Card c SET c.status = :status WHERE c.id IN :ids AND c.status = :currentStatus")
+    int updateStatusByIdInAndStatus(
+            @Param("ids") Collection<Long> ids,
+            @Param("currentStatus") Card.CardStatus currentStatus,
+            @Param("status") Card.CardStatus status);
+
+    /**
+     * Атомарно списывает сумму с карты, если карта принадлежит пользователю,
+     * активна, не истекла и на ней достаточно средств.
+     *
+     * @param cardId идентификатор карты-отправителя
+     * @param userId идентификатор владельца карты
+     * @param amount сумма списания
+     * @param today  текущая дата для проверки срока действия
+     * @return количество измененных строк (1 при успехе, 0 если условие не выполнено)
+     */
+    @Modifying
+    @Query(value = "UPDATE cards SET balance = balance - :amount " +
+            "WHERE id = :cardId AND user_id = :userId AND balance >= :amount " +
+            "AND status = 'ACTIVE' AND expiry_date >= :today",
+            nativeQuery = true)
+    int debitIfAvailable(
+            @Param("cardId") Long cardId,
+            @Param("userId") Long userId,
+            @Param("amount") BigDecimal amount,
+            @Param("today") LocalDate today);
+
+    /**
+     * Атомарно зачисляет сумму на карту, если карта активна и не истекла.
+     *
+     * @param cardId идентификатор карты-получателя
+     * @param amount сумма зачисления
+     * @param today  текущая дата для проверки срока действия
+     * @return количество измененных строк (1 при успехе, 0 если условие не выполнено)
+     */
+    @Modifying
+    @Query(value = "UPDATE cards SET balance = balance + :amount " +
+            "WHERE id = :cardId AND status = 'ACTIVE' AND expiry_date >= :today",
+            nativeQuery = true)
+    int creditIfActive(
+            @Param("cardId") Long cardId,
+            @Param("amount") BigDecimal amount,
+            @Param("today") LocalDate today);
+
+    /**
+     * Проекция баланса карты вместе с владельцем для проверки прав доступа.
+     */
+    interface BalanceView {
+
+        /**
+         * @return текущий баланс карты
+         */
+        BigDecimal getBalance();
+
+        /**
+         * @return идентификатор владельца карты
+         */
+        Long getUserId();
+    }
+}
@@ -0,0 +1,63 @@
+package com.gshelgaas.bankcards.repository;
+
+import com.gshelgaas.bankcards.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Репозиторий для работы с refresh токенами.
+ *
+ * @author Георгий Шельгаас
+ */
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    /**
+     * Находит токен по хешу вместе с пользователем.
+     *
+     * @param tokenHash хеш токена
+     * @return токен, если найден
+     */
+    @Query("SELECT r FROM RefreshToken r JOIN FETCH r.user WHERE r.tokenHash = :tokenHash")
+    Optional<RefreshToken> findByTokenHashWithUser(@Param("tokenHash") String tokenHash);
+
+    /**
+     * Помечает токен использованным, если он еще действует.
+     * Условное обновление гарантирует, что из конкурентных запросов с одним токеном
+     * обновление выполнит только один.
+     *
+     * @param id  идентификатор токена
+     * @param now текущий момент
+     * @return 1 если токен был помечен, 0 если он уже использован
+     */
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.revokedAt = :now WHERE r.id = :id AND r.revokedAt IS NULL")
+    int markUsed(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Отзывает все действующие токены семейства.
+     *
+     * @param familyId идентификатор семейства
+     * @param now      текущий момент
+     * @return количество отозванных токенов
+     */
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.revokedAt = :now WHERE r.familyId = :familyId AND r.revokedAt IS NULL")
+    int revokeFamily(@Param("familyId") String familyId, @Param("now") LocalDateTime now);
+
+    /**
+     * Удаляет токены с истекшим сроком действия.
+     *
+     * @param threshold граница срока действия
+     * @return количество удаленных записей
+     */
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.expiresAt <= :threshold")
+    int deleteExpiredBefore(@Param("threshold") LocalDateTime threshold);
+}
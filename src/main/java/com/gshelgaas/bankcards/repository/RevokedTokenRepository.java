@@ -0,0 +1,56 @@
+package com.gshelgaas.bankcards.repository;
+
+import com.gshelgaas.bankcards.entity.RevokedToken;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+/**
+ * Репозиторий для работы с отозванными JWT токенами.
+ *
+ * @author Георгий Шельгаас
+ */
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    /**
+     * Возвращает поток идентификаторов токенов, срок действия которых еще не истек.
+     * Используется для перестроения фильтра Блума. Поток должен быть закрыт
+     * и читаться внутри транзакции.
+     *
+     * @param now текущий момент
+     * @return поток идентификаторов (jti)
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT r.jti FROM RevokedToken r WHERE r.expiresAt > :now")
+    Stream<String> streamActiveJtis(@Param("now") LocalDateTime now);
+
+    /**
+     * Подсчитывает отозванные токены, срок действия которых еще не истек.
+     *
+     * @param now текущий момент
+     * @return количество записей
+     */
+    long countByExpiresAtAfter(LocalDateTime now);
+
+    /**
+     * Удаляет записи о токенах, срок действия которых истек.
+     *
+     * @param threshold граница срока действия
+     * @return количество удаленных записей
+     */
+    @Modifying
+    @Query("DELETE FROM RevokedToken r WHERE r.expiresAt <= :threshold")
+    int deleteExpiredBefore(@Param("threshold") LocalDateTime threshold);
+}
@@ -0,0 +1,44 @@
+package com.gshelgaas.bankcards.repository;
+
+import com.gshelgaas.bankcards.entity.TransferIdempotency;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Репозиторий для работы с ключами идемпотентности переводов.
+ *
+ * @author Георгий Шельгаас
+ */
+@Repository
+public interface TransferIdempotencyRepository extends JpaRepository<TransferIdempotency, Long> {
+
+    /**
+     * Находит запись по пользователю и ключу идемпотентности вместе с переводом.
+     *
+     * @param userId         идентификатор пользователя
+     * @param idempotencyKey ключ идемпотентности
+     * @return запись с выполненным переводом, если ключ уже использовался
+     */
+    @Query("SELECT i FROM TransferIdempotency i " +
+            "LEFT JOIN FETCH i.transfer " +
+            "WHERE i.userId = :userId AND i.idempotencyKey = :idempotencyKey")
+    Optional<TransferIdempotency> findWithTransfer(
+            @Param("userId") Long userId,
+            @Param("idempotencyKey") String idempotencyKey);
+
+    /**
+     * Удаляет записи, созданные раньше указанного момента.
+     *
+     * @param threshold граница хранения ключей
+     * @return количество удаленных записей
+     */
+    @Modifying
+    @Query("DELETE FROM TransferIdempotency i WHERE i.createdAt < :threshold")
+    int deleteCreatedBefore(@Param("threshold") LocalDateTime threshold);
+}
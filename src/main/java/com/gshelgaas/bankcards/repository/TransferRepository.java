@@ -1,10 +1,20 @@
 package com.gshelgaas.bankcards.repository;
 
+import com.gshelgaas.bankcards.dto.TransferResponseDto;
 import com.gshelgaas.bankcards.entity.Transfer;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий для работы с переводами между картами.
@@ -16,13 +26,206 @@ import java.util.List;
 public interface TransferRepository extends JpaRepository<Transfer, Long> {
 
     /**
-     * Находит все переводы, связанные с пользователем.
-     * Включает как исходящие (где пользователь - отправитель),
-     * так и входящие (где пользователь - получатель) переводы.
+     * Количество строк, получаемых из курсора базы данных за одно обращение при выгрузке.
+     */
+    String EXPORT_FETCH_SIZE = "1000";
+
+    /**
+     * Колонки перевода, выбираемые запросами истории.
+     */
+    String HISTORY_COLUMNS = "t.id, t.from_card_id, t.to_card_id, t.amount, t.transfer_date, t.status, t.description";
+
+    /**
+     * Порядок истории переводов (от новых к старым) и ограничение количества строк.
+     * Порядок совпадает с порядком индексов (from_card_id, transfer_date, id)
+     * и (to_card_id, transfer_date, id) внутри одной карты.
+     */
+    String HISTORY_ORDER = " ORDER BY t.transfer_date DESC, t.id DESC LIMIT :limit";
+
+    /**
+     * Внешний запрос истории: сливает ветки UNION ALL и оставляет первые :limit строк.
+     * Сортируются только строки веток, то есть не больше (2 * число карт * limit) строк.
+     */
+    String HISTORY_PAGE = "SELECT t.id AS \"id\", t.from_card_id AS \"fromCardId\", t.to_card_id AS \"toCardId\", " +
+            "t.amount AS \"amount\", t.transfer_date AS \"transferDate\", t.status AS \"status\", " +
+            "t.description AS \"description\" FROM (";
+
+    /**
+     * Граница keyset-пагинации: перевод строго раньше пары (beforeDate, beforeId).
+     */
+    String HISTORY_BEFORE = " AND (t.transfer_date, t.id) < (:beforeDate, :beforeId)";
+
+    /**
+     * Находит первую страницу переводов по картам пользователя.
+     * <p>
+     * Для каждой карты отдельно выбираются до :limit последних исходящих и входящих переводов:
+     * каждая ветка читает индекс (from_card_id, transfer_date, id) или (to_card_id, transfer_date, id)
+     * в нужном порядке и останавливается после :limit строк. Переводы между картами из списка
+     * попадают только в ветку исходящих. Ветки объединяются через UNION ALL, и сортируется
+     * только их результат, поэтому стоимость страницы не зависит от длины истории.
+     *
+     * @param cardIds идентификаторы карт (не пустой список)
+     * @param limit   максимальное количество переводов
+     * @return переводы от новых к старым
+     */
+    @Query(value = HISTORY_PAGE +
+            "SELECT t.* FROM cards c CROSS JOIN LATERAL (" +
+            "SELECT " + HISTORY_COLUMNS + " FROM transfers t WHERE t.from_card_id = c.id" +
+            HISTORY_ORDER + ") t WHERE c.id IN (:cardIds) " +
+            "UNION ALL " +
+            "SELECT t.* FROM cards c CROSS JOIN LATERAL (" +
+            "SELECT " + HISTORY_COLUMNS + " FROM transfers t WHERE t.to_card_id = c.id " +
+            "AND t.from_card_id NOT IN (:cardIds)" +
+            HISTORY_ORDER + ") t WHERE c.id IN (:cardIds)" +
+            ") t" + HISTORY_ORDER,
+            nativeQuery = true)
+    List<TransferHistoryView> findCardsTransfersFirstPage(
+            @Param("cardIds") Collection<Long> cardIds,
+            @Param("limit") int limit);
+
+    /**
+     * Находит страницу переводов по картам пользователя, начиная строго после пары (beforeDate, beforeId)
+     * в порядке (transferDate DESC, id DESC). Устроен так же, как {@link #findCardsTransfersFirstPage},
+     * а граница задается сравнением строк, которое PostgreSQL использует как условие индекса.
      *
-     * @param fromUserId идентификатор пользователя как отправителя
-     * @param toUserId   идентификатор пользователя как получателя
-     * @return список переводов пользователя
+     * @param cardIds    идентификаторы карт (не пустой список)
+     * @param beforeDate дата перевода, с которой начинается страница (не включительно)
+     * @param beforeId   идентификатор перевода, с которого начинается страница (не включительно)
+     * @param limit      максимальное количество переводов
+     * @return переводы от новых к старым
      */
-    List<Transfer> findByFromCardUserIdOrToCardUserId(Long fromUserId, Long toUserId);
-}
\ No newline at end of file
+    @Query(value = HISTORY_PAGE +
+            "SELECT t.* FROM cards c CROSS JOIN LATERAL (" +
+            "SELECT " + HISTORY_COLUMNS + " FROM transfers t WHERE t.from_card_id = c.id" +
+            HISTORY_BEFORE + HISTORY_ORDER + ") t WHERE c.id IN (:cardIds) " +
+            "UNION ALL " +
+            "SELECT t.* FROM cards c CROSS JOIN LATERAL (" +
+            "SELECT " + HISTORY_COLUMNS + " FROM transfers t WHERE t.to_card_id = c.id " +
+            "AND t.from_card_id NOT IN (:cardIds)" +
+            HISTORY_BEFORE + HISTORY_ORDER + ") t WHERE c.id IN (:cardIds)" +
+            ") t" + HISTORY_ORDER,
+            nativeQuery = true)
+    List<TransferHistoryView> findCardsTransfersPageBefore(
+            @Param("cardIds") Collection<Long> cardIds,
+            @Param("beforeDate") LocalDateTime beforeDate,
+            @Param("beforeId") Long beforeId,
+            @Param("limit") int limit);
+
+    /**
+     * Находит первую страницу переводов между картами пользователя и чужой картой.
+     * Ветки исходящих и входящих переводов чужой карты читают ее индексы в нужном порядке
+     * и отбрасывают переводы с другими картами.
+     *
+     * @param cardIds       идентификаторы карт пользователя (не пустой список)
+     * @param counterpartId идентификатор чужой карты
+     * @param limit         максимальное количество переводов
+     * @return переводы от новых к старым
+     */
+    @Query(value = HISTORY_PAGE +
+            "(SELECT " + HISTORY_COLUMNS + " FROM transfers t " +
+            "WHERE t.from_card_id = :counterpartId AND t.to_card_id IN (:cardIds)" + HISTORY_ORDER + ") " +
+            "UNION ALL " +
+            "(SELECT " + HISTORY_COLUMNS + " FROM transfers t " +
+            "WHERE t.to_card_id = :counterpartId AND t.from_card_id IN (:cardIds)" + HISTORY_ORDER + ")" +
+            ") t" + HISTORY_ORDER,
+            nativeQuery = true)
+    List<TransferHistoryView> findCounterpartTransfersFirstPage(
+            @Param("cardIds") Collection<Long> cardIds,
+            @Param("counterpartId") Long counterpartId,
+            @Param("limit") int limit);
+
+    /**
+     * Находит страницу переводов между картами пользователя и чужой картой,
+     * начиная строго после пары (beforeDate, beforeId) в порядке (transferDate DESC, id DESC).
+     *
+     * @param cardIds       идентификаторы карт пользователя (не пустой список)
+     * @param counterpartId идентификатор чужой карты
+     * @param beforeDate    дата перевода, с которой начинается страница (не включительно)
+     * @param beforeId      идентификатор перевода, с которого начинается страница (не включительно)
+     * @param limit         максимальное количество переводов
+     * @return переводы от новых к старым
+     */
+    @Query(value = HISTORY_PAGE +
+            "(SELECT " + HISTORY_COLUMNS + " FROM transfers t " +
+            "WHERE t.from_card_id = :counterpartId AND t.to_card_id IN (:cardIds)" +
+            HISTORY_BEFORE + HISTORY_ORDER + ") " +
+            "UNION ALL " +
+            "(SELECT " + HISTORY_COLUMNS + " FROM transfers t " +
+            "WHERE t.to_card_id = :counterpartId AND t.from_card_id IN (:cardIds)" +
+            HISTORY_BEFORE + HISTORY_ORDER + ")" +
+            ") t" + HISTORY_ORDER,
+            nativeQuery = true)
+    List<TransferHistoryView> findCounterpartTransfersPageBefore(
+            @Param("cardIds") Collection<Long> cardIds,
+            @Param("counterpartId") Long counterpartId,
+            @Param("beforeDate") LocalDateTime beforeDate,
+            @Param("beforeId") Long beforeId,
+            @Param("limit") int limit);
+
+    /**
+     * Потоково выбирает все переводы системы, подходящие под фильтры, в виде DTO-проекции.
+     * Используется административной выгрузкой.
+     * Поток должен потребляться и закрываться внутри транзакции.
+     *
+     * @param cardId   идентификатор карты для фильтрации (может быть null)
+     * @param dateFrom начало периода включительно (может быть null)
+     * @param dateTo   конец периода не включительно (может быть null)
+     * @return поток переводов от новых к старым
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.gshelgaas.bankcards.dto.TransferResponseDto(" +
+            "t.id, t.fromCard.id, t.toCard.id, t.amount, t.transferDate, t.status, t.description) " +
+            "FROM Transfer t WHERE " +
+            "(:cardId IS NULL OR t.fromCard.id = :cardId OR t.toCard.id = :cardId) AND " +
+            "(:dateFrom IS NULL OR t.transferDate >= :dateFrom) AND " +
+            "(:dateTo IS NULL OR t.transferDate < :dateTo) " +
+            "ORDER BY t.transferDate DESC, t.id DESC")
+    Stream<TransferResponseDto> streamAllTransfers(
+            @Param("cardId") Long cardId,
+            @Param("dateFrom") LocalDateTime dateFrom,
+            @Param("dateTo") LocalDateTime dateTo);
+
+    /**
+     * Проекция перевода для запросов истории на SQL.
+     */
+    interface TransferHistoryView {
+
+        /**
+         * @return идентификатор перевода
+         */
+        Long getId();
+
+        /**
+         * @return идентификатор карты-отправителя
+         */
+        Long getFromCardId();
+
+        /**
+         * @return идентификатор карты-получателя
+         */
+        Long getToCardId();
+
+        /**
+         * @return сумма перевода
+         */
+        BigDecimal getAmount();
+
+        /**
+         * @return дата и время перевода
+         */
+        LocalDateTime getTransferDate();
+
+        /**
+         * @return статус перевода
+         */
+        String getStatus();
+
+        /**
+         * @return описание перевода
+         */
+        String getDescription();
+    }
+}
@@ -2,6 +2,9 @@ package com.gshelgaas.bankcards.repository;
 
 import com.gshelgaas.bankcards.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -30,4 +33,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @return true если пользователь с таким email существует, иначе false
      */
     boolean existsByEmail(String email);
-}
\ No newline at end of file
+
+    /**
+     * Находит роль пользователя по идентификатору без загрузки сущности.
+     *
+     * @param userId идентификатор пользователя
+     * @return роль пользователя, если пользователь существует
+     */
+    @Query("SELECT u.role FROM User u WHERE u.id = :userId")
+    Optional<User.Role> findRoleById(@Param("userId") Long userId);
+
+    /**
+     * Заменяет хеш пароля пользователя.
+     *
+     * @param userId   идентификатор пользователя
+     * @param password новый хеш пароля
+     * @return количество обновленных записей
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.id = :userId")
+    int updatePassword(@Param("userId") Long userId, @Param("password") String password);
+}
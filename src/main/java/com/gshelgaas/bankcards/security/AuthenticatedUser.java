@@ -0,0 +1,85 @@
+package com.gshelgaas.bankcards.security;
+
+import com.gshelgaas.bankcards.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Principal аутентифицированного пользователя.
+ * Содержит идентификатор, email и роль, поэтому текущего пользователя можно получить
+ * из SecurityContext без обращения к базе данных. Для запросов с JWT создается
+ * напрямую из проверенных claims токена, при входе в систему - из сущности {@link User}.
+ *
+ * @author Георгий Шельгаас
+ */
+@Getter
+@ToString(exclude = "password")
+@EqualsAndHashCode(of = "id")
+@AllArgsConstructor
+public class AuthenticatedUser implements UserDetails, CredentialsContainer {
+
+    /**
+     * Идентификатор пользователя.
+     */
+    private final Long id;
+
+    /**
+     * Email пользователя.
+     */
+    private final String email;
+
+    /**
+     * Роль пользователя.
+     */
+    private final User.Role role;
+
+    /**
+     * Хеш пароля. Заполнен только на время проверки учетных данных при входе.
+     */
+    private String password;
+
+    /**
+     * Создает principal из сущности пользователя, включая хеш пароля для проверки учетных данных.
+     *
+     * @param user сущность пользователя
+     * @return principal пользователя
+     */
+    public static AuthenticatedUser fromEntity(User user) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getRole(), user.getPassword());
+    }
+
+    /**
+     * Создает независимую копию principal.
+     * Spring Security стирает пароль у principal после проверки учетных данных,
+     * поэтому разделяемые (кешированные) экземпляры наружу не выдаются.
+     *
+     * @return копия principal
+     */
+    public AuthenticatedUser copy() {
+        return new AuthenticatedUser(id, email, role, password);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority(role.name()));
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public void eraseCredentials() {
+        password = null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.gshelgaas.bankcards.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+
+/**
+ * Подбирает стоимость (strength) BCrypt под целевое время хеширования на текущем оборудовании.
+ * Время хеширования удваивается с каждой единицей стоимости, поэтому достаточно измерить
+ * одну недорогую стоимость и экстраполировать.
+ *
+ * @author Георгий Шельгаас
+ */
+@Slf4j
+public final class BCryptStrengthCalibrator {
+
+    private static final int PROBE_STRENGTH = 8;
+    private static final int PROBE_RUNS = 5;
+    private static final String PROBE_PASSWORD = "calibration-password";
+
+    private BCryptStrengthCalibrator() {
+    }
+
+    /**
+     * Подбирает наибольшую стоимость, при которой хеширование не дольше целевого времени.
+     *
+     * @param targetLatency целевое время одного хеширования
+     * @param minStrength   минимально допустимая стоимость
+     * @param maxStrength   максимально допустимая стоимость
+     * @return стоимость в диапазоне [minStrength, maxStrength]
+     */
+    public static int calibrate(Duration targetLatency, int minStrength, int maxStrength) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(PROBE_STRENGTH);
+        probe.encode(PROBE_PASSWORD);
+
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < PROBE_RUNS; i++) {
+            long start = System.nanoTime();
+            probe.encode(PROBE_PASSWORD);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+
+        double ratio = (double) targetLatency.toNanos() / Math.max(1, fastest);
+        int strength = PROBE_STRENGTH + (int) Math.floor(Math.log(ratio) / Math.log(2));
+        int calibrated = Math.max(minStrength, Math.min(maxStrength, strength));
+
+        log.info("BCrypt strength {} calibrated: strength {} takes {} us, target {} ms",
+                calibrated, PROBE_STRENGTH, fastest / 1000, targetLatency.toMillis());
+        return calibrated;
+    }
+}
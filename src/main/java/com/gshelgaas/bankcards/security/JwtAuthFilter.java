@@ -1,24 +1,36 @@
 package com.gshelgaas.bankcards.security;
 
+import com.gshelgaas.bankcards.jfr.JwtAuthEvent;
+import com.gshelgaas.bankcards.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 /**
  * Фильтр для аутентификации через JWT токены.
  * Перехватывает HTTP запросы и проверяет JWT токен в заголовке Authorization.
  * Если токен валиден, устанавливает аутентификацию в SecurityContext.
+ * Principal (идентификатор, email, роль) берется из claims токена, поэтому
+ * аутентификация запроса не требует обращения к базе данных.
+ * Отозванные токены отклоняются через {@link TokenRevocationService}.
+ * Время проверки токена публикуется в метрике {@code auth.jwt.filter}
+ * (тег result: authenticated или rejected) и в JFR событии {@link JwtAuthEvent}.
  *
  * @author Георгий Шельгаас
  */
@@ -29,6 +41,11 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserDetailsServiceImpl userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${jwt.revocation-check:false}")
+    private boolean revocationCheckEnabled;
 
     /**
      * Обрабатывает каждый HTTP запрос для проверки JWT аутентификации.
@@ -52,23 +69,74 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             return;
         }
 
-        // Извлекаем и проверяем JWT токен
-        String jwt = authHeader.substring(7);
-        String userEmail = jwtUtil.extractEmail(jwt);
+        JwtAuthEvent event = new JwtAuthEvent();
+        event.begin();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        AuthenticatedUser authenticatedUser = null;
+        try {
+            // Проверяем подпись и срок действия JWT токена за один разбор, затем отзыв токена
+            String jwt = authHeader.substring(7);
+            Optional<Claims> claims = jwtUtil.parseAndValidate(jwt)
+                    .filter(this::isNotRevoked);
 
-        // Устанавливаем аутентификацию если токен валиден
-        if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(userEmail);
+            // Устанавливаем аутентификацию если токен валиден
+            if (claims.isPresent() && SecurityContextHolder.getContext().getAuthentication() == null) {
+                AuthenticatedUser principal = resolvePrincipal(claims.get());
 
-            if (jwtUtil.validateToken(jwt)) {
-                UsernamePasswordAuthenticationToken authToken =
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
-                log.debug("Authenticated user: {}", userEmail);
+                if (principal != null) {
+                    UsernamePasswordAuthenticationToken authToken =
+                            new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                    log.debug("Authenticated user: {}", principal.getEmail());
+                    authenticatedUser = principal;
+                }
+            }
+        } finally {
+            String result = authenticatedUser != null ? "authenticated" : "rejected";
+            sample.stop(meterRegistry.timer("auth.jwt.filter", "result", result));
+            if (event.shouldCommit()) {
+                event.setUserId(authenticatedUser != null ? authenticatedUser.getId() : 0L);
+                event.setResult(result);
+                event.commit();
             }
         }
 
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    private boolean isNotRevoked(Claims claims) {
+        if (tokenRevocationService.isRevoked(claims.getId())) {
+            log.warn("Revoked JWT token used: {}", claims.getId());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Создает principal из claims токена без обращения к базе данных.
+     * Для токенов, выпущенных без claims пользователя, principal загружается из базы.
+     * При включенной проверке отзыва дополнительно проверяется, что пользователь
+     * не удален и его роль не изменилась.
+     *
+     * @return principal или null, если токен не должен аутентифицировать запрос
+     */
+    private AuthenticatedUser resolvePrincipal(Claims claims) {
+        Optional<AuthenticatedUser> fromClaims = jwtUtil.toPrincipal(claims);
+        if (fromClaims.isEmpty()) {
+            try {
+                return (AuthenticatedUser) userDetailsService.loadUserByUsername(claims.getSubject());
+            } catch (UsernameNotFoundException e) {
+                log.warn("JWT subject not found: {}", claims.getSubject());
+                return null;
+            }
+        }
+
+        AuthenticatedUser principal = fromClaims.get();
+        if (revocationCheckEnabled && !userDetailsService.isStillValid(principal)) {
+            log.warn("JWT token rejected for removed or changed user: {}", principal.getId());
+            return null;
+        }
+        return principal;
+    }
+}
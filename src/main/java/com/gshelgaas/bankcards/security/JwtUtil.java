@@ -1,6 +1,9 @@
 package com.gshelgaas.bankcards.security;
 
+import com.gshelgaas.bankcards.entity.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -10,10 +13,15 @@ import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Утилита для работы с JWT токенами.
  * Обеспечивает генерацию, валидацию и извлечение данных из JWT токенов.
+ * <p>
+ * Ключ подписи и парсер создаются один раз при создании бина:
+ * {@link JwtParser} неизменяем и потокобезопасен.
  *
  * @author Георгий Шельгаас
  */
@@ -21,70 +29,93 @@ import java.util.Date;
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    static final String USER_ID_CLAIM = "uid";
+    static final String ROLE_CLAIM = "role";
 
-    @Value("${jwt.expiration}")
-    private Long expiration;
+    private final Key signingKey;
+    private final JwtParser parser;
+    private final long expiration;
 
     /**
-     * Генерирует JWT токен для указанного email.
+     * Создает утилиту с однократно вычисленным ключом подписи.
      *
-     * @param email email пользователя
-     * @return JWT токен
+     * @param secret     секрет для HMAC-подписи токенов
+     * @param expiration время жизни токена в миллисекундах
      */
-    public String generateToken(String email) {
-        log.info("Generating JWT token for email: {}", email);
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+                   @Value("${jwt.expiration}") long expiration) {
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        this.expiration = expiration;
+    }
 
-        return Jwts.builder()
-                .setSubject(email)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
-                .compact();
+    /**
+     * Возвращает время жизни выдаваемых токенов.
+     *
+     * @return время жизни в миллисекундах
+     */
+    public long getExpiration() {
+        return expiration;
     }
 
     /**
-     * Извлекает email из JWT токена.
+     * Генерирует JWT токен для пользователя.
+     * Помимо email (subject) токен содержит идентификатор и роль пользователя,
+     * чтобы запросы можно было аутентифицировать без обращения к базе данных,
+     * и уникальный идентификатор (jti) для отзыва токена.
      *
-     * @param token JWT токен
-     * @return email пользователя
+     * @param user аутентифицированный пользователь
+     * @return JWT токен
      */
-    public String extractEmail(String token) {
-        return extractAllClaims(token).getSubject();
+    public String generateToken(AuthenticatedUser user) {
+        log.info("Generating JWT token for email: {}", user.getEmail());
+
+        return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
+                .setSubject(user.getEmail())
+                .claim(USER_ID_CLAIM, user.getId())
+                .claim(ROLE_CLAIM, user.getRole().name())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + expiration))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
+                .compact();
     }
 
     /**
-     * Проверяет валидность JWT токена.
+     * Проверяет подпись и срок действия JWT токена и возвращает его claims.
+     * Подпись проверяется ровно один раз.
      *
      * @param token JWT токен
-     * @return true если токен валиден, false в противном случае
+     * @return claims токена или пустой Optional, если токен невалиден
      */
-    public boolean validateToken(String token) {
+    public Optional<Claims> parseAndValidate(String token) {
         try {
-            extractAllClaims(token);
-            return true;
-        } catch (Exception e) {
+            return Optional.of(parser.parseClaimsJws(token).getBody());
+        } catch (JwtException | IllegalArgumentException e) {
             log.warn("Invalid JWT token: {}", e.getMessage());
-            return false;
+            return Optional.empty();
         }
     }
 
     /**
-     * Создает ключ для подписи JWT токенов.
-     */
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
-    }
-
-    /**
-     * Извлекает все claims из JWT токена.
+     * Создает principal из проверенных claims токена.
+     *
+     * @param claims claims, полученные из {@link #parseAndValidate(String)}
+     * @return principal или пустой Optional, если токен выпущен без claims пользователя
      */
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public Optional<AuthenticatedUser> toPrincipal(Claims claims) {
+        Long userId = claims.get(USER_ID_CLAIM, Long.class);
+        String role = claims.get(ROLE_CLAIM, String.class);
+        if (userId == null || role == null || claims.getSubject() == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new AuthenticatedUser(userId, claims.getSubject(), User.Role.valueOf(role), null));
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown role in JWT token: {}", role);
+            return Optional.empty();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,203 @@
+package com.gshelgaas.bankcards.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gshelgaas.bankcards.exception.ApiError;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фильтр ограничения частоты попыток входа.
+ * Проверяет POST /auth/login до аутентификации, то есть до вычисления BCrypt:
+ * сначала по IP адресу клиента, затем по email из тела запроса.
+ * При превышении лимита возвращает 429 Too Many Requests с заголовком Retry-After.
+ * Токен по email берется до аутентификации, поэтому параллельные попытки не превышают лимит,
+ * и возвращается после успешного входа: лимит по email расходуют только неудачные попытки,
+ * и успешные входы владельца не приближают блокировку его учетной записи.
+ * <p>
+ * Тело запроса читается один раз и передается дальше по цепочке из памяти.
+ * IP адрес берется из {@link HttpServletRequest#getRemoteAddr()}; за обратным прокси
+ * следует включить {@code server.forward-headers-strategy}.
+ *
+ * @author Георгий Шельгаас
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LoginRateLimitFilter extends OncePerRequestFilter {
+
+    private static final String LOGIN_PATH = "/auth/login";
+    private static final int MAX_BODY_BYTES = 8192;
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final LoginRateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+
+    @Value("${auth.rate-limit.enabled:true}")
+    private boolean enabled = true;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled
+                || !"POST".equals(request.getMethod())
+                || !LOGIN_PATH.equals(request.getServletPath());
+    }
+
+    /**
+     * Проверяет лимиты попыток входа и пропускает запрос дальше, если они не превышены.
+     * После успешного входа возвращает токен по email.
+     *
+     * @param request     HTTP запрос
+     * @param response    HTTP ответ
+     * @param filterChain цепочка фильтров
+     * @throws ServletException если обработка запроса не удалась
+     * @throws IOException      если произошла I/O ошибка
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+
+        long wait = rateLimiter.tryAcquireIp(request.getRemoteAddr());
+        if (wait > 0) {
+            log.warn("Login rate limit exceeded for IP: {}", request.getRemoteAddr());
+            reject(response, wait);
+            return;
+        }
+
+        byte[] body = request.getInputStream().readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            writeError(response, HttpStatus.PAYLOAD_TOO_LARGE, "Login request is too large");
+            return;
+        }
+
+        String email = extractEmail(body);
+        if (email != null) {
+            wait = rateLimiter.tryAcquireEmail(email);
+            if (wait > 0) {
+                log.warn("Login rate limit exceeded for email: {}", email);
+                reject(response, wait);
+                return;
+            }
+        }
+
+        filterChain.doFilter(new CachedBodyRequest(request, body), response);
+
+        if (email != null && HttpStatusCode.valueOf(response.getStatus()).is2xxSuccessful()) {
+            rateLimiter.refundEmail(email);
+        }
+    }
+
+    /**
+     * Извлекает email из JSON тела запроса.
+     * Некорректное тело пропускается без ключа email: его отклонит валидация контроллера.
+     */
+    private String extractEmail(byte[] body) {
+        try {
+            String email = objectMapper.readTree(body).path("email").asText(null);
+            return email == null || email.isBlank() ? null : email;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        writeError(response, HttpStatus.TOO_MANY_REQUESTS, "Too many login attempts");
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), ApiError.builder()
+                .message(message)
+                .reason("Login attempts are temporarily limited.")
+                .status(status.name())
+                .timestamp(LocalDateTime.now().format(TIMESTAMP_FORMATTER))
+                .errors(List.of(message))
+                .build());
+    }
+
+    /**
+     * Запрос с телом, заранее прочитанным в память.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException("Asynchronous read is not supported");
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.gshelgaas.bankcards.security;
+
+import com.gshelgaas.bankcards.util.TokenBucket;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Ограничитель частоты попыток входа по IP адресу и по email.
+ * Для каждого ключа хранится {@link TokenBucket}; корзины лежат в ограниченных по размеру кешах
+ * и удаляются после простоя дольше периода пополнения (к этому моменту корзина снова полна),
+ * поэтому объем памяти не зависит от количества атакующих адресов.
+ * <p>
+ * Метрики: {@code auth.login.rate_limit} (теги key: ip, email; result: allowed, rejected, refunded)
+ * и статистика кешей {@code loginRateLimit.ip}, {@code loginRateLimit.email} (количество ключей, вытеснения).
+ *
+ * @author Георгий Шельгаас
+ */
+@Component
+public class LoginRateLimiter {
+
+    private final Limiter ipLimiter;
+    private final Limiter emailLimiter;
+
+    /**
+     * Создает ограничитель.
+     *
+     * @param ipCapacity         допустимое количество попыток с одного IP за период
+     * @param ipRefillPeriod     период пополнения для IP
+     * @param emailCapacity      допустимое количество попыток для одного email за период
+     * @param emailRefillPeriod  период пополнения для email
+     * @param maxKeys            максимальное количество отслеживаемых ключей каждого типа
+     * @param meterRegistry      реестр метрик
+     */
+    public LoginRateLimiter(
+            @Value("${auth.rate-limit.ip.capacity:20}") int ipCapacity,
+            @Value("${auth.rate-limit.ip.refill-period:PT1M}") Duration ipRefillPeriod,
+            @Value("${auth.rate-limit.email.capacity:5}") int emailCapacity,
+            @Value("${auth.rate-limit.email.refill-period:PT5M}") Duration emailRefillPeriod,
+            @Value("${auth.rate-limit.max-keys:100000}") long maxKeys,
+            MeterRegistry meterRegistry) {
+
+        this.ipLimiter = new Limiter("ip", ipCapacity, ipRefillPeriod, maxKeys, meterRegistry);
+        this.emailLimiter = new Limiter("email", emailCapacity, emailRefillPeriod, maxKeys, meterRegistry);
+    }
+
+    /**
+     * Учитывает попытку входа с IP адреса.
+     *
+     * @param ip IP адрес клиента
+     * @return 0 если попытка разрешена, иначе время ожидания в наносекундах
+     */
+    public long tryAcquireIp(String ip) {
+        return ipLimiter.tryAcquire(ip);
+    }
+
+    /**
+     * Учитывает попытку входа для email.
+     *
+     * @param email email из запроса (регистр не учитывается)
+     * @return 0 если попытка разрешена, иначе время ожидания в наносекундах
+     */
+    public long tryAcquireEmail(String email) {
+        return emailLimiter.tryAcquire(email.trim().toLowerCase());
+    }
+
+    /**
+     * Возвращает токен попытки входа для email после успешной аутентификации,
+     * чтобы лимит по email расходовался только неудачными попытками.
+     *
+     * @param email email из запроса (регистр не учитывается)
+     */
+    public void refundEmail(String email) {
+        emailLimiter.refund(email.trim().toLowerCase());
+    }
+
+    /**
+     * Набор корзин для одного типа ключа.
+     */
+    private static final class Limiter {
+
+        private final Cache<String, TokenBucket> buckets;
+        private final int capacity;
+        private final long refillPeriodNanos;
+        private final Counter allowed;
+        private final Counter rejected;
+        private final Counter refunded;
+
+        private Limiter(String key, int capacity, Duration refillPeriod, long maxKeys, MeterRegistry meterRegistry) {
+            this.capacity = capacity;
+            this.refillPeriodNanos = refillPeriod.toNanos();
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maxKeys)
+                    .expireAfterAccess(refillPeriod)
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, buckets, "loginRateLimit." + key);
+            this.allowed = meterRegistry.counter("auth.login.rate_limit", "key", key, "result", "allowed");
+            this.rejected = meterRegistry.counter("auth.login.rate_limit", "key", key, "result", "rejected");
+            this.refunded = meterRegistry.counter("auth.login.rate_limit", "key", key, "result", "refunded");
+        }
+
+        private long tryAcquire(String key) {
+            long wait = buckets.get(key, k -> new TokenBucket(capacity, refillPeriodNanos))
+                    .tryAcquire(System.nanoTime());
+            (wait > 0 ? rejected : allowed).increment();
+            return wait;
+        }
+
+        private void refund(String key) {
+            TokenBucket bucket = buckets.getIfPresent(key);
+            if (bucket != null) {
+                bucket.refund(System.nanoTime());
+                refunded.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.gshelgaas.bankcards.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кодировщик паролей, публикующий процессорное время каждого хеширования и проверки пароля.
+ * Метрика {@code auth.password.hash.cpu} (тег operation: encode, matches) показывает
+ * стоимость BCrypt на поток независимо от конкуренции за CPU.
+ *
+ * @author Георгий Шельгаас
+ */
+public class MeteredPasswordEncoder implements PasswordEncoder {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final PasswordEncoder delegate;
+    private final Timer encodeCpu;
+    private final Timer matchesCpu;
+
+    /**
+     * Создает кодировщик с метриками.
+     *
+     * @param delegate      кодировщик, выполняющий хеширование
+     * @param meterRegistry реестр метрик
+     */
+    public MeteredPasswordEncoder(PasswordEncoder delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.encodeCpu = cpuTimer("encode", meterRegistry);
+        this.matchesCpu = cpuTimer("matches", meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        long start = cpuTime();
+        try {
+            return delegate.encode(rawPassword);
+        } finally {
+            encodeCpu.record(cpuTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        long start = cpuTime();
+        try {
+            return delegate.matches(rawPassword, encodedPassword);
+        } finally {
+            matchesCpu.record(cpuTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private static Timer cpuTimer(String operation, MeterRegistry meterRegistry) {
+        return Timer.builder("auth.password.hash.cpu")
+                .description("CPU time spent hashing or verifying a password")
+                .tag("operation", operation)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Процессорное время текущего потока; если JVM его не поддерживает - время по часам.
+     */
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+}
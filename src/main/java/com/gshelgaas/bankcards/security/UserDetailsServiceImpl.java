@@ -2,28 +2,39 @@ package com.gshelgaas.bankcards.security;
 
 import com.gshelgaas.bankcards.entity.User;
 import com.gshelgaas.bankcards.repository.UserRepository;
+import com.gshelgaas.bankcards.service.UserChangedEvent;
+import com.gshelgaas.bankcards.util.AsyncCacheUtil;
+import com.github.benmanes.caffeine.cache.AsyncCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-
-import java.util.Collections;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 /**
  * Реализация Spring Security UserDetailsService.
  * Загружает данные пользователя для аутентификации и авторизации.
+ * <p>
+ * Загруженные пользователи кешируются по email, поэтому повторные входы и запросы
+ * с токенами без claims пользователя не обращаются к базе данных. Кеш инвалидируется
+ * событием {@link UserChangedEvent} после фиксации транзакции, изменившей пользователя.
+ * <p>
+ * Как {@link UserDetailsPasswordService} сохраняет пересчитанный хеш пароля,
+ * когда при успешном входе хеш оказывается устаревшим.
  *
  * @author Георгий Шельгаас
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    private final AsyncCache<String, AuthenticatedUser> userDetailsCache;
 
     /**
      * Загружает пользователя по email для Spring Security.
@@ -35,15 +46,72 @@ public class UserDetailsServiceImpl implements UserDetailsService {
      */
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        AuthenticatedUser cached = AsyncCacheUtil.get(userDetailsCache, email, this::findByEmail);
+        if (cached == null) {
+            throw new UsernameNotFoundException("User not found with email: " + email);
+        }
+        return cached.copy();
+    }
+
+    /**
+     * Удаляет из кеша данные измененного пользователя.
+     * Вызывается после фиксации транзакции, чтобы конкурентный запрос не закешировал
+     * незафиксированное состояние; без транзакции вызывается сразу.
+     *
+     * @param event событие изменения пользователя
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        log.debug("Invalidating user details cache: {}", event);
+
+        if (event.getEmail() != null) {
+            userDetailsCache.synchronous().invalidate(event.getEmail());
+        }
+        userDetailsCache.synchronous().asMap().values().removeIf(user -> user.getId().equals(event.getUserId()));
+    }
+
+    /**
+     * Загружает пользователя из базы данных при промахе кеша.
+     * Выполняется на исполнителе кеша вне его блокировок. Отсутствующие пользователи не кешируются.
+     */
+    private AuthenticatedUser findByEmail(String email) {
         log.info("Loading user by email: {}", email);
 
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+        return userRepository.findByEmail(email)
+                .map(AuthenticatedUser::fromEntity)
+                .orElse(null);
+    }
+
+    /**
+     * Сохраняет пересчитанный хеш пароля пользователя.
+     * Вызывается Spring Security после успешной проверки пароля, если
+     * {@link org.springframework.security.crypto.password.PasswordEncoder#upgradeEncoding} требует пересчета.
+     *
+     * @param user        principal с устаревшим хешем
+     * @param newPassword новый хеш пароля
+     * @return principal с новым хешем
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        AuthenticatedUser principal = (AuthenticatedUser) user;
+        userRepository.updatePassword(principal.getId(), newPassword);
+        userDetailsCache.synchronous().invalidate(principal.getEmail());
+        log.info("Password hash upgraded for user: {}", principal.getId());
 
-        return new org.springframework.security.core.userdetails.User(
-                user.getEmail(),
-                user.getPassword(),
-                Collections.singletonList(new SimpleGrantedAuthority(user.getRole().name()))
-        );
+        return new AuthenticatedUser(principal.getId(), principal.getEmail(), principal.getRole(), newPassword);
+    }
+
+    /**
+     * Проверяет, что пользователь из токена по-прежнему существует и его роль не изменилась.
+     * Используется опциональной проверкой отзыва токенов удаленных и пониженных в правах пользователей.
+     *
+     * @param principal principal, созданный из claims токена
+     * @return true если пользователь существует с той же ролью
+     */
+    public boolean isStillValid(AuthenticatedUser principal) {
+        return userRepository.findRoleById(principal.getId())
+                .map(role -> role == principal.getRole())
+                .orElse(false);
     }
 }
\ No newline at end of file
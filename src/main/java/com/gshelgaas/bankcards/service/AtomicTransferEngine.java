@@ -0,0 +1,99 @@
+package com.gshelgaas.bankcards.service;
+
+import com.gshelgaas.bankcards.dto.TransferRequestDto;
+import com.gshelgaas.bankcards.entity.Card;
+import com.gshelgaas.bankcards.entity.Transfer;
+import com.gshelgaas.bankcards.exception.ConflictException;
+import com.gshelgaas.bankcards.jfr.CardLockEvent;
+import com.gshelgaas.bankcards.repository.CardRepository;
+import com.gshelgaas.bankcards.repository.TransferRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Выполнение перевода условными UPDATE-запросами в базе данных.
+ * Списание и зачисление выполняются двумя DML-операторами без загрузки сущностей Card,
+ * поэтому нет dirty checking и блокировки строк не удерживаются во время работы Java-кода.
+ * Включается свойством {@code transfer.engine=atomic}.
+ *
+ * @author Георгий Шельгаас
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "transfer.engine", havingValue = "atomic")
+public class AtomicTransferEngine implements TransferEngine {
+
+    private final CardRepository cardRepository;
+    private final TransferRepository transferRepository;
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Операторы выполняются в порядке возрастания id карт, чтобы встречные переводы
+     * захватывали блокировки строк в одном порядке. Если одно из условий не выполнено,
+     * причина определяется дополнительным чтением только на пути ошибки,
+     * а откат транзакции отменяет уже выполненное изменение.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Transfer execute(TransferRequestDto transferRequest, Long userId) {
+        Long fromCardId = transferRequest.getFromCardId();
+        Long toCardId = transferRequest.getToCardId();
+        BigDecimal amount = transferRequest.getAmount();
+        LocalDate today = LocalDate.now();
+
+        CardLockEvent event = new CardLockEvent();
+        event.begin();
+        boolean applied;
+        if (fromCardId <= toCardId) {
+            applied = cardRepository.debitIfAvailable(fromCardId, userId, amount, today) == 1
+                    && cardRepository.creditIfActive(toCardId, amount, today) == 1;
+        } else {
+            applied = cardRepository.creditIfActive(toCardId, amount, today) == 1
+                    && cardRepository.debitIfAvailable(fromCardId, userId, amount, today) == 1;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.setFromCardId(fromCardId);
+            event.setToCardId(toCardId);
+            event.setEngine("atomic");
+            event.commit();
+        }
+
+        if (!applied) {
+            throw explainFailure(fromCardId, toCardId, userId, amount, today);
+        }
+
+        Transfer transfer = Transfer.builder()
+                .fromCard(cardRepository.getReferenceById(fromCardId))
+                .toCard(cardRepository.getReferenceById(toCardId))
+                .amount(amount)
+                .transferDate(LocalDateTime.now())
+                .status(Transfer.TransferStatus.SUCCESS)
+                .description(transferRequest.getDescription())
+                .build();
+
+        return transferRepository.save(transfer);
+    }
+
+    /**
+     * Определяет причину, по которой условное обновление не затронуло строку,
+     * по общим правилам {@link TransferEngine#checkTransfer}.
+     */
+    private RuntimeException explainFailure(Long fromCardId, Long toCardId, Long userId,
+                                            BigDecimal amount, LocalDate today) {
+        Card fromCard = cardRepository.findById(fromCardId).orElse(null);
+        Card toCard = fromCard == null ? null : cardRepository.findById(toCardId).orElse(null);
+
+        RuntimeException failure = TransferEngine.checkTransfer(fromCard, toCard, userId,
+                fromCard == null ? null : fromCard.getBalance(), amount, today);
+        return failure != null ? failure : new ConflictException("Transfer could not be applied");
+    }
+}
@@ -2,11 +2,12 @@ package com.gshelgaas.bankcards.service;
 
 import com.gshelgaas.bankcards.dto.AuthRequestDto;
 import com.gshelgaas.bankcards.dto.AuthResponseDto;
+import com.gshelgaas.bankcards.exception.UnauthorizedException;
 import org.springframework.security.authentication.BadCredentialsException;
 
 /**
  * Сервис для аутентификации пользователей.
- * Предоставляет функционал для входа в систему и генерации JWT токенов.
+ * Предоставляет функционал для входа в систему, генерации и отзыва JWT токенов.
  *
  * @author Георгий Шельгаас
  */
@@ -14,11 +15,35 @@ public interface AuthService {
 
     /**
      * Выполняет аутентификацию пользователя и генерирует JWT токен.
-     * Проверяет учетные данные и возвращает токен для доступа к защищенным endpoint'ам.
+     * Проверяет учетные данные и возвращает короткоживущий токен для доступа
+     * к защищенным endpoint'ам и refresh токен для его обновления.
      *
      * @param authRequest данные для аутентификации (email и пароль)
-     * @return ответ с JWT токеном
+     * @return ответ с JWT и refresh токенами
      * @throws BadCredentialsException если email или пароль неверные
      */
     AuthResponseDto login(AuthRequestDto authRequest);
-}
\ No newline at end of file
+
+    /**
+     * Обновляет пару токенов по refresh токену без проверки пароля.
+     * Предъявленный refresh токен становится недействительным и заменяется новым.
+     * Повторное предъявление уже использованного токена отзывает все токены,
+     * выданные при том же входе в систему.
+     *
+     * @param refreshToken refresh токен
+     * @return ответ с новыми JWT и refresh токенами
+     * @throws UnauthorizedException если токен неизвестен, просрочен или уже использован
+     */
+    AuthResponseDto refresh(String refreshToken);
+
+    /**
+     * Завершает сеанс: отзывает переданный JWT токен до истечения срока его действия
+     * и, если передан, refresh токен вместе со всем его семейством.
+     *
+     * @param token        JWT токен
+     * @param refreshToken refresh токен (может быть null)
+     * @throws UnauthorizedException    если токен невалиден или просрочен
+     * @throws IllegalArgumentException если токен выпущен без идентификатора (jti) и не может быть отозван
+     */
+    void logout(String token, String refreshToken);
+}
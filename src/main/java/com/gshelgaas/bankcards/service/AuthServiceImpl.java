@@ -2,18 +2,43 @@ package com.gshelgaas.bankcards.service;
 
 import com.gshelgaas.bankcards.dto.AuthRequestDto;
 import com.gshelgaas.bankcards.dto.AuthResponseDto;
+import com.gshelgaas.bankcards.entity.RefreshToken;
+import com.gshelgaas.bankcards.entity.User;
+import com.gshelgaas.bankcards.exception.UnauthorizedException;
+import com.gshelgaas.bankcards.repository.RefreshTokenRepository;
+import com.gshelgaas.bankcards.repository.UserRepository;
+import com.gshelgaas.bankcards.security.AuthenticatedUser;
 import com.gshelgaas.bankcards.security.JwtUtil;
+import com.gshelgaas.bankcards.util.EncryptionUtil;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.UUID;
 
 /**
  * Реализация сервиса для аутентификации пользователей.
- * Обрабатывает процесс входа в систему и генерацию JWT токенов.
+ * Обрабатывает процесс входа в систему, генерацию и отзыв JWT токенов.
+ * <p>
+ * При входе выдается короткоживущий JWT токен и одноразовый refresh токен.
+ * Обновление по refresh токену не выполняет проверку пароля (BCrypt), поэтому
+ * короткое время жизни JWT токена не увеличивает нагрузку на CPU.
+ * В базе данных хранится только HMAC-хеш refresh токена.
  *
  * @author Георгий Шельгаас
  */
@@ -22,33 +47,165 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class AuthServiceImpl implements AuthService {
 
+    private static final int REFRESH_TOKEN_BYTES = 32;
+
     private final AuthenticationManager authenticationManager;
-    private final UserDetailsService userDetailsService;
     private final JwtUtil jwtUtil;
+    private final TokenRevocationService tokenRevocationService;
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final EncryptionUtil encryptionUtil;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Value("${jwt.refresh-token.ttl:P14D}")
+    private Duration refreshTokenTtl = Duration.ofDays(14);
 
     /**
      * {@inheritDoc}
      * <p>
      * Реализация включает:
      * - Аутентификацию через Spring Security AuthenticationManager
-     * - Загрузку данных пользователя через UserDetailsService
-     * - Генерацию JWT токена с email пользователя
+     * - Генерацию JWT токена с email, идентификатором и ролью пользователя
+     * - Выдачу refresh токена нового семейства
+     * <p>
+     * Principal берется из результата аутентификации: пользователь загружается
+     * один раз при проверке учетных данных, повторная загрузка не требуется.
+     * Время входа публикуется в метрике {@code auth.login} (тег outcome) с перцентилями.
+     * <p>
+     * Метод не транзакционный: проверка пароля (BCrypt) выполняется без удерживаемого соединения
+     * с базой данных, а refresh токен сохраняется в отдельной короткой транзакции.
      */
     @Override
     public AuthResponseDto login(AuthRequestDto authRequest) {
         log.info("Login attempt for email: {}", authRequest.getEmail());
 
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(authRequest.getEmail(), authRequest.getPassword())
-        );
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            Authentication authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(authRequest.getEmail(), authRequest.getPassword())
+            );
 
-        UserDetails userDetails = userDetailsService.loadUserByUsername(authRequest.getEmail());
-        String token = jwtUtil.generateToken(authRequest.getEmail());
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
+            String refreshToken = transactionTemplate.execute(status -> issueRefreshToken(
+                    userRepository.getReferenceById(user.getId()), UUID.randomUUID().toString()));
 
-        log.info("Login successful for email: {}", authRequest.getEmail());
+            log.info("Login successful for email: {}", authRequest.getEmail());
+            outcome = "success";
+
+            return buildResponse(user, refreshToken);
+        } finally {
+            sample.stop(Timer.builder("auth.login")
+                    .description("Login latency including password verification")
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Реализация помечает токен использованным условным UPDATE, поэтому из конкурентных
+     * запросов с одним токеном новую пару получит только один. Роль пользователя берется
+     * из базы данных, так что ее изменение учитывается при ближайшем обновлении.
+     * Отзыв семейства при повторном использовании фиксируется, несмотря на ошибку в ответе.
+     */
+    @Override
+    @Transactional(noRollbackFor = UnauthorizedException.class)
+    public AuthResponseDto refresh(String refreshToken) {
+        LocalDateTime now = LocalDateTime.now();
+
+        RefreshToken stored = refreshTokenRepository.findByTokenHashWithUser(encryptionUtil.hash(refreshToken))
+                .orElseThrow(() -> new UnauthorizedException("Invalid refresh token"));
+
+        if (stored.getRevokedAt() == null && !stored.getExpiresAt().isAfter(now)) {
+            throw new UnauthorizedException("Refresh token has expired");
+        }
+        if (stored.getRevokedAt() != null || refreshTokenRepository.markUsed(stored.getId(), now) == 0) {
+            int revoked = refreshTokenRepository.revokeFamily(stored.getFamilyId(), now);
+            log.warn("Refresh token reuse detected for user {}, revoked {} tokens",
+                    stored.getUser().getId(), revoked);
+            throw new UnauthorizedException("Refresh token has already been used");
+        }
+
+        AuthenticatedUser user = AuthenticatedUser.fromEntity(stored.getUser());
+        user.eraseCredentials();
+        String rotated = issueRefreshToken(stored.getUser(), stored.getFamilyId());
+
+        log.info("Tokens refreshed for user: {}", user.getId());
+
+        return buildResponse(user, rotated);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional
+    public void logout(String token, String refreshToken) {
+        Claims claims = jwtUtil.parseAndValidate(token)
+                .orElseThrow(() -> new UnauthorizedException("Invalid or expired token"));
+        if (claims.getId() == null) {
+            throw new IllegalArgumentException("Token cannot be revoked");
+        }
+
+        Long userId = jwtUtil.toPrincipal(claims)
+                .map(AuthenticatedUser::getId)
+                .orElse(null);
+        LocalDateTime expiresAt = LocalDateTime.ofInstant(claims.getExpiration().toInstant(), ZoneId.systemDefault());
+
+        tokenRevocationService.revoke(claims.getId(), userId, expiresAt);
+
+        if (refreshToken != null) {
+            refreshTokenRepository.findByTokenHashWithUser(encryptionUtil.hash(refreshToken))
+                    .filter(stored -> stored.getUser().getId().equals(userId))
+                    .ifPresent(stored -> refreshTokenRepository.revokeFamily(stored.getFamilyId(), LocalDateTime.now()));
+        }
+        log.info("Logout for email: {}", claims.getSubject());
+    }
+
+    /**
+     * Удаляет refresh токены с истекшим сроком действия.
+     * Использованные, но не истекшие токены сохраняются для обнаружения повторного использования.
+     */
+    @Scheduled(fixedDelayString = "${jwt.refresh-token.cleanup-interval:PT1H}")
+    @Transactional
+    public void purgeExpiredRefreshTokens() {
+        int deleted = refreshTokenRepository.deleteExpiredBefore(LocalDateTime.now());
+        if (deleted > 0) {
+            log.info("Purged {} expired refresh tokens", deleted);
+        }
+    }
+
+    /**
+     * Генерирует случайный refresh токен и сохраняет его хеш.
+     *
+     * @return refresh токен для передачи клиенту
+     */
+    private String issueRefreshToken(User user, String familyId) {
+        byte[] bytes = new byte[REFRESH_TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        LocalDateTime now = LocalDateTime.now();
+        refreshTokenRepository.save(RefreshToken.builder()
+                .user(user)
+                .tokenHash(encryptionUtil.hash(token))
+                .familyId(familyId)
+                .createdAt(now)
+                .expiresAt(now.plus(refreshTokenTtl))
+                .build());
+        return token;
+    }
 
+    private AuthResponseDto buildResponse(AuthenticatedUser user, String refreshToken) {
         return AuthResponseDto.builder()
-                .token(token)
+                .token(jwtUtil.generateToken(user))
+                .refreshToken(refreshToken)
+                .expiresIn(jwtUtil.getExpiration() / 1000)
                 .build();
     }
-}
\ No newline at end of file
+}
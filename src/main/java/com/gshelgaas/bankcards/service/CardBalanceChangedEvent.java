@@ -0,0 +1,25 @@
+package com.gshelgaas.bankcards.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.Collection;
+
+/**
+ * Событие изменения баланса карт (перевод, пакет переводов, удаление карты).
+ * Публикуется сервисами карт и переводов и используется для инвалидации
+ * кешированных балансов.
+ *
+ * @author Георгий Шельгаас
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class CardBalanceChangedEvent {
+
+    /**
+     * Идентификаторы карт, баланс которых изменился.
+     */
+    private final Collection<Long> cardIds;
+}
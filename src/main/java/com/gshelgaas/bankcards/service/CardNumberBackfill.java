@@ -0,0 +1,75 @@
+package com.gshelgaas.bankcards.service;
+
+import com.gshelgaas.bankcards.entity.Card;
+import com.gshelgaas.bankcards.repository.CardRepository;
+import com.gshelgaas.bankcards.util.CardNumberUtil;
+import com.gshelgaas.bankcards.util.EncryptionUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Заполняет производные от номера столбцы - слепой индекс (card_number_hash)
+ * и замаскированный номер (card_number_masked) - для карт, созданных до их появления.
+ * Оба значения вычисляются из расшифрованного номера ключами приложения, поэтому заполнение
+ * выполняется при старте приложения, а не в SQL-миграции.
+ * Карты обрабатываются порциями, каждая порция - в отдельной транзакции.
+ *
+ * @author Георгий Шельгаас
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CardNumberBackfill {
+
+    private final CardRepository cardRepository;
+    private final EncryptionUtil encryptionUtil;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${encryption.hash-backfill.batch-size:500}")
+    private int batchSize = 500;
+
+    /**
+     * Запускает заполнение после старта приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        backfill();
+    }
+
+    /**
+     * Вычисляет хеш и маску номера для всех карт, у которых они не заполнены.
+     *
+     * @return количество обновленных карт
+     */
+    public long backfill() {
+        long updated = 0;
+        int processed;
+        do {
+            processed = transactionTemplate.execute(status -> {
+                List<Card> cards = cardRepository.findByCardNumberHashIsNullOrCardNumberMaskedIsNullOrderById(
+                        Limit.of(batchSize));
+                cards.forEach(card -> {
+                    String cardNumber = encryptionUtil.decrypt(card.getCardNumber());
+                    card.setCardNumberHash(encryptionUtil.hash(cardNumber));
+                    card.setCardNumberMasked(CardNumberUtil.mask(cardNumber));
+                });
+                cardRepository.saveAll(cards);
+                return cards.size();
+            });
+            updated += processed;
+        } while (processed == batchSize);
+
+        if (updated > 0) {
+            log.info("Backfilled card number hash and mask for {} cards", updated);
+        }
+        return updated;
+    }
+}
@@ -1,6 +1,8 @@
 package com.gshelgaas.bankcards.service;
 
+import com.gshelgaas.bankcards.dto.BlockRequestBulkResultDto;
 import com.gshelgaas.bankcards.dto.BlockRequestDto;
+import com.gshelgaas.bankcards.dto.BlockRequestPageResponseDto;
 import com.gshelgaas.bankcards.dto.BlockRequestResponseDto;
 import com.gshelgaas.bankcards.dto.CardRequestDto;
 import com.gshelgaas.bankcards.dto.CardResponseDto;
@@ -11,6 +13,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 /**
  * Сервис для управления банковскими картами.
@@ -105,6 +108,38 @@ public interface CardService {
      */
     CardResponseDto approveCardBlock(Long cardId);
 
+    /**
+     * Получает страницу очереди запросов на блокировку с курсорной пагинацией.
+     * Доступно только для администратора.
+     *
+     * @param status статус запросов (PENDING, APPROVED, REJECTED)
+     * @param cursor курсор из предыдущей страницы (null для первой страницы)
+     * @param size   количество запросов на странице (не более 100)
+     * @return страница запросов от старых к новым
+     * @throws IllegalArgumentException если статус или курсор некорректны
+     */
+    BlockRequestPageResponseDto getBlockRequests(String status, String cursor, int size);
+
+    /**
+     * Одобряет pending запросы на блокировку пакетом: запросы отмечаются как одобренные,
+     * а их карты блокируются. Доступно только для администратора.
+     * Запросы, которые не найдены, уже обработаны или относятся к истекшей карте, пропускаются.
+     *
+     * @param ids идентификаторы запросов на блокировку
+     * @return идентификаторы обработанных и пропущенных запросов
+     */
+    BlockRequestBulkResultDto approveBlockRequests(List<Long> ids);
+
+    /**
+     * Отклоняет pending запросы на блокировку пакетом: запросы отмечаются как отклоненные,
+     * а карты, ожидающие блокировки, снова становятся активными. Доступно только для администратора.
+     * Запросы, которые не найдены или уже обработаны, пропускаются.
+     *
+     * @param ids идентификаторы запросов на блокировку
+     * @return идентификаторы обработанных и пропущенных запросов
+     */
+    BlockRequestBulkResultDto rejectBlockRequests(List<Long> ids);
+
     /**
      * Получает все карты в системе с пагинацией. Доступно только для администратора.
      *
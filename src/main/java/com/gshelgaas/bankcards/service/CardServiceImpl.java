@@ -1,6 +1,8 @@
 package com.gshelgaas.bankcards.service;
 
+import com.gshelgaas.bankcards.dto.BlockRequestBulkResultDto;
 import com.gshelgaas.bankcards.dto.BlockRequestDto;
+import com.gshelgaas.bankcards.dto.BlockRequestPageResponseDto;
 import com.gshelgaas.bankcards.dto.BlockRequestResponseDto;
 import com.gshelgaas.bankcards.dto.CardRequestDto;
 import com.gshelgaas.bankcards.dto.CardResponseDto;
@@ -13,22 +15,36 @@ import com.gshelgaas.bankcards.exception.NotFoundException;
 import com.gshelgaas.bankcards.repository.BlockRequestRepository;
 import com.gshelgaas.bankcards.repository.CardRepository;
 import com.gshelgaas.bankcards.repository.UserRepository;
+import com.gshelgaas.bankcards.util.AsyncCacheUtil;
+import com.gshelgaas.bankcards.util.CardNumberUtil;
 import com.gshelgaas.bankcards.util.EncryptionUtil;
+import com.gshelgaas.bankcards.util.KeysetCursor;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.Optional;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Реализация сервиса для управления банковскими картами.
  * Обрабатывает бизнес-логику создания, блокировки карт и переводов между картами.
+ * Время выполнения каждого метода публикуется в метрике {@code card.service}
+ * (теги class, method, exception).
  *
  * @author Георгий Шельгаас
  */
@@ -36,17 +52,24 @@ import java.util.Optional;
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
+@Timed(value = "card.service", description = "Card service operation time")
 public class CardServiceImpl implements CardService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
     private final BlockRequestRepository blockRequestRepository;
     private final EncryptionUtil encryptionUtil;
+    private final AsyncCache<Long, CardRepository.BalanceView> cardBalanceCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * {@inheritDoc}
      * <p>
      * Реализация включает шифрование номера карты и валидацию срока действия.
+     * Уникальность номера проверяется по слепому индексу (HMAC номера), а не по шифротексту.
+     * Замаскированный номер сохраняется сразу, чтобы чтение карт не требовало расшифровки.
      */
     @Override
     @Transactional
@@ -56,8 +79,8 @@ public class CardServiceImpl implements CardService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new NotFoundException("User not found with id: " + userId));
 
-        String encryptedCardNumber = encryptionUtil.encrypt(cardRequestDto.getCardNumber());
-        if (cardRepository.existsByCardNumber(encryptedCardNumber)) {
+        String cardNumberHash = encryptionUtil.hash(cardRequestDto.getCardNumber());
+        if (cardRepository.existsByCardNumberHash(cardNumberHash)) {
             throw new ConflictException("Card with this number already exists");
         }
 
@@ -66,7 +89,9 @@ public class CardServiceImpl implements CardService {
         }
 
         Card card = Card.builder()
-                .cardNumber(encryptedCardNumber)
+                .cardNumber(encryptionUtil.encrypt(cardRequestDto.getCardNumber()))
+                .cardNumberHash(cardNumberHash)
+                .cardNumberMasked(CardNumberUtil.mask(cardRequestDto.getCardNumber()))
                 .cardHolder(cardRequestDto.getCardHolder())
                 .expiryDate(cardRequestDto.getExpiryDate())
                 .status(Card.CardStatus.ACTIVE)
@@ -83,15 +108,17 @@ public class CardServiceImpl implements CardService {
 
     /**
      * {@inheritDoc}
+     * <p>
+     * Карта читается DTO-проекцией без загрузки сущностей карты и владельца.
      */
     @Override
     public CardResponseDto getCardById(Long cardId) {
         log.info("Getting card by id: {}", cardId);
 
-        Card card = cardRepository.findById(cardId)
+        CardResponseDto card = cardRepository.findResponseById(cardId)
                 .orElseThrow(() -> new NotFoundException("Card not found with id: " + cardId));
 
-        return mapToResponseDtoWithActualStatus(card);
+        return completeProjection(card);
     }
 
     /**
@@ -117,7 +144,7 @@ public class CardServiceImpl implements CardService {
         }
 
         return cardRepository.findByUserIdWithFilters(userId, statusEnum, pageable)
-                .map(this::mapToResponseDtoWithActualStatus);
+                .map(this::completeProjection);
     }
 
     /**
@@ -162,6 +189,8 @@ public class CardServiceImpl implements CardService {
 
     /**
      * {@inheritDoc}
+     * <p>
+     * Публикует {@link CardBalanceChangedEvent} для инвалидации кеша балансов.
      */
     @Override
     @Transactional
@@ -172,29 +201,32 @@ public class CardServiceImpl implements CardService {
             throw new NotFoundException("Card not found with id: " + cardId);
         }
         cardRepository.deleteById(cardId);
+        eventPublisher.publishEvent(new CardBalanceChangedEvent(List.of(cardId)));
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Реализация включает проверку прав доступа и предотвращение дублирующих запросов.
+     * Карта читается и блокируется одним запросом; владелец, срок действия и статус
+     * проверяются в памяти. Единственность pending запроса на карту гарантирует частичный
+     * уникальный индекс ux_block_requests_card_pending: нарушение ограничения при вставке
+     * преобразуется в {@link ConflictException}, а транзакция откатывается.
      */
     @Override
     @Transactional
     public BlockRequestResponseDto requestCardBlock(Long cardId, Long userId, BlockRequestDto blockRequestDto) {
         log.info("Requesting block for card: {} by user: {}", cardId, userId);
 
-        checkCardOwnership(cardId, userId);
-
-        Card card = cardRepository.findById(cardId)
+        Card card = cardRepository.findByIdForUpdate(cardId)
                 .orElseThrow(() -> new NotFoundException("Card not found"));
 
-        validateCardNotExpired(card, "request block for");
+        if (!card.getUser().getId().equals(userId)) {
+            throw new ForbiddenException("Card does not belong to user");
+        }
 
-        Optional<BlockRequest> existingRequest = blockRequestRepository
-                .findByCardIdAndStatus(cardId, BlockRequest.BlockStatus.PENDING);
+        validateCardNotExpired(card, "request block for");
 
-        if (existingRequest.isPresent()) {
+        if (card.getStatus() == Card.CardStatus.PENDING_BLOCK) {
             throw new ConflictException("Block request already exists for this card");
         }
 
@@ -208,7 +240,13 @@ public class CardServiceImpl implements CardService {
                 .requestedAt(LocalDateTime.now())
                 .build();
 
-        BlockRequest savedRequest = blockRequestRepository.save(blockRequest);
+        BlockRequest savedRequest;
+        try {
+            savedRequest = blockRequestRepository.saveAndFlush(blockRequest);
+        } catch (DataIntegrityViolationException e) {
+            log.info("Concurrent pending block request detected for card: {}", cardId);
+            throw new ConflictException("Block request already exists for this card");
+        }
         return mapToBlockRequestResponseDto(savedRequest);
     }
 
@@ -241,6 +279,96 @@ public class CardServiceImpl implements CardService {
         return mapToResponseDto(card);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BlockRequestPageResponseDto getBlockRequests(String status, String cursor, int size) {
+        log.info("Getting block requests with status: {}, cursor: {}, size: {}", status, cursor, size);
+
+        BlockRequest.BlockStatus statusEnum;
+        try {
+            statusEnum = BlockRequest.BlockStatus.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid block request status: " + status);
+        }
+
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        List<BlockRequestResponseDto> rows = position == null
+                ? blockRequestRepository.findFirstPageByStatus(statusEnum, Limit.of(pageSize + 1))
+                : blockRequestRepository.findPageByStatusAfter(statusEnum, position.getDate(), position.getId(),
+                Limit.of(pageSize + 1));
+
+        boolean hasNext = rows.size() > pageSize;
+        List<BlockRequestResponseDto> content = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            BlockRequestResponseDto last = content.get(content.size() - 1);
+            nextCursor = KeysetCursor.encode(last.getRequestedAt(), last.getId());
+        }
+
+        return BlockRequestPageResponseDto.builder()
+                .content(content)
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Реализация выполняет три запроса независимо от размера пакета: выборку pending запросов
+     * с блокировкой строк запросов и карт, UPDATE запросов и UPDATE карт.
+     */
+    @Override
+    @Transactional
+    public BlockRequestBulkResultDto approveBlockRequests(List<Long> ids) {
+        log.info("Approving {} block requests", ids.size());
+
+        List<BlockRequestRepository.PendingBlockRequestView> approved = blockRequestRepository
+                .findPendingByIdInForUpdate(ids, LocalDate.now()).stream()
+                .filter(request -> !Boolean.TRUE.equals(request.getCardExpired()))
+                .toList();
+
+        if (!approved.isEmpty()) {
+            blockRequestRepository.updateStatusByIdIn(
+                    approved.stream().map(BlockRequestRepository.PendingBlockRequestView::getId).toList(),
+                    BlockRequest.BlockStatus.APPROVED, LocalDateTime.now());
+            cardRepository.updateStatusByIdIn(
+                    approved.stream().map(BlockRequestRepository.PendingBlockRequestView::getCardId).toList(),
+                    Card.CardStatus.BLOCKED);
+        }
+
+        return mapToBulkResult(ids, approved);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Реализация выполняет три запроса независимо от размера пакета: выборку pending запросов
+     * с блокировкой строк запросов и карт, UPDATE запросов и UPDATE карт в статусе PENDING_BLOCK.
+     */
+    @Override
+    @Transactional
+    public BlockRequestBulkResultDto rejectBlockRequests(List<Long> ids) {
+        log.info("Rejecting {} block requests", ids.size());
+
+        List<BlockRequestRepository.PendingBlockRequestView> rejected = blockRequestRepository
+                .findPendingByIdInForUpdate(ids, LocalDate.now());
+
+        if (!rejected.isEmpty()) {
+            blockRequestRepository.updateStatusByIdIn(
+                    rejected.stream().map(BlockRequestRepository.PendingBlockRequestView::getId).toList(),
+                    BlockRequest.BlockStatus.REJECTED, LocalDateTime.now());
+            cardRepository.updateStatusByIdInAndStatus(
+                    rejected.stream().map(BlockRequestRepository.PendingBlockRequestView::getCardId).toList(),
+                    Card.CardStatus.PENDING_BLOCK, Card.CardStatus.ACTIVE);
+        }
+
+        return mapToBulkResult(ids, rejected);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -248,63 +376,77 @@ public class CardServiceImpl implements CardService {
     public Page<CardResponseDto> getAllCards(Pageable pageable) {
         log.info("Getting all cards with pagination");
 
-        return cardRepository.findAll(pageable)
-                .map(this::mapToResponseDtoWithActualStatus);
+        return cardRepository.findAllResponses(pageable)
+                .map(this::completeProjection);
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * Баланс и внешний ключ владельца читаются одним запросом по первичному ключу
+     * и кешируются на короткое время; права проверяются и для закешированного значения.
+     * Метод не открывает транзакцию: попадание в кеш не обращается к пулу соединений,
+     * а промах выполняет единственный запрос в транзакции репозитория на исполнителе кеша,
+     * вне блокировок кеша, поэтому ожидание базы данных не закрепляет поток-носитель.
      */
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public BigDecimal getCardBalance(Long cardId, Long userId) {
         log.info("Getting balance for card: {}, user: {}", cardId, userId);
 
-        Card card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new NotFoundException("Card not found"));
+        CardRepository.BalanceView balance = AsyncCacheUtil.get(cardBalanceCache, cardId,
+                id -> cardRepository.findBalanceById(id).orElse(null));
+        if (balance == null) {
+            throw new NotFoundException("Card not found");
+        }
 
-        if (!card.getUser().getId().equals(userId)) {
+        if (!balance.getUserId().equals(userId)) {
             throw new ForbiddenException("Card does not belong to user");
         }
 
-        return card.getBalance();
+        return balance.getBalance();
     }
 
     /**
-     * Проверяет, что карта принадлежит указанному пользователю.
+     * Удаляет из кеша балансы измененных карт.
+     * Вызывается после фиксации транзакции, чтобы конкурентный запрос не закешировал
+     * незафиксированный баланс; без транзакции вызывается сразу.
+     *
+     * @param event событие изменения баланса
      */
-    private void checkCardOwnership(Long cardId, Long userId) {
-        Card card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new NotFoundException("Card not found"));
-
-        if (!card.getUser().getId().equals(userId)) {
-            throw new ForbiddenException("Card does not belong to user");
-        }
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void onCardBalanceChanged(CardBalanceChangedEvent event) {
+        log.debug("Invalidating card balance cache: {}", event);
+        cardBalanceCache.synchronous().invalidateAll(event.getCardIds());
     }
 
     /**
-     * Преобразует сущность Card в DTO с расчетом актуального статуса.
+     * Дополняет DTO-проекцию карты актуальным статусом и, для карт без сохраненной маски,
+     * номером, замаскированным после расшифровки.
      */
-    private CardResponseDto mapToResponseDtoWithActualStatus(Card card) {
-        Card.CardStatus actualStatus = calculateActualStatus(card);
-
-        return CardResponseDto.builder()
-                .id(card.getId())
-                .cardNumber(maskCardNumber(encryptionUtil.decrypt(card.getCardNumber())))
-                .cardHolder(card.getCardHolder())
-                .expiryDate(card.getExpiryDate())
-                .status(actualStatus.name())
-                .balance(card.getBalance())
-                .userId(card.getUser().getId())
-                .build();
+    private CardResponseDto completeProjection(CardResponseDto card) {
+        if (Card.CardStatus.ACTIVE.name().equals(card.getStatus()) &&
+                card.getExpiryDate().isBefore(LocalDate.now())) {
+            card.setStatus(Card.CardStatus.EXPIRED.name());
+        }
+        if (card.getCardNumber() == null) {
+            cardRepository.findCardNumberById(card.getId())
+                    .map(encryptionUtil::decrypt)
+                    .map(CardNumberUtil::mask)
+                    .ifPresent(card::setCardNumber);
+        }
+        return card;
     }
 
     /**
      * Преобразует сущность Card в DTO без изменения статуса.
+     * Идентификатор владельца берется из ленивого прокси без его инициализации.
      */
     private CardResponseDto mapToResponseDto(Card card) {
         return CardResponseDto.builder()
                 .id(card.getId())
-                .cardNumber(maskCardNumber(encryptionUtil.decrypt(card.getCardNumber())))
+                .cardNumber(maskedCardNumber(card))
                 .cardHolder(card.getCardHolder())
                 .expiryDate(card.getExpiryDate())
                 .status(card.getStatus().name())
@@ -323,6 +465,22 @@ public class CardServiceImpl implements CardService {
                 .reason(blockRequest.getReason())
                 .status(blockRequest.getStatus().name())
                 .requestedAt(blockRequest.getRequestedAt())
+                .processedAt(blockRequest.getProcessedAt())
+                .build();
+    }
+
+    /**
+     * Формирует результат пакетной обработки: обработанные запросы в порядке возрастания id,
+     * пропущенные - в порядке запроса, без повторов.
+     */
+    private BlockRequestBulkResultDto mapToBulkResult(List<Long> ids,
+                                                      List<BlockRequestRepository.PendingBlockRequestView> processed) {
+        Set<Long> processedIds = new HashSet<>();
+        processed.forEach(request -> processedIds.add(request.getId()));
+
+        return BlockRequestBulkResultDto.builder()
+                .processedIds(processedIds.stream().sorted().toList())
+                .skippedIds(ids.stream().distinct().filter(id -> !processedIds.contains(id)).toList())
                 .build();
     }
 
@@ -338,20 +496,14 @@ public class CardServiceImpl implements CardService {
     }
 
     /**
-     * Маскирует номер карты, оставляя видимыми только последние 4 цифры.
+     * Возвращает замаскированный номер карты из сохраненного столбца.
+     * Расшифровка выполняется только для карт, еще не обработанных {@link CardNumberBackfill}.
      */
-    private String maskCardNumber(String cardNumber) {
-        if (cardNumber == null || cardNumber.length() < 4) {
-            return cardNumber;
-        }
-
-        String cleanNumber = cardNumber.replaceAll("\\s+", "");
-
-        if (cleanNumber.length() == 16) {
-            return "**** **** **** " + cleanNumber.substring(12);
-        } else {
-            return "****" + cleanNumber.substring(cleanNumber.length() - 4);
+    private String maskedCardNumber(Card card) {
+        if (card.getCardNumberMasked() != null) {
+            return card.getCardNumberMasked();
         }
+        return CardNumberUtil.mask(encryptionUtil.decrypt(card.getCardNumber()));
     }
 
     /**
@@ -0,0 +1,105 @@
+package com.gshelgaas.bankcards.service;
+
+import com.gshelgaas.bankcards.dto.TransferRequestDto;
+import com.gshelgaas.bankcards.entity.Card;
+import com.gshelgaas.bankcards.entity.Transfer;
+import com.gshelgaas.bankcards.jfr.CardLockEvent;
+import com.gshelgaas.bankcards.repository.CardRepository;
+import com.gshelgaas.bankcards.repository.TransferRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Выполнение перевода через сущности JPA.
+ * Карты загружаются с блокировкой строк, балансы изменяются в Java
+ * и сохраняются механизмом dirty checking. Используется по умолчанию.
+ *
+ * @author Георгий Шельгаас
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "transfer.engine", havingValue = "entity", matchIfMissing = true)
+public class EntityTransferEngine implements TransferEngine {
+
+    private final CardRepository cardRepository;
+    private final TransferRepository transferRepository;
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Реализация включает:
+     * - Блокировку обеих карт одним запросом в порядке возрастания id
+     * - Проверку прав доступа к карте отправителя
+     * - Валидацию статусов и срока действия карт
+     * - Проверку достаточности средств
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Transfer execute(TransferRequestDto transferRequest, Long userId) {
+        Map<Long, Card> lockedCards = lockCardsInIdOrder(
+                transferRequest.getFromCardId(), transferRequest.getToCardId());
+
+        Card fromCard = lockedCards.get(transferRequest.getFromCardId());
+        Card toCard = lockedCards.get(transferRequest.getToCardId());
+
+        RuntimeException failure = TransferEngine.checkTransfer(fromCard, toCard, userId,
+                fromCard == null ? null : fromCard.getBalance(), transferRequest.getAmount(), LocalDate.now());
+        if (failure != null) {
+            throw failure;
+        }
+
+        fromCard.setBalance(fromCard.getBalance().subtract(transferRequest.getAmount()));
+        toCard.setBalance(toCard.getBalance().add(transferRequest.getAmount()));
+
+        cardRepository.save(fromCard);
+        cardRepository.save(toCard);
+
+        Transfer transfer = Transfer.builder()
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .amount(transferRequest.getAmount())
+                .transferDate(LocalDateTime.now())
+                .status(Transfer.TransferStatus.SUCCESS)
+                .description(transferRequest.getDescription())
+                .build();
+
+        return transferRepository.save(transfer);
+    }
+
+    /**
+     * Блокирует строки карт (SELECT ... FOR UPDATE) в порядке возрастания id.
+     * Единый порядок захвата блокировок исключает взаимоблокировки встречных переводов,
+     * а блокировка до чтения баланса исключает потерянные обновления.
+     */
+    private Map<Long, Card> lockCardsInIdOrder(Long fromCardId, Long toCardId) {
+        List<Long> orderedIds = Stream.of(fromCardId, toCardId)
+                .distinct()
+                .sorted()
+                .toList();
+
+        CardLockEvent event = new CardLockEvent();
+        event.begin();
+        List<Card> lockedCards = cardRepository.findAllByIdInForUpdate(orderedIds);
+        event.end();
+        if (event.shouldCommit()) {
+            event.setFromCardId(fromCardId);
+            event.setToCardId(toCardId);
+            event.setEngine("entity");
+            event.commit();
+        }
+
+        return lockedCards.stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+    }
+}
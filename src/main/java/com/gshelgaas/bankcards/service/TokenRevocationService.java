@@ -0,0 +1,31 @@
+package com.gshelgaas.bankcards.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сервис отзыва JWT токенов до истечения срока их действия.
+ * Отозванные токены хранятся в таблице revoked_tokens до истечения срока действия.
+ *
+ * @author Георгий Шельгаас
+ */
+public interface TokenRevocationService {
+
+    /**
+     * Отзывает токен.
+     *
+     * @param jti       идентификатор токена (claim jti)
+     * @param userId    идентификатор пользователя, которому выдан токен (может быть null)
+     * @param expiresAt дата и время истечения срока действия токена
+     */
+    void revoke(String jti, Long userId, LocalDateTime expiresAt);
+
+    /**
+     * Проверяет, отозван ли токен.
+     * Вызывается на каждый аутентифицированный запрос, поэтому для неотозванных
+     * токенов не должен обращаться к базе данных.
+     *
+     * @param jti идентификатор токена (claim jti), может быть null для токенов без идентификатора
+     * @return true если токен отозван
+     */
+    boolean isRevoked(String jti);
+}
@@ -0,0 +1,135 @@
+package com.gshelgaas.bankcards.service;
+
+import com.gshelgaas.bankcards.entity.RevokedToken;
+import com.gshelgaas.bankcards.repository.RevokedTokenRepository;
+import com.gshelgaas.bankcards.util.BloomFilter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Реализация сервиса отзыва JWT токенов.
+ * <p>
+ * Проверка выполняется в три шага: точное множество токенов, отозванных этим экземпляром
+ * после последнего перестроения фильтра; фильтр Блума по всем действующим отозванным токенам;
+ * и только при положительном ответе фильтра - запрос к базе данных. Для неотозванного токена
+ * фильтр почти всегда отвечает "точно нет", поэтому запрос обходится без обращения к базе.
+ * Фильтр периодически перестраивается из таблицы, что также подхватывает токены,
+ * отозванные другими экземплярами приложения.
+ * <p>
+ * Класс намеренно не помечен {@code @Transactional}: проверка на каждый запрос
+ * не должна открывать транзакцию и занимать соединение.
+ *
+ * @author Георгий Шельгаас
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenRevocationServiceImpl implements TokenRevocationService {
+
+    private static final long MIN_EXPECTED_INSERTIONS = 1024;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    /**
+     * Токены, отозванные этим экземпляром и еще не попавшие в снимок таблицы
+     * при перестроении фильтра. Значение - срок действия токена.
+     */
+    private final Map<String, LocalDateTime> recentlyRevoked = new ConcurrentHashMap<>();
+
+    @Value("${jwt.revoked-tokens.false-positive-rate:0.01}")
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * Текущий фильтр. До первого построения равен null, и проверка идет в базу данных.
+     */
+    private volatile BloomFilter filter;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional
+    public void revoke(String jti, Long userId, LocalDateTime expiresAt) {
+        log.info("Revoking token {} of user {}", jti, userId);
+
+        if (!revokedTokenRepository.existsById(jti)) {
+            revokedTokenRepository.save(RevokedToken.builder()
+                    .jti(jti)
+                    .userId(userId)
+                    .expiresAt(expiresAt)
+                    .revokedAt(LocalDateTime.now())
+                    .build());
+        }
+
+        recentlyRevoked.put(jti, expiresAt);
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(jti);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        if (recentlyRevoked.containsKey(jti)) {
+            return true;
+        }
+
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(jti)) {
+            return false;
+        }
+        return revokedTokenRepository.existsById(jti);
+    }
+
+    /**
+     * Перестраивает фильтр Блума по действующим отозванным токенам из таблицы.
+     * Размер фильтра рассчитывается с запасом по текущему количеству записей.
+     * Токены, попавшие в снимок таблицы, удаляются из множества недавно отозванных.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revoked-tokens.refresh-interval:PT1M}")
+    @Transactional(readOnly = true)
+    public void refreshFilter() {
+        LocalDateTime now = LocalDateTime.now();
+        long active = revokedTokenRepository.countByExpiresAtAfter(now);
+        BloomFilter rebuilt = BloomFilter.create(Math.max(MIN_EXPECTED_INSERTIONS, active * 2), falsePositiveRate);
+
+        try (Stream<String> jtis = revokedTokenRepository.streamActiveJtis(now)) {
+            jtis.forEach(jti -> {
+                rebuilt.put(jti);
+                recentlyRevoked.remove(jti);
+            });
+        }
+        recentlyRevoked.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+
+        filter = rebuilt;
+        log.debug("Revoked token filter rebuilt for {} tokens", active);
+    }
+
+    /**
+     * Удаляет записи о токенах с истекшим сроком действия.
+     * Просроченный токен отклоняется при проверке подписи и срока, поэтому запись больше не нужна.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revoked-tokens.cleanup-interval:PT1H}")
+    @Transactional
+    public void purgeExpired() {
+        int deleted = revokedTokenRepository.deleteExpiredBefore(LocalDateTime.now());
+        if (deleted > 0) {
+            log.info("Purged {} expired revoked tokens", deleted);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.gshelgaas.bankcards.service;
+
+import com.gshelgaas.bankcards.dto.TransferRequestDto;
+import com.gshelgaas.bankcards.entity.Card;
+import com.gshelgaas.bankcards.entity.Transfer;
+import com.gshelgaas.bankcards.exception.ConflictException;
+import com.gshelgaas.bankcards.exception.ForbiddenException;
+import com.gshelgaas.bankcards.exception.NotFoundException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Стратегия выполнения перевода: списание, зачисление и сохранение записи о переводе.
+ * Реализация выбирается свойством {@code transfer.engine} ({@code entity} или {@code atomic}),
+ * что позволяет сравнивать подходы под нагрузкой без изменения API.
+ *
+ * @author Георгий Шельгаас
+ */
+public interface TransferEngine {
+
+    /**
+     * Сообщение об ошибке, если одна из карт не активна или просрочена.
+     */
+    String CARDS_NOT_ACTIVE = "Cards must be active for transfer";
+
+    /**
+     * Сообщение об ошибке при недостатке средств на карте отправителя.
+     */
+    String INSUFFICIENT_FUNDS = "Insufficient funds";
+
+    /**
+     * Выполняет перевод в рамках текущей транзакции.
+     *
+     * @param transferRequest данные перевода (карты, сумма, описание)
+     * @param userId          идентификатор пользователя, выполняющего перевод
+     * @return сохраненная запись о переводе
+     * @throws NotFoundException  если одна из карт не найдена
+     * @throws ForbiddenException если карта отправителя не принадлежит пользователю
+     * @throws ConflictException  если карты не активны или недостаточно средств
+     */
+    Transfer execute(TransferRequestDto transferRequest, Long userId);
+
+    /**
+     * Проверяет правила перевода для уже прочитанных карт.
+     * Единая точка для всех стратегий и пакетных переводов: порядок проверок
+     * (наличие карт, владелец, статус и срок действия, баланс) одинаков везде.
+     *
+     * @param fromCard    карта-отправитель (null, если не найдена)
+     * @param toCard      карта-получатель (null, если не найдена)
+     * @param userId      идентификатор пользователя, выполняющего перевод
+     * @param fromBalance доступный баланс карты-отправителя
+     * @param amount      сумма перевода
+     * @param today       текущая дата для проверки срока действия
+     * @return исключение с причиной отказа или null, если перевод допустим
+     */
+    static RuntimeException checkTransfer(Card fromCard, Card toCard, Long userId,
+                                          BigDecimal fromBalance, BigDecimal amount, LocalDate today) {
+        if (fromCard == null) {
+            return new NotFoundException("From card not found");
+        }
+        if (toCard == null) {
+            return new NotFoundException("To card not found");
+        }
+        if (!fromCard.getUser().getId().equals(userId)) {
+            return new ForbiddenException("Card does not belong to user");
+        }
+        if (!isUsable(fromCard, today) || !isUsable(toCard, today)) {
+            return new ConflictException(CARDS_NOT_ACTIVE);
+        }
+        if (fromBalance.compareTo(amount) < 0) {
+            return new ConflictException(INSUFFICIENT_FUNDS);
+        }
+        return null;
+    }
+
+    /**
+     * Проверяет, что карта активна и срок ее действия не истек.
+     *
+     * @param card  карта
+     * @param today текущая дата
+     * @return true, если карта может участвовать в переводе
+     */
+    static boolean isUsable(Card card, LocalDate today) {
+        return card.getStatus() == Card.CardStatus.ACTIVE
+                && !card.getExpiryDate().isBefore(today);
+    }
+}
@@ -1,11 +1,17 @@
 package com.gshelgaas.bankcards.service;
 
+import com.gshelgaas.bankcards.dto.TransferBatchItemResultDto;
+import com.gshelgaas.bankcards.dto.TransferExportFormat;
+import com.gshelgaas.bankcards.dto.TransferFilterDto;
+import com.gshelgaas.bankcards.dto.TransferPageResponseDto;
 import com.gshelgaas.bankcards.dto.TransferRequestDto;
 import com.gshelgaas.bankcards.dto.TransferResponseDto;
 import com.gshelgaas.bankcards.exception.NotFoundException;
 import com.gshelgaas.bankcards.exception.ForbiddenException;
 import com.gshelgaas.bankcards.exception.ConflictException;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -30,11 +36,65 @@ public interface TransferService {
     TransferResponseDto transferBetweenCards(TransferRequestDto transferRequest, Long userId);
 
     /**
-     * Получает историю переводов пользователя.
-     * Включает как исходящие, так и входящие переводы.
+     * Выполняет перевод с защитой от повторного выполнения по ключу идемпотентности.
+     * Повторный запрос с тем же ключом и теми же параметрами возвращает сохраненный
+     * результат первого перевода, не выполняя списание повторно.
+     *
+     * @param transferRequest данные перевода (карты, сумма, описание)
+     * @param userId          идентификатор пользователя, выполняющего перевод
+     * @param idempotencyKey  ключ из заголовка Idempotency-Key. Если null, дедупликация не выполняется
+     * @return информация о выполненном (или ранее выполненном) переводе
+     * @throws NotFoundException  если одна из карт не найдена
+     * @throws ForbiddenException если карта отправителя не принадлежит пользователю
+     * @throws ConflictException  если карты не активны, недостаточно средств
+     *                            или ключ уже использован с другими параметрами
+     */
+    TransferResponseDto transferBetweenCards(TransferRequestDto transferRequest, Long userId, String idempotencyKey);
+
+    /**
+     * Выполняет пакет переводов пользователя в одной транзакции.
+     * Каждый перевод проверяется отдельно с учетом балансов после предыдущих переводов пакета:
+     * не прошедшие проверку переводы отмечаются как FAILED и не влияют на остальные.
+     *
+     * @param transfers переводы пакета в порядке выполнения
+     * @param userId    идентификатор пользователя, выполняющего переводы
+     * @return результаты по каждому переводу в порядке пакета
+     */
+    List<TransferBatchItemResultDto> transferBatch(List<TransferRequestDto> transfers, Long userId);
+
+    /**
+     * Получает страницу истории переводов пользователя с курсорной пагинацией.
+     * Включает как исходящие, так и входящие переводы, от новых к старым.
+     *
+     * @param userId идентификатор пользователя
+     * @param filter фильтры по периоду и карте
+     * @param cursor курсор из предыдущей страницы (null для первой страницы)
+     * @param size   количество переводов на странице
+     * @return страница переводов пользователя
+     */
+    TransferPageResponseDto getUserTransfers(Long userId, TransferFilterDto filter, String cursor, int size);
+
+    /**
+     * Выгружает все переводы пользователя, подходящие под фильтры, в выходной поток.
+     * Переводы читаются из базы данных keyset-страницами, объем памяти не зависит от размера выгрузки.
      *
      * @param userId идентификатор пользователя
-     * @return список переводов пользователя
+     * @param filter фильтры по периоду и карте
+     * @param format формат выгрузки
+     * @param out    поток, в который записывается выгрузка
+     * @throws IOException при ошибке записи в поток
+     */
+    void exportUserTransfers(Long userId, TransferFilterDto filter, TransferExportFormat format,
+                             OutputStream out) throws IOException;
+
+    /**
+     * Выгружает все переводы системы, подходящие под фильтры, в выходной поток.
+     * Используется администраторами.
+     *
+     * @param filter фильтры по периоду и карте
+     * @param format формат выгрузки
+     * @param out    поток, в который записывается выгрузка
+     * @throws IOException при ошибке записи в поток
      */
-    List<TransferResponseDto> getUserTransfers(Long userId);
-}
\ No newline at end of file
+    void exportAllTransfers(TransferFilterDto filter, TransferExportFormat format, OutputStream out) throws IOException;
+}
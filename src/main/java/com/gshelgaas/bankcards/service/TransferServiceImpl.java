@@ -1,22 +1,69 @@
 package com.gshelgaas.bankcards.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gshelgaas.bankcards.dto.TransferBatchItemResultDto;
+import com.gshelgaas.bankcards.dto.TransferExportFormat;
+import com.gshelgaas.bankcards.dto.TransferFilterDto;
+import com.gshelgaas.bankcards.dto.TransferPageResponseDto;
 import com.gshelgaas.bankcards.dto.TransferRequestDto;
 import com.gshelgaas.bankcards.dto.TransferResponseDto;
 import com.gshelgaas.bankcards.entity.Card;
 import com.gshelgaas.bankcards.entity.Transfer;
+import com.gshelgaas.bankcards.entity.TransferIdempotency;
 import com.gshelgaas.bankcards.exception.ConflictException;
 import com.gshelgaas.bankcards.exception.ForbiddenException;
 import com.gshelgaas.bankcards.exception.NotFoundException;
+import com.gshelgaas.bankcards.jfr.TransferBatchEvent;
+import com.gshelgaas.bankcards.jfr.TransferEvent;
 import com.gshelgaas.bankcards.repository.CardRepository;
+import com.gshelgaas.bankcards.repository.TransferIdempotencyRepository;
 import com.gshelgaas.bankcards.repository.TransferRepository;
+import com.gshelgaas.bankcards.util.KeysetCursor;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Реализация сервиса для управления переводами между банковскими картами.
@@ -30,17 +77,37 @@ import java.util.List;
 @Transactional(readOnly = true)
 public class TransferServiceImpl implements TransferService {
 
+    private static final String INSERT_TRANSFER_SQL = "INSERT INTO transfers " +
+            "(from_card_id, to_card_id, amount, transfer_date, status, description) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int EXPORT_PAGE_SIZE = 1000;
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final String CSV_HEADER = "id,fromCardId,toCardId,amount,transferDate,status,description";
+    private static final String CSV_FORMULA_PREFIXES = "=+-@\t\r";
+    private static final String APPLY_BALANCE_DELTA_SQL = "UPDATE cards SET balance = balance + ? WHERE id = ?";
+
     private final TransferRepository transferRepository;
     private final CardRepository cardRepository;
+    private final TransferEngine transferEngine;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransferIdempotencyRepository idempotencyRepository;
+    private final Cache<String, TransferResponseDto> transferIdempotencyCache;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${transfer.idempotency.retention:P1D}")
+    private Duration idempotencyRetention = Duration.ofDays(1);
 
     /**
      * {@inheritDoc}
      * <p>
-     * Реализация включает:
-     * - Проверку прав доступа к карте отправителя
-     * - Валидацию статусов карт
-     * - Проверку достаточности средств
-     * - Атомарное обновление балансов
+     * Изменение балансов выполняется выбранной стратегией {@link TransferEngine}
+     * в рамках одной транзакции. Время выполнения публикуется в метрике {@code transfer.execute}
+     * с тегами mode=single и outcome: success, insufficient_funds, inactive, forbidden, not_found, conflict или error,
+     * и в JFR событии {@link TransferEvent}. Успешный перевод публикует {@link CardBalanceChangedEvent}.
      */
     @Override
     @Transactional
@@ -48,57 +115,549 @@ public class TransferServiceImpl implements TransferService {
         log.info("Transfer request from card {} to card {}, amount: {}",
                 transferRequest.getFromCardId(), transferRequest.getToCardId(), transferRequest.getAmount());
 
-        Card fromCard = cardRepository.findById(transferRequest.getFromCardId())
-                .orElseThrow(() -> new NotFoundException("From card not found"));
-        Card toCard = cardRepository.findById(transferRequest.getToCardId())
-                .orElseThrow(() -> new NotFoundException("To card not found"));
+        TransferEvent event = new TransferEvent();
+        event.begin();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            Transfer savedTransfer = transferEngine.execute(transferRequest, userId);
+            log.info("Transfer completed successfully with id: {}", savedTransfer.getId());
+            outcome = "success";
+            eventPublisher.publishEvent(new CardBalanceChangedEvent(
+                    List.of(transferRequest.getFromCardId(), transferRequest.getToCardId())));
+
+            return mapToResponseDto(savedTransfer);
+        } catch (RuntimeException e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            stopTransferTimer(sample, "single", outcome);
+            commitTransferEvent(event, transferRequest, userId, outcome);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Результат ищется сначала во внутрипроцессном кеше, затем в таблице transfer_idempotency.
+     * Новый ключ сохраняется в той же транзакции, что и перевод: уникальное ограничение
+     * (user_id, idempotency_key) гарантирует, что из параллельных повторов выполнится только один,
+     * а остальные получат его результат. Неуспешный перевод откатывает и запись ключа.
+     * Пустой ключ или ключ длиннее столбца idempotency_key (255 символов) отклоняется
+     * до обращения к базе данных.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public TransferResponseDto transferBetweenCards(TransferRequestDto transferRequest, Long userId,
+                                                    String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return transactionTemplate.execute(status -> transferBetweenCards(transferRequest, userId));
+        }
+        if (idempotencyKey.isBlank()) {
+            throw new IllegalArgumentException("Idempotency-Key must not be blank");
+        }
+        if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException(
+                    "Idempotency-Key must not be longer than " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+
+        String requestHash = hashRequest(transferRequest);
+        String cacheKey = userId + ":" + idempotencyKey + ":" + requestHash;
+
+        TransferResponseDto cached = transferIdempotencyCache.getIfPresent(cacheKey);
+        if (cached != null) {
+            countIdempotencyLookup("cache_hit");
+            log.info("Replaying transfer {} for idempotency key from cache", cached.getId());
+            return cached;
+        }
+
+        Optional<TransferResponseDto> stored = findStoredTransfer(userId, idempotencyKey, requestHash);
+        if (stored.isPresent()) {
+            countIdempotencyLookup("store_hit");
+            log.info("Replaying transfer {} for idempotency key from store", stored.get().getId());
+            transferIdempotencyCache.put(cacheKey, stored.get());
+            return stored.get();
+        }
+
+        countIdempotencyLookup("miss");
+        TransferResponseDto response;
+        try {
+            response = transactionTemplate.execute(status -> {
+                TransferIdempotency record = idempotencyRepository.saveAndFlush(TransferIdempotency.builder()
+                        .userId(userId)
+                        .idempotencyKey(idempotencyKey)
+                        .requestHash(requestHash)
+                        .createdAt(LocalDateTime.now())
+                        .build());
 
-        if (!fromCard.getUser().getId().equals(userId)) {
-            throw new ForbiddenException("Card does not belong to user");
+                TransferResponseDto result = transferBetweenCards(transferRequest, userId);
+                record.setTransfer(transferRepository.getReferenceById(result.getId()));
+                return result;
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.info("Concurrent request with the same idempotency key detected for user: {}", userId);
+            response = findStoredTransfer(userId, idempotencyKey, requestHash).orElseThrow(() -> e);
         }
 
-        if (fromCard.getStatus() != Card.CardStatus.ACTIVE || toCard.getStatus() != Card.CardStatus.ACTIVE) {
-            throw new ConflictException("Cards must be active for transfer");
+        transferIdempotencyCache.put(cacheKey, response);
+        return response;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Реализация выполняет фиксированное число обращений к базе независимо от размера пакета:
+     * - Один запрос загружает и блокирует все карты пакета в порядке возрастания id
+     * - Проверки владельца, статуса и баланса выполняются в памяти
+     * - Итоговые изменения балансов применяются пакетным UPDATE по одной строке на карту;
+     *   загруженные карты после этого отсоединяются от контекста, чтобы в транзакции
+     *   не оставались сущности с прежним балансом
+     * - Записи о переводах вставляются пакетным JDBC INSERT
+     * <p>
+     * Публикует {@link CardBalanceChangedEvent} для карт с измененным балансом.
+     * Время выполнения пакета публикуется в метрике {@code transfer.execute} с тегами mode=batch
+     * и outcome: success (все переводы выполнены), partial, failed (ни один не выполнен) или error,
+     * количество выполненных и отклоненных переводов - в счетчике {@code transfer.batch.items} с тегом outcome.
+     * Пакет записывается JFR событием {@link TransferBatchEvent}.
+     */
+    @Override
+    @Transactional
+    public List<TransferBatchItemResultDto> transferBatch(List<TransferRequestDto> transfers, Long userId) {
+        log.info("Batch transfer of {} items for user: {}", transfers.size(), userId);
+
+        TransferBatchEvent event = new TransferBatchEvent();
+        event.begin();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        int succeeded = 0;
+        try {
+            List<TransferBatchItemResultDto> results = executeBatch(transfers, userId);
+            succeeded = (int) results.stream()
+                    .filter(result -> Transfer.TransferStatus.SUCCESS.name().equals(result.getStatus()))
+                    .count();
+            int failed = results.size() - succeeded;
+            outcome = failed == 0 ? "success" : succeeded == 0 ? "failed" : "partial";
+            meterRegistry.counter("transfer.batch.items", "outcome", "success").increment(succeeded);
+            meterRegistry.counter("transfer.batch.items", "outcome", "failed").increment(failed);
+
+            log.info("Batch transfer completed for user: {}, succeeded: {}, failed: {}", userId, succeeded, failed);
+            return results;
+        } catch (RuntimeException e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            stopTransferTimer(sample, "batch", outcome);
+            commitTransferBatchEvent(event, transfers.size(), succeeded, userId, outcome);
+        }
+    }
+
+    /**
+     * Выполняет пакет переводов и возвращает результаты в порядке запросов.
+     */
+    private List<TransferBatchItemResultDto> executeBatch(List<TransferRequestDto> transfers, Long userId) {
+        List<Long> cardIds = transfers.stream()
+                .flatMap(transfer -> Stream.of(transfer.getFromCardId(), transfer.getToCardId()))
+                .distinct()
+                .sorted()
+                .toList();
+        Map<Long, Card> cards = cardRepository.findAllByIdInForUpdate(cardIds).stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        cards.values().forEach(card -> balances.put(card.getId(), card.getBalance()));
+        Map<Long, BigDecimal> deltas = new TreeMap<>();
+        LocalDate today = LocalDate.now();
+
+        List<TransferBatchItemResultDto> results = new ArrayList<>(transfers.size());
+        List<TransferBatchItemResultDto> succeeded = new ArrayList<>();
+        List<TransferRequestDto> succeededRequests = new ArrayList<>();
+
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferRequestDto transfer = transfers.get(i);
+            String error = validateBatchItem(transfer, cards, balances, userId, today);
+
+            TransferBatchItemResultDto result = TransferBatchItemResultDto.builder()
+                    .index(i)
+                    .fromCardId(transfer.getFromCardId())
+                    .toCardId(transfer.getToCardId())
+                    .amount(transfer.getAmount())
+                    .status(error == null ? Transfer.TransferStatus.SUCCESS.name() : Transfer.TransferStatus.FAILED.name())
+                    .error(error)
+                    .build();
+            results.add(result);
+
+            if (error == null) {
+                balances.merge(transfer.getFromCardId(), transfer.getAmount().negate(), BigDecimal::add);
+                balances.merge(transfer.getToCardId(), transfer.getAmount(), BigDecimal::add);
+                deltas.merge(transfer.getFromCardId(), transfer.getAmount().negate(), BigDecimal::add);
+                deltas.merge(transfer.getToCardId(), transfer.getAmount(), BigDecimal::add);
+                succeeded.add(result);
+                succeededRequests.add(transfer);
+            }
         }
 
-        if (fromCard.getBalance().compareTo(transferRequest.getAmount()) < 0) {
-            throw new ConflictException("Insufficient funds");
+        applyBalanceDeltas(deltas);
+        cards.values().forEach(entityManager::detach);
+        insertTransfers(succeeded, succeededRequests);
+        if (!deltas.isEmpty()) {
+            eventPublisher.publishEvent(new CardBalanceChangedEvent(List.copyOf(deltas.keySet())));
         }
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TransferPageResponseDto getUserTransfers(Long userId, TransferFilterDto filter, String cursor, int size) {
+        log.info("Getting transfers for user: {}, filter: {}, cursor: {}, size: {}", userId, filter, cursor, size);
+
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        KeysetCursor position = KeysetCursor.decode(cursor);
 
-        fromCard.setBalance(fromCard.getBalance().subtract(transferRequest.getAmount()));
-        toCard.setBalance(toCard.getBalance().add(transferRequest.getAmount()));
+        List<Long> cardIds = cardRepository.findIdsByUserId(userId);
+        List<TransferResponseDto> rows = cardIds.isEmpty() ? List.of()
+                : findUserTransfers(cardIds, filter, upperBound(filter, position), pageSize + 1);
 
-        cardRepository.save(fromCard);
-        cardRepository.save(toCard);
+        boolean hasNext = rows.size() > pageSize;
+        List<TransferResponseDto> content = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            TransferResponseDto last = content.get(content.size() - 1);
+            nextCursor = KeysetCursor.encode(last.getTransferDate(), last.getId());
+        }
 
-        Transfer transfer = Transfer.builder()
-                .fromCard(fromCard)
-                .toCard(toCard)
-                .amount(transferRequest.getAmount())
-                .transferDate(LocalDateTime.now())
-                .status(Transfer.TransferStatus.SUCCESS)
-                .description(transferRequest.getDescription())
+        return TransferPageResponseDto.builder()
+                .content(content)
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
                 .build();
+    }
 
-        Transfer savedTransfer = transferRepository.save(transfer);
-        log.info("Transfer completed successfully with id: {}", savedTransfer.getId());
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void exportUserTransfers(Long userId, TransferFilterDto filter, TransferExportFormat format,
+                                    OutputStream out) throws IOException {
+        log.info("Exporting transfers for user: {}, filter: {}, format: {}", userId, filter, format);
 
-        return mapToResponseDto(savedTransfer);
+        List<Long> cardIds = cardRepository.findIdsByUserId(userId);
+        Stream<TransferResponseDto> transfers = cardIds.isEmpty() ? Stream.empty()
+                : Stream.iterate(findUserTransfers(cardIds, filter, upperBound(filter, null), EXPORT_PAGE_SIZE),
+                        page -> !page.isEmpty(),
+                        page -> page.size() < EXPORT_PAGE_SIZE ? List.of()
+                                : findUserTransfers(cardIds, filter, lastPosition(page), EXPORT_PAGE_SIZE))
+                .flatMap(List::stream);
+        long written = writeExport(transfers, format, out);
+        log.info("Exported {} transfers for user: {}", written, userId);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public List<TransferResponseDto> getUserTransfers(Long userId) {
-        log.info("Getting transfers for user: {}", userId);
+    public void exportAllTransfers(TransferFilterDto filter, TransferExportFormat format,
+                                   OutputStream out) throws IOException {
+        log.info("Exporting all transfers, filter: {}, format: {}", filter, format);
+
+        try (Stream<TransferResponseDto> transfers = transferRepository.streamAllTransfers(
+                filter.getCardId(), filter.getDateFrom(), filter.getDateTo())) {
+            long written = writeExport(transfers, format, out);
+            log.info("Exported {} transfers", written);
+        }
+    }
+
+    /**
+     * Удаляет ключи идемпотентности старше срока хранения.
+     * После удаления повтор с тем же ключом будет выполнен как новый перевод.
+     */
+    @Scheduled(fixedDelayString = "${transfer.idempotency.cleanup-interval:PT1H}")
+    @Transactional
+    public void purgeExpiredIdempotencyKeys() {
+        int deleted = idempotencyRepository.deleteCreatedBefore(LocalDateTime.now().minus(idempotencyRetention));
+        if (deleted > 0) {
+            log.info("Purged {} expired transfer idempotency keys", deleted);
+        }
+    }
+
+    /**
+     * Проверяет перевод из пакета по правилам {@link TransferEngine#checkTransfer}
+     * с учетом текущих (промежуточных) балансов карт.
+     *
+     * @return причина отказа или null, если перевод может быть выполнен
+     */
+    private String validateBatchItem(TransferRequestDto transfer, Map<Long, Card> cards,
+                                     Map<Long, BigDecimal> balances, Long userId, LocalDate today) {
+        RuntimeException failure = TransferEngine.checkTransfer(
+                cards.get(transfer.getFromCardId()), cards.get(transfer.getToCardId()), userId,
+                balances.get(transfer.getFromCardId()), transfer.getAmount(), today);
+        return failure == null ? null : failure.getMessage();
+    }
+
+    /**
+     * Применяет итоговые изменения балансов одним пакетным UPDATE.
+     * Строки уже заблокированы, изменения применяются в порядке возрастания id карт.
+     */
+    private void applyBalanceDeltas(Map<Long, BigDecimal> deltas) {
+        List<Object[]> batchArgs = deltas.entrySet().stream()
+                .filter(entry -> entry.getValue().signum() != 0)
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList();
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(APPLY_BALANCE_DELTA_SQL, batchArgs);
+        }
+    }
+
+    /**
+     * Вставляет записи об успешных переводах пакетным JDBC INSERT
+     * и заполняет идентификаторы созданных переводов в результатах.
+     */
+    private void insertTransfers(List<TransferBatchItemResultDto> results, List<TransferRequestDto> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
 
-        List<Transfer> transfers = transferRepository.findByFromCardUserIdOrToCardUserId(userId, userId);
-        return transfers.stream()
+        Timestamp transferDate = Timestamp.valueOf(LocalDateTime.now());
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_TRANSFER_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        TransferRequestDto request = requests.get(i);
+                        ps.setLong(1, request.getFromCardId());
+                        ps.setLong(2, request.getToCardId());
+                        ps.setBigDecimal(3, request.getAmount());
+                        ps.setTimestamp(4, transferDate);
+                        ps.setString(5, Transfer.TransferStatus.SUCCESS.name());
+                        ps.setString(6, request.getDescription());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return requests.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < keys.size() && i < results.size(); i++) {
+            results.get(i).setTransferId(((Number) keys.get(i).get("id")).longValue());
+        }
+    }
+
+    /**
+     * Находит ранее выполненный перевод по ключу идемпотентности.
+     * Отклоняет повторное использование ключа с другими параметрами запроса.
+     */
+    private Optional<TransferResponseDto> findStoredTransfer(Long userId, String idempotencyKey, String requestHash) {
+        return idempotencyRepository.findWithTransfer(userId, idempotencyKey)
+                .map(record -> {
+                    if (!record.getRequestHash().equals(requestHash)) {
+                        throw new ConflictException("Idempotency key was already used with different request parameters");
+                    }
+                    return mapToResponseDto(record.getTransfer());
+                });
+    }
+
+    /**
+     * Записывает переводы в поток построчно по мере чтения из базы данных.
+     *
+     * @return количество записанных переводов
+     */
+    private long writeExport(Stream<TransferResponseDto> transfers, TransferExportFormat format,
+                             OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        long written = 0;
+        if (format == TransferExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        Iterator<TransferResponseDto> iterator = transfers.iterator();
+        while (iterator.hasNext()) {
+            TransferResponseDto transfer = iterator.next();
+            if (format == TransferExportFormat.CSV) {
+                writeCsvRow(writer, transfer);
+            } else {
+                writer.write(objectMapper.writeValueAsString(transfer));
+            }
+            writer.write('\n');
+            written++;
+        }
+        writer.flush();
+        return written;
+    }
+
+    /**
+     * Записывает перевод строкой CSV.
+     */
+    private void writeCsvRow(Writer writer, TransferResponseDto transfer) throws IOException {
+        writer.write(String.valueOf(transfer.getId()));
+        writer.write(',');
+        writer.write(String.valueOf(transfer.getFromCardId()));
+        writer.write(',');
+        writer.write(String.valueOf(transfer.getToCardId()));
+        writer.write(',');
+        writer.write(transfer.getAmount().toPlainString());
+        writer.write(',');
+        writer.write(transfer.getTransferDate().toString());
+        writer.write(',');
+        writer.write(transfer.getStatus());
+        writer.write(',');
+        if (transfer.getDescription() != null) {
+            writer.write(escapeCsv(transfer.getDescription()));
+        }
+    }
+
+    /**
+     * Экранирует значение CSV по RFC 4180.
+     * Значение, начинающееся с символа формулы табличного редактора (=, +, -, @, табуляция, CR),
+     * предваряется апострофом и заключается в кавычки, чтобы редактор показал его как текст.
+     */
+    private String escapeCsv(String value) {
+        boolean formula = !value.isEmpty() && CSV_FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0;
+        if (!formula && value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + (formula ? "'" : "") + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Вычисляет SHA-256 хеш значимых параметров запроса на перевод.
+     */
+    private String hashRequest(TransferRequestDto transferRequest) {
+        String canonical = transferRequest.getFromCardId() + "|" +
+                transferRequest.getToCardId() + "|" +
+                transferRequest.getAmount().stripTrailingZeros().toPlainString() + "|" +
+                Optional.ofNullable(transferRequest.getDescription()).orElse("");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Записывает JFR событие перевода. Поля заполняются, только если событие будет записано,
+     * поэтому без активной записи JFR затраты сводятся к проверке shouldCommit.
+     */
+    private void stopTransferTimer(Timer.Sample sample, String mode, String outcome) {
+        sample.stop(Timer.builder("transfer.execute")
+                .description("Transfer execution time by mode and outcome")
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    private static void commitTransferEvent(TransferEvent event, TransferRequestDto transferRequest,
+                                            Long userId, String outcome) {
+        if (event.shouldCommit()) {
+            event.setUserId(idOrZero(userId));
+            event.setFromCardId(idOrZero(transferRequest.getFromCardId()));
+            event.setToCardId(idOrZero(transferRequest.getToCardId()));
+            event.setAmountBucket(TransferEvent.bucketOf(transferRequest.getAmount()));
+            event.setOutcome(outcome);
+            event.commit();
+        }
+    }
+
+    private static void commitTransferBatchEvent(TransferBatchEvent event, int items, int succeeded,
+                                                 Long userId, String outcome) {
+        if (event.shouldCommit()) {
+            event.setUserId(idOrZero(userId));
+            event.setItems(items);
+            event.setSucceeded(succeeded);
+            event.setFailed(items - succeeded);
+            event.setOutcome(outcome);
+            event.commit();
+        }
+    }
+
+    private static long idOrZero(Long id) {
+        return id != null ? id : 0L;
+    }
+
+    /**
+     * Определяет тег outcome метрики перевода по исключению стратегии перевода.
+     */
+    private static String outcomeOf(RuntimeException e) {
+        if (e instanceof ForbiddenException) {
+            return "forbidden";
+        }
+        if (e instanceof NotFoundException) {
+            return "not_found";
+        }
+        if (e instanceof ConflictException) {
+            return switch (e.getMessage()) {
+                case TransferEngine.INSUFFICIENT_FUNDS -> "insufficient_funds";
+                case TransferEngine.CARDS_NOT_ACTIVE -> "inactive";
+                default -> "conflict";
+            };
+        }
+        return "error";
+    }
+
+    /**
+     * Вычисляет верхнюю границу страницы истории: позицию курсора или конец периода фильтра,
+     * смотря что раньше. Конец периода не включительно, поэтому ему соответствует
+     * пара (dateTo, Long.MIN_VALUE). Возвращает null, если граница не задана.
+     */
+    private KeysetCursor upperBound(TransferFilterDto filter, KeysetCursor position) {
+        LocalDateTime dateTo = filter.getDateTo();
+        if (position != null && (dateTo == null || position.getDate().isBefore(dateTo))) {
+            return position;
+        }
+        return dateTo != null ? new KeysetCursor(dateTo, Long.MIN_VALUE) : null;
+    }
+
+    /**
+     * Возвращает позицию последнего перевода страницы.
+     */
+    private KeysetCursor lastPosition(List<TransferResponseDto> page) {
+        TransferResponseDto last = page.get(page.size() - 1);
+        return new KeysetCursor(last.getTransferDate(), last.getId());
+    }
+
+    /**
+     * Выбирает до limit переводов пользователя строго раньше границы в порядке (transferDate DESC, id DESC).
+     * Фильтр по своей карте сужает список карт, фильтр по чужой карте выбирает переводы между ней
+     * и картами пользователя. Начало периода применяется к уже упорядоченным строкам:
+     * страница обрывается на первом более раннем переводе.
+     */
+    private List<TransferResponseDto> findUserTransfers(List<Long> cardIds, TransferFilterDto filter,
+                                                        KeysetCursor before, int limit) {
+        Long cardId = filter.getCardId();
+        List<TransferRepository.TransferHistoryView> rows;
+        if (cardId == null || cardIds.contains(cardId)) {
+            List<Long> ids = cardId == null ? cardIds : List.of(cardId);
+            rows = before == null
+                    ? transferRepository.findCardsTransfersFirstPage(ids, limit)
+                    : transferRepository.findCardsTransfersPageBefore(ids, before.getDate(), before.getId(), limit);
+        } else {
+            rows = before == null
+                    ? transferRepository.findCounterpartTransfersFirstPage(cardIds, cardId, limit)
+                    : transferRepository.findCounterpartTransfersPageBefore(cardIds, cardId,
+                    before.getDate(), before.getId(), limit);
+        }
+
+        LocalDateTime dateFrom = filter.getDateFrom();
+        return rows.stream()
+                .takeWhile(row -> dateFrom == null || !row.getTransferDate().isBefore(dateFrom))
                 .map(this::mapToResponseDto)
                 .toList();
     }
 
+    /**
+     * Увеличивает счетчик обращений к хранилищу ключей идемпотентности.
+     */
+    private void countIdempotencyLookup(String result) {
+        meterRegistry.counter("transfer.idempotency.requests", "result", result).increment();
+    }
+
     /**
      * Преобразует сущность Transfer в DTO для ответа.
      */
@@ -113,4 +672,19 @@ public class TransferServiceImpl implements TransferService {
                 .description(transfer.getDescription())
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Преобразует строку истории переводов в DTO для ответа.
+     */
+    private TransferResponseDto mapToResponseDto(TransferRepository.TransferHistoryView transfer) {
+        return TransferResponseDto.builder()
+                .id(transfer.getId())
+                .fromCardId(transfer.getFromCardId())
+                .toCardId(transfer.getToCardId())
+                .amount(transfer.getAmount())
+                .transferDate(transfer.getTransferDate())
+                .status(transfer.getStatus())
+                .description(transfer.getDescription())
+                .build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.gshelgaas.bankcards.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Событие изменения пользователя (создание, удаление, смена роли).
+ * Публикуется сервисом пользователей и используется для инвалидации
+ * кешированных данных аутентификации.
+ *
+ * @author Георгий Шельгаас
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class UserChangedEvent {
+
+    /**
+     * Идентификатор измененного пользователя.
+     */
+    private final Long userId;
+
+    /**
+     * Email пользователя, если он известен в момент изменения.
+     */
+    private final String email;
+}
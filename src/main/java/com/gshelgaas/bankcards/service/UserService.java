@@ -2,9 +2,10 @@ package com.gshelgaas.bankcards.service;
 
 import com.gshelgaas.bankcards.dto.UserRequestDto;
 import com.gshelgaas.bankcards.dto.UserResponseDto;
-import com.gshelgaas.bankcards.entity.User;
 import com.gshelgaas.bankcards.exception.ConflictException;
 import com.gshelgaas.bankcards.exception.NotFoundException;
+import com.gshelgaas.bankcards.exception.UnauthorizedException;
+import com.gshelgaas.bankcards.security.AuthenticatedUser;
 
 import java.util.List;
 
@@ -52,10 +53,11 @@ public interface UserService {
 
     /**
      * Получает текущего аутентифицированного пользователя.
-     * Используется Spring Security Context для получения email пользователя.
+     * Данные пользователя (идентификатор, email, роль) берутся из Spring Security Context
+     * без обращения к базе данных.
      *
-     * @return сущность текущего пользователя
-     * @throws NotFoundException если пользователь не найден по email из Security Context
+     * @return principal текущего пользователя
+     * @throws UnauthorizedException если запрос не аутентифицирован
      */
-    User getCurrentUser();
+    AuthenticatedUser getCurrentUser();
 }
\ No newline at end of file
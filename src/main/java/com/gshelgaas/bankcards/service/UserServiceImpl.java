@@ -5,10 +5,13 @@ import com.gshelgaas.bankcards.dto.UserResponseDto;
 import com.gshelgaas.bankcards.entity.User;
 import com.gshelgaas.bankcards.exception.ConflictException;
 import com.gshelgaas.bankcards.exception.NotFoundException;
+import com.gshelgaas.bankcards.exception.UnauthorizedException;
 import com.gshelgaas.bankcards.repository.UserRepository;
+import com.gshelgaas.bankcards.security.AuthenticatedUser;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -32,11 +35,13 @@ public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * {@inheritDoc}
      * <p>
      * Реализация включает хеширование пароля и проверку уникальности email.
+     * Публикует {@link UserChangedEvent} для инвалидации кеша аутентификации.
      */
     @Override
     @Transactional
@@ -58,6 +63,7 @@ public class UserServiceImpl implements UserService {
 
         User savedUser = userRepository.save(user);
         log.info("User created with id: {}", savedUser.getId());
+        eventPublisher.publishEvent(new UserChangedEvent(savedUser.getId(), savedUser.getEmail()));
 
         return mapToResponseDto(savedUser);
     }
@@ -89,6 +95,8 @@ public class UserServiceImpl implements UserService {
 
     /**
      * {@inheritDoc}
+     * <p>
+     * Публикует {@link UserChangedEvent} для инвалидации кеша аутентификации.
      */
     @Override
     @Transactional
@@ -99,19 +107,24 @@ public class UserServiceImpl implements UserService {
             throw new NotFoundException("User not found with id: " + userId);
         }
         userRepository.deleteById(userId);
+        eventPublisher.publishEvent(new UserChangedEvent(userId, null));
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Реализация использует SecurityContextHolder для получения аутентификации.
+     * Реализация берет principal, установленный {@code JwtAuthFilter}, из SecurityContextHolder
+     * и не обращается к базе данных.
      */
-    public User getCurrentUser() {
+    @Override
+    public AuthenticatedUser getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
 
-        return userRepository.findByEmail(email)
-                .orElseThrow(() -> new NotFoundException("User not found with email: " + email));
+        if (authentication == null || !authentication.isAuthenticated()
+                || !(authentication.getPrincipal() instanceof AuthenticatedUser principal)) {
+            throw new UnauthorizedException("User is not authenticated");
+        }
+        return principal;
     }
 
     /**
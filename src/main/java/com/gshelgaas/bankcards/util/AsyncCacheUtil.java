@@ -0,0 +1,46 @@
+package com.gshelgaas.bankcards.util;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Утилита для синхронного чтения асинхронных кешей Caffeine.
+ *
+ * @author Георгий Шельгаас
+ */
+public final class AsyncCacheUtil {
+
+    private AsyncCacheUtil() {
+    }
+
+    /**
+     * Возвращает значение из кеша, при промахе загружая его на исполнителе кеша, и ждет результат.
+     * <p>
+     * В отличие от {@code Cache.get(key, loader)}, загрузка выполняется не внутри
+     * {@code ConcurrentHashMap.compute}: под блокировкой корзины только создается future.
+     * Поэтому запрос к базе данных при промахе не удерживает synchronized-монитор и не
+     * закрепляет (pin) поток-носитель виртуального потока, а ожидание future освобождает его.
+     * Конкурентные промахи по одному ключу по-прежнему ждут одну загрузку.
+     * Значение null не кешируется.
+     *
+     * @param cache  асинхронный кеш
+     * @param key    ключ
+     * @param loader загрузчик значения при промахе
+     * @param <K>    тип ключа
+     * @param <V>    тип значения
+     * @return значение или null, если загрузчик его не нашел
+     * @throws RuntimeException исключение загрузчика без обертки {@link CompletionException}
+     */
+    public static <K, V> V get(AsyncCache<K, V> cache, K key, Function<? super K, ? extends V> loader) {
+        try {
+            return cache.get(key, loader).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
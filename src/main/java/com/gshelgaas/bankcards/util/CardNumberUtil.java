@@ -0,0 +1,34 @@
+package com.gshelgaas.bankcards.util;
+
+/**
+ * Утилита для работы с номерами банковских карт в открытом виде.
+ *
+ * @author Георгий Шельгаас
+ */
+public final class CardNumberUtil {
+
+    private CardNumberUtil() {
+    }
+
+    /**
+     * Маскирует номер карты, оставляя видимыми только последние 4 цифры.
+     * Результат сохраняется в базе при создании карты и используется для отображения
+     * без расшифровки номера.
+     *
+     * @param cardNumber номер карты в открытом виде
+     * @return замаскированный номер
+     */
+    public static String mask(String cardNumber) {
+        if (cardNumber == null || cardNumber.length() < 4) {
+            return cardNumber;
+        }
+
+        String cleanNumber = cardNumber.replaceAll("\\s+", "");
+
+        if (cleanNumber.length() == 16) {
+            return "**** **** **** " + cleanNumber.substring(12);
+        } else {
+            return "****" + cleanNumber.substring(cleanNumber.length() - 4);
+        }
+    }
+}
@@ -1,20 +1,37 @@
 package com.gshelgaas.bankcards.util;
 
+import com.gshelgaas.bankcards.jfr.CryptoEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Утилита для шифрования и дешифрования данных.
  * Использует AES алгоритм для шифрования номеров банковских карт.
  * Ключ шифрования настраивается через properties файл.
+ * <p>
+ * Ключи вычисляются один раз при создании бина. Экземпляры {@link Cipher} и {@link Mac}
+ * не потокобезопасны и дороги в создании, поэтому они переиспользуются через неблокирующие пулы:
+ * поток берет уже инициализированный экземпляр, выполняет операцию и возвращает его.
+ * Пул не привязан к потоку, поэтому корректно работает и с виртуальными потоками.
+ * Время операций публикуется в метрике {@code encryption.operation} (тег operation: encrypt, decrypt, hash)
+ * и в JFR событии {@link CryptoEvent}.
  *
  * @author Георгий Шельгаас
  */
@@ -22,8 +39,50 @@ import java.util.Base64;
 @Component
 public class EncryptionUtil {
 
-    @Value("${encryption.secret:myDefaultEncryptionKey1234567890123456}")
-    private String secret;
+    private static final String CIPHER_TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final String HASH_ALGORITHM = "HmacSHA256";
+    private static final int MAX_IDLE_INSTANCES = 64;
+
+    private final Pool<Cipher> encryptCiphers;
+    private final Pool<Cipher> decryptCiphers;
+    private final Pool<Mac> macs;
+    private final Timer encryptTimer;
+    private final Timer decryptTimer;
+    private final Timer hashTimer;
+
+    /**
+     * Создает утилиту и однократно вычисляет ключи шифрования и хеширования.
+     *
+     * @param secret        секрет для ключа шифрования
+     * @param hashSecret    секрет для ключа хеширования
+     * @param meterRegistry реестр метрик
+     */
+    public EncryptionUtil(
+            @Value("${encryption.secret:myDefaultEncryptionKey1234567890123456}") String secret,
+            @Value("${encryption.hash-secret:myDefaultHashKey12345678901234567890}") String hashSecret,
+            MeterRegistry meterRegistry) {
+
+        SecretKeySpec key = deriveKey(secret);
+        SecretKeySpec hashKey = new SecretKeySpec(hashSecret.getBytes(StandardCharsets.UTF_8), HASH_ALGORITHM);
+
+        this.encryptCiphers = new Pool<>(() -> newCipher(Cipher.ENCRYPT_MODE, key));
+        this.decryptCiphers = new Pool<>(() -> newCipher(Cipher.DECRYPT_MODE, key));
+        this.macs = new Pool<>(() -> {
+            Mac mac = Mac.getInstance(HASH_ALGORITHM);
+            mac.init(hashKey);
+            return mac;
+        });
+        this.encryptTimer = operationTimer("encrypt", meterRegistry);
+        this.decryptTimer = operationTimer("decrypt", meterRegistry);
+        this.hashTimer = operationTimer("hash", meterRegistry);
+    }
+
+    private static Timer operationTimer(String operation, MeterRegistry meterRegistry) {
+        return Timer.builder("encryption.operation")
+                .description("Card number encryption and hashing time")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
 
     /**
      * Создает ключ для шифрования на основе секретной строки.
@@ -32,7 +91,7 @@ public class EncryptionUtil {
      * @return SecretKeySpec для AES шифрования
      * @throws RuntimeException если генерация ключа не удалась
      */
-    private SecretKeySpec getKey() {
+    private static SecretKeySpec deriveKey(String secret) {
         try {
             byte[] key = secret.getBytes(StandardCharsets.UTF_8);
             MessageDigest sha = MessageDigest.getInstance("SHA-256");
@@ -44,6 +103,12 @@ public class EncryptionUtil {
         }
     }
 
+    private static Cipher newCipher(int mode, SecretKeySpec key) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+        cipher.init(mode, key);
+        return cipher;
+    }
+
     /**
      * Шифрует данные с использованием AES алгоритма.
      * Используется для шифрования номеров банковских карт перед сохранением в БД.
@@ -53,13 +118,19 @@ public class EncryptionUtil {
      * @throws RuntimeException если шифрование не удалось
      */
     public String encrypt(String data) {
+        CryptoEvent event = new CryptoEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean succeeded = false;
         try {
-            Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-            cipher.init(Cipher.ENCRYPT_MODE, getKey());
-            byte[] encrypted = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+            byte[] encrypted = encryptCiphers.apply(cipher -> cipher.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+            succeeded = true;
             return Base64.getEncoder().encodeToString(encrypted);
         } catch (Exception e) {
             throw new RuntimeException("Encryption failed", e);
+        } finally {
+            encryptTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            commitEvent(event, "encrypt", data, succeeded);
         }
     }
 
@@ -72,14 +143,109 @@ public class EncryptionUtil {
      * @throws RuntimeException если дешифрование не удалось
      */
     public String decrypt(String encryptedData) {
+        CryptoEvent event = new CryptoEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean succeeded = false;
         try {
-            Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-            cipher.init(Cipher.DECRYPT_MODE, getKey());
             byte[] decoded = Base64.getDecoder().decode(encryptedData);
-            byte[] decrypted = cipher.doFinal(decoded);
+            byte[] decrypted = decryptCiphers.apply(cipher -> cipher.doFinal(decoded));
+            succeeded = true;
             return new String(decrypted, StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new RuntimeException("Decryption failed", e);
+        } finally {
+            decryptTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            commitEvent(event, "decrypt", encryptedData, succeeded);
+        }
+    }
+
+    /**
+     * Вычисляет детерминированный ключевой хеш (HMAC-SHA256) данных.
+     * Используется как "слепой индекс" номера карты: позволяет искать и проверять
+     * уникальность номера без расшифровки и независимо от того, детерминировано ли шифрование.
+     * Ключ хеширования отделен от ключа шифрования.
+     *
+     * @param data данные для хеширования
+     * @return хеш в шестнадцатеричном виде (64 символа)
+     * @throws RuntimeException если хеширование не удалось
+     */
+    public String hash(String data) {
+        CryptoEvent event = new CryptoEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            byte[] hashed = macs.apply(mac -> mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+            succeeded = true;
+            return HexFormat.of().formatHex(hashed);
+        } catch (Exception e) {
+            throw new RuntimeException("Hashing failed", e);
+        } finally {
+            hashTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            commitEvent(event, "hash", data, succeeded);
+        }
+    }
+
+    /**
+     * Записывает JFR событие операции, если оно будет сохранено активной записью.
+     */
+    private static void commitEvent(CryptoEvent event, String operation, String input, boolean succeeded) {
+        if (event.shouldCommit()) {
+            event.setOperation(operation);
+            event.setInputLength(input != null ? input.length() : 0);
+            event.setSucceeded(succeeded);
+            event.commit();
+        }
+    }
+
+    /**
+     * Операция над экземпляром криптографического примитива.
+     */
+    @FunctionalInterface
+    private interface CryptoOperation<T, R> {
+        R apply(T instance) throws GeneralSecurityException;
+    }
+
+    /**
+     * Фабрика инициализированных экземпляров криптографического примитива.
+     */
+    @FunctionalInterface
+    private interface CryptoFactory<T> {
+        T create() throws GeneralSecurityException;
+    }
+
+    /**
+     * Неблокирующий пул переиспользуемых экземпляров.
+     * Если свободных экземпляров нет, создается новый; при возврате сверх
+     * {@link #MAX_IDLE_INSTANCES} экземпляр отбрасывается. Экземпляр, на котором
+     * операция завершилась ошибкой, в пул не возвращается.
+     */
+    private static final class Pool<T> {
+
+        private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+        private final CryptoFactory<T> factory;
+
+        private Pool(CryptoFactory<T> factory) {
+            this.factory = factory;
+        }
+
+        private <R> R apply(CryptoOperation<T, R> operation) throws GeneralSecurityException {
+            T instance = idle.poll();
+            if (instance != null) {
+                idleCount.decrementAndGet();
+            } else {
+                instance = factory.create();
+            }
+
+            R result = operation.apply(instance);
+            if (idleCount.incrementAndGet() <= MAX_IDLE_INSTANCES) {
+                idle.offer(instance);
+            } else {
+                idleCount.decrementAndGet();
+            }
+            return result;
         }
     }
-}
\ No newline at end of file
+}
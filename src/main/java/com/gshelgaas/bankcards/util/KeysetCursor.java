@@ -0,0 +1,68 @@
+package com.gshelgaas.bankcards.util;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Курсор keyset-пагинации: позиция последней строки страницы в виде пары
+ * (дата, идентификатор). Клиенту передается как непрозрачная строка Base64URL.
+ *
+ * @author Георгий Шельгаас
+ */
+@Getter
+@RequiredArgsConstructor
+public final class KeysetCursor {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Дата последней строки страницы.
+     */
+    private final LocalDateTime date;
+
+    /**
+     * Идентификатор последней строки страницы; разрешает равенство дат.
+     */
+    private final Long id;
+
+    /**
+     * Кодирует позицию последней строки страницы в непрозрачный курсор.
+     *
+     * @param date дата последней строки
+     * @param id   идентификатор последней строки
+     * @return курсор следующей страницы
+     */
+    public static String encode(LocalDateTime date, Long id) {
+        String raw = date + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Декодирует курсор, полученный от {@link #encode(LocalDateTime, Long)}.
+     *
+     * @param cursor курсор (null или пустая строка для первой страницы)
+     * @return позиция последней строки предыдущей страницы или null для первой страницы
+     * @throws IllegalArgumentException если курсор поврежден
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
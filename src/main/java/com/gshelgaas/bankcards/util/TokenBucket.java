@@ -0,0 +1,74 @@
+package com.gshelgaas.bankcards.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Неблокирующий token bucket.
+ * Реализован по алгоритму GCRA (generic cell rate algorithm): вместо счетчика токенов
+ * и времени последнего пополнения хранится одно значение - теоретическое время прибытия
+ * следующего запроса. Это позволяет обновлять состояние одной операцией CAS без блокировок.
+ * Поведение эквивалентно корзине емкостью {@code capacity} токенов, которая пополняется
+ * на {@code capacity} токенов за {@code refillPeriodNanos}.
+ *
+ * @author Георгий Шельгаас
+ */
+public final class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Создает полную корзину.
+     *
+     * @param capacity          емкость корзины (допустимый всплеск запросов)
+     * @param refillPeriodNanos время полного пополнения корзины в наносекундах
+     * @throws IllegalArgumentException если емкость или период не положительны
+     */
+    public TokenBucket(int capacity, long refillPeriodNanos) {
+        if (capacity <= 0 || refillPeriodNanos <= 0) {
+            throw new IllegalArgumentException("Capacity and refill period must be positive");
+        }
+        this.emissionIntervalNanos = Math.max(1, refillPeriodNanos / capacity);
+        this.burstNanos = emissionIntervalNanos * capacity;
+    }
+
+    /**
+     * Пытается взять один токен.
+     *
+     * @param nowNanos текущее время в наносекундах (монотонное, например System.nanoTime())
+     * @return 0 если токен получен, иначе время в наносекундах до появления токена
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, nowNanos) + emissionIntervalNanos;
+            long wait = next - nowNanos - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Возвращает в корзину один ранее взятый токен.
+     * Корзина не наполняется сверх емкости.
+     *
+     * @param nowNanos текущее время в наносекундах (монотонное, например System.nanoTime())
+     */
+    public void refund(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            if (current <= nowNanos) {
+                return;
+            }
+            long previous = Math.max(current - emissionIntervalNanos, nowNanos);
+            if (theoreticalArrival.compareAndSet(current, previous)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.gshelgaas.bankcards.benchmark;
+
+import com.gshelgaas.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает стоимость вызова шифрования с ключом и Cipher, создаваемыми на каждый вызов
+ * (прежняя реализация EncryptionUtil), и с однократно вычисленным ключом и пулом Cipher.
+ * <p>
+ * Запуск:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     com.gshelgaas.bankcards.benchmark.EncryptionUtilBenchmark
+ * </pre>
+ * Профайлер GC выводит скорость аллокаций (gc.alloc.rate.norm - байт на операцию).
+ *
+ * @author Георгий Шельгаас
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class EncryptionUtilBenchmark {
+
+    private static final String SECRET = "myDefaultEncryptionKey1234567890123456";
+    private static final String CARD_NUMBER = "4111111111111111";
+
+    private EncryptionUtil encryptionUtil;
+    private String encrypted;
+
+    @Setup
+    public void setUp() {
+        encryptionUtil = new EncryptionUtil(SECRET, "myDefaultHashKey12345678901234567890", new SimpleMeterRegistry());
+        encrypted = encryptionUtil.encrypt(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String decryptPerCallKeyAndCipher() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.DECRYPT_MODE, legacyKey());
+        return new String(cipher.doFinal(Base64.getDecoder().decode(encrypted)), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String decryptPooled() {
+        return encryptionUtil.decrypt(encrypted);
+    }
+
+    @Benchmark
+    public String encryptPerCallKeyAndCipher() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, legacyKey());
+        return Base64.getEncoder().encodeToString(cipher.doFinal(CARD_NUMBER.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public String encryptPooled() {
+        return encryptionUtil.encrypt(CARD_NUMBER);
+    }
+
+    private static SecretKeySpec legacyKey() throws Exception {
+        byte[] key = MessageDigest.getInstance("SHA-256").digest(SECRET.getBytes(StandardCharsets.UTF_8));
+        return new SecretKeySpec(Arrays.copyOf(key, 16), "AES");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EncryptionUtilBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
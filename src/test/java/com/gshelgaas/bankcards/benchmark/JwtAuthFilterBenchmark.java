@@ -0,0 +1,86 @@
+package com.gshelgaas.bankcards.benchmark;
+
+import com.gshelgaas.bankcards.entity.User;
+import com.gshelgaas.bankcards.security.AuthenticatedUser;
+import com.gshelgaas.bankcards.security.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает стоимость обработки JWT токена в JwtAuthFilter на один запрос:
+ * прежний путь (extractEmail + validateToken: два разбора, два вычисления ключа
+ * и два создания парсера) и {@link JwtUtil#parseAndValidate} с ключом и парсером,
+ * созданными один раз.
+ * <p>
+ * Запуск - аналогично {@link EncryptionUtilBenchmark}.
+ *
+ * @author Георгий Шельгаас
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JwtAuthFilterBenchmark {
+
+    private static final String SECRET = "mySuperSecretKeyForJWT1234567890";
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(SECRET, 3600000L);
+        token = jwtUtil.generateToken(new AuthenticatedUser(1L, "user@mail.ru", User.Role.ROLE_USER, null));
+    }
+
+    @Benchmark
+    public String doubleParsePerRequest() {
+        String email = legacyParse(token).getSubject();
+        legacyParse(token);
+        return email;
+    }
+
+    @Benchmark
+    public String singleParseCachedParser() {
+        return jwtUtil.parseAndValidate(token)
+                .map(Claims::getSubject)
+                .orElse(null);
+    }
+
+    private static Claims legacyParse(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtAuthFilterBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,162 @@
+package com.gshelgaas.bankcards.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Нагрузочный тест запущенного приложения: N одновременных пользователей в цикле
+ * запрашивают GET /user/cards и GET /user/transfers. По завершении для каждого эндпоинта
+ * выводятся пропускная способность, количество ошибок и перцентили задержки.
+ * <p>
+ * Используется для сравнения режима по умолчанию (пул потоков Tomcat) и профиля
+ * {@code virtual-threads}: приложение запускается в одном режиме, затем в другом,
+ * и тест повторяется с теми же параметрами.
+ * <p>
+ * Запуск (приложение и PostgreSQL уже запущены, например через docker-compose):
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt -Dmdep.includeScope=test
+ * java -Dusers=1000 -Dduration=PT60S -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     com.gshelgaas.bankcards.benchmark.LoadTest
+ * </pre>
+ * Параметры (системные свойства): {@code baseUrl} (http://localhost:8080), {@code users} (1000),
+ * {@code duration} (PT60S), {@code warmup} (PT10S), {@code email} и {@code password}
+ * (тестовый пользователь user@mail.ru). Вход выполняется один раз, токен общий для всех
+ * виртуальных пользователей, чтобы не упираться в ограничение частоты входа и BCrypt.
+ *
+ * @author Георгий Шельгаас
+ */
+public class LoadTest {
+
+    private static final List<String> ENDPOINTS = List.of(
+            "/user/cards?page=0&size=10",
+            "/user/transfers?size=20");
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("baseUrl", "http://localhost:8080");
+        int users = Integer.getInteger("users", 1000);
+        Duration duration = Duration.parse(System.getProperty("duration", "PT60S"));
+        Duration warmup = Duration.parse(System.getProperty("warmup", "PT10S"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        String token = login(client, baseUrl,
+                System.getProperty("email", "user@mail.ru"),
+                System.getProperty("password", "user123"));
+
+        System.out.printf("Users: %d, warmup: %s, duration: %s%n", users, warmup, duration);
+        run(client, baseUrl, token, users, warmup);
+        Map<String, List<Result>> results = run(client, baseUrl, token, users, duration);
+
+        for (String endpoint : ENDPOINTS) {
+            report(endpoint, results.get(endpoint), duration);
+        }
+    }
+
+    private static String login(HttpClient client, String baseUrl, String email, String password) throws Exception {
+        String body = new ObjectMapper().writeValueAsString(Map.of("email", email, "password", password));
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed: " + response.statusCode() + " " + response.body());
+        }
+        JsonNode json = new ObjectMapper().readTree(response.body());
+        return json.path("token").asText();
+    }
+
+    /**
+     * Запускает пользователей на виртуальных потоках на заданное время.
+     * Каждый пользователь копит результаты локально, объединение выполняется после остановки.
+     */
+    private static Map<String, List<Result>> run(HttpClient client, String baseUrl, String token,
+                                                 int users, Duration duration) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<List<Result>> perUser = new ArrayList<>(users);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < users; i++) {
+                List<Result> results = new ArrayList<>();
+                perUser.add(results);
+                int offset = i;
+                executor.submit(() -> {
+                    start.await();
+                    for (int n = offset; System.nanoTime() < deadline; n++) {
+                        results.add(call(client, baseUrl, token, ENDPOINTS.get(n % ENDPOINTS.size())));
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+
+        return perUser.stream()
+                .flatMap(List::stream)
+                .collect(Collectors.groupingBy(Result::endpoint));
+    }
+
+    private static Result call(HttpClient client, String baseUrl, String token, String endpoint) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        long started = System.nanoTime();
+        boolean ok;
+        try {
+            ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (Exception e) {
+            ok = false;
+        }
+        return new Result(endpoint, System.nanoTime() - started, ok);
+    }
+
+    private static void report(String endpoint, List<Result> results, Duration duration) {
+        if (results == null || results.isEmpty()) {
+            System.out.printf("%-30s no requests completed%n", endpoint);
+            return;
+        }
+        long[] latencies = results.stream().mapToLong(Result::latencyNanos).sorted().toArray();
+        long errors = results.stream().filter(result -> !result.ok()).count();
+        double seconds = duration.toMillis() / 1000.0;
+
+        System.out.printf("%-30s %8.1f req/s  errors: %d  p50: %s  p95: %s  p99: %s  max: %s%n",
+                endpoint,
+                results.size() / seconds,
+                errors,
+                millis(percentile(latencies, 0.50)),
+                millis(percentile(latencies, 0.95)),
+                millis(percentile(latencies, 0.99)),
+                millis(latencies[latencies.length - 1]));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1fms", TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0);
+    }
+
+    private record Result(String endpoint, long latencyNanos, boolean ok) {
+    }
+}
@@ -0,0 +1,175 @@
+package com.gshelgaas.bankcards.benchmark;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gshelgaas.bankcards.dto.AuthRequestDto;
+import com.gshelgaas.bankcards.dto.AuthResponseDto;
+import com.gshelgaas.bankcards.entity.User;
+import com.gshelgaas.bankcards.repository.RefreshTokenRepository;
+import com.gshelgaas.bankcards.repository.UserRepository;
+import com.gshelgaas.bankcards.security.JwtUtil;
+import com.gshelgaas.bankcards.security.UserDetailsServiceImpl;
+import com.gshelgaas.bankcards.service.AuthServiceImpl;
+import com.gshelgaas.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Измеряет пропускную способность входа в систему и количество SQL запросов на один вход:
+ * прежний путь (AuthenticationManager + повторный loadUserByUsername) и текущий,
+ * в котором principal берется из результата аутентификации.
+ * <p>
+ * Используются настоящие ProviderManager, DaoAuthenticationProvider, BCrypt и
+ * UserDetailsServiceImpl; репозитории заменены счетчиками, где каждый вызов,
+ * обращающийся к базе данных (findByEmail, save), считается одним SQL запросом.
+ * Параметр {@code userCache} включает кеш данных пользователей; без него видно
+ * количество запросов к базе на вход при промахе кеша. Итог выводится по завершении каждого прогона.
+ * <p>
+ * Запуск - аналогично {@link EncryptionUtilBenchmark}.
+ *
+ * @author Георгий Шельгаас
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(4)
+public class LoginBenchmark {
+
+    private static final String EMAIL = "user@mail.ru";
+    private static final String PASSWORD = "user123";
+
+    @Param({"4", "10"})
+    private int bcryptStrength;
+
+    @Param({"false", "true"})
+    private boolean userCache;
+
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong logins = new AtomicLong();
+
+    private UserDetailsServiceImpl userDetailsService;
+    private AuthServiceImpl authService;
+    private AuthRequestDto request;
+
+    @Setup
+    public void setUp() {
+        // Логирование каждого входа в консоль искажает измерение
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(bcryptStrength);
+        User user = User.builder()
+                .id(1L)
+                .email(EMAIL)
+                .password(passwordEncoder.encode(PASSWORD))
+                .role(User.Role.ROLE_USER)
+                .build();
+
+        UserRepository userRepository = countingProxy(UserRepository.class, (method, args) -> switch (method) {
+            case "findByEmail" -> {
+                statements.incrementAndGet();
+                yield Optional.of(user);
+            }
+            case "getReferenceById" -> user;
+            default -> throw new UnsupportedOperationException(method);
+        });
+        RefreshTokenRepository refreshTokenRepository = countingProxy(RefreshTokenRepository.class, (method, args) -> {
+            if (!method.equals("save")) {
+                throw new UnsupportedOperationException(method);
+            }
+            statements.incrementAndGet();
+            return args[0];
+        });
+
+        userDetailsService = new UserDetailsServiceImpl(userRepository, Caffeine.newBuilder()
+                .maximumSize(userCache ? 1000 : 0)
+                .executor(Runnable::run)
+                .buildAsync());
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(userDetailsService);
+        provider.setPasswordEncoder(passwordEncoder);
+
+        EncryptionUtil encryptionUtil = new EncryptionUtil(
+                "myDefaultEncryptionKey1234567890123456", "myDefaultHashKey12345678901234567890",
+                new SimpleMeterRegistry());
+        authService = new AuthServiceImpl(new ProviderManager(provider),
+                new JwtUtil("mySuperSecretKeyForJWT1234567890", 900000L),
+                null, refreshTokenRepository, userRepository, encryptionUtil, new SimpleMeterRegistry(),
+                new TransactionTemplate(countingProxy(PlatformTransactionManager.class, (method, args) -> null)));
+        request = new AuthRequestDto(EMAIL, PASSWORD);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCounters() {
+        statements.set(0);
+        logins.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportStatements() {
+        System.out.printf("%n  SQL statements per login: %.2f%n", (double) statements.get() / logins.get());
+    }
+
+    @Benchmark
+    public AuthResponseDto loginWithRedundantLookup() {
+        logins.incrementAndGet();
+        userDetailsService.loadUserByUsername(EMAIL);
+        return authService.login(request);
+    }
+
+    @Benchmark
+    public AuthResponseDto loginWithAuthenticationPrincipal() {
+        logins.incrementAndGet();
+        return authService.login(request);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T countingProxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.invoke(method.getName(), args));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LoginBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
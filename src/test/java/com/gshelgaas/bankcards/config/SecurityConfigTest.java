@@ -0,0 +1,52 @@
+package com.gshelgaas.bankcards.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecurityConfigTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final PasswordEncoder passwordEncoder = new SecurityConfig(null, null)
+            .passwordEncoder(5, Duration.ofMillis(250), 4, 14, meterRegistry);
+
+    @Test
+    void encode_createsPrefixedBcryptHashWithConfiguredStrength() {
+        String hash = passwordEncoder.encode("user123");
+
+        assertTrue(hash.startsWith("{bcrypt}$2a$05$"));
+        assertTrue(passwordEncoder.matches("user123", hash));
+        assertFalse(passwordEncoder.upgradeEncoding(hash));
+    }
+
+    @Test
+    void matches_withLegacyUnprefixedHash_verifiesAndRequestsUpgrade() {
+        String legacyHash = new BCryptPasswordEncoder(4).encode("user123");
+
+        assertTrue(passwordEncoder.matches("user123", legacyHash));
+        assertFalse(passwordEncoder.matches("wrong", legacyHash));
+        assertTrue(passwordEncoder.upgradeEncoding(legacyHash));
+    }
+
+    @Test
+    void upgradeEncoding_withLowerStrengthHash_returnsTrue() {
+        String weakHash = "{bcrypt}" + new BCryptPasswordEncoder(4).encode("user123");
+
+        assertTrue(passwordEncoder.upgradeEncoding(weakHash));
+    }
+
+    @Test
+    void passwordEncoder_recordsCpuTimeAndStrength() {
+        passwordEncoder.matches("user123", passwordEncoder.encode("user123"));
+
+        assertEquals(1, meterRegistry.get("auth.password.hash.cpu").tag("operation", "encode").timer().count());
+        assertEquals(1, meterRegistry.get("auth.password.hash.cpu").tag("operation", "matches").timer().count());
+        assertEquals(5.0, meterRegistry.get("auth.password.bcrypt.strength").gauge().value());
+    }
+}
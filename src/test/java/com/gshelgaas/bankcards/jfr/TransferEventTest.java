@@ -0,0 +1,60 @@
+package com.gshelgaas.bankcards.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferEventTest {
+
+    @Test
+    void bucketOf_returnsOrderOfMagnitude() {
+        assertEquals("<10", TransferEvent.bucketOf(new BigDecimal("9.99")));
+        assertEquals("10-100", TransferEvent.bucketOf(new BigDecimal("10.00")));
+        assertEquals("100-1000", TransferEvent.bucketOf(new BigDecimal("500")));
+        assertEquals("1000-10000", TransferEvent.bucketOf(new BigDecimal("9999.99")));
+        assertEquals(">=1000000", TransferEvent.bucketOf(new BigDecimal("25000000")));
+        assertEquals("<10", TransferEvent.bucketOf(BigDecimal.ZERO));
+        assertEquals("unknown", TransferEvent.bucketOf(null));
+    }
+
+    @Test
+    void commit_withEnabledRecording_writesEventFields() throws Exception {
+        Path file = Files.createTempFile("transfer", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(TransferEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+
+            TransferEvent event = new TransferEvent();
+            event.begin();
+            event.setUserId(1L);
+            event.setFromCardId(10L);
+            event.setToCardId(20L);
+            event.setAmountBucket(TransferEvent.bucketOf(new BigDecimal("150")));
+            event.setOutcome("success");
+            event.commit();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("bankcards.Transfer"))
+                .toList();
+        Files.delete(file);
+
+        assertEquals(1, events.size());
+        assertEquals(10L, events.get(0).getLong("fromCardId"));
+        assertEquals(20L, events.get(0).getLong("toCardId"));
+        assertEquals("100-1000", events.get(0).getString("amountBucket"));
+        assertEquals("success", events.get(0).getString("outcome"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.gshelgaas.bankcards.repository;
+
+import com.gshelgaas.bankcards.entity.BlockRequest;
+import com.gshelgaas.bankcards.entity.Card;
+import com.gshelgaas.bankcards.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет выборку pending запросов на блокировку для пакетной обработки на PostgreSQL.
+ * Требует Docker; без него тест пропускается.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class BlockRequestRepositoryTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16.1");
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private BlockRequestRepository blockRequestRepository;
+
+    @Test
+    void findPendingByIdInForUpdate_pendingBlockCardPastExpiry_isMarkedExpired() {
+        LocalDate today = LocalDate.now();
+        User user = userRepository.save(User.builder()
+                .email("owner@mail.ru")
+                .password("x")
+                .firstName("First")
+                .lastName("Last")
+                .role(User.Role.ROLE_USER)
+                .createdAt(LocalDateTime.now())
+                .build());
+        BlockRequest expired = pendingRequest(card(user, "expired", today.minusDays(1)));
+        BlockRequest valid = pendingRequest(card(user, "valid", today.plusYears(1)));
+
+        Map<Long, Boolean> cardExpired = blockRequestRepository
+                .findPendingByIdInForUpdate(List.of(expired.getId(), valid.getId()), today).stream()
+                .collect(Collectors.toMap(BlockRequestRepository.PendingBlockRequestView::getId,
+                        BlockRequestRepository.PendingBlockRequestView::getCardExpired));
+
+        assertEquals(Map.of(expired.getId(), true, valid.getId(), false), cardExpired);
+    }
+
+    private Card card(User user, String number, LocalDate expiryDate) {
+        return cardRepository.save(Card.builder()
+                .cardNumber(number)
+                .cardHolder("Holder")
+                .expiryDate(expiryDate)
+                .status(Card.CardStatus.PENDING_BLOCK)
+                .balance(BigDecimal.ZERO)
+                .user(user)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    private BlockRequest pendingRequest(Card card) {
+        return blockRequestRepository.saveAndFlush(BlockRequest.builder()
+                .card(card)
+                .reason("Lost card")
+                .status(BlockRequest.BlockStatus.PENDING)
+                .requestedAt(LocalDateTime.now())
+                .build());
+    }
+}
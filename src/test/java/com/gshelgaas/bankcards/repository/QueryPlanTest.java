@@ -0,0 +1,270 @@
+package com.gshelgaas.bankcards.repository;
+
+import com.gshelgaas.bankcards.entity.BlockRequest;
+import com.gshelgaas.bankcards.entity.Card;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет планы выполнения запросов репозиториев на PostgreSQL с заполненными таблицами.
+ * Планы всех выполненных запросов записываются модулем auto_explain в журнал сервера;
+ * тест вызывает каждый метод репозитория и падает, если план содержит Seq Scan.
+ * Запросы истории переводов пользователя дополнительно не должны сортировать строки,
+ * прочитанные из transfers: каждая ветка читает индекс в нужном порядке, а сортируется
+ * только объединение ограниченных LIMIT веток.
+ * Исключение - чтение всех действующих отозванных токенов для фильтра Блума
+ * (streamActiveJtis, countByExpiresAtAfter): оно по назначению читает почти всю таблицу,
+ * и список всех карт для администратора (findAllResponses), подсчет которого читает всю таблицу.
+ * Требует Docker; без него тест пропускается.
+ *
+ * @author Георгий Шельгаас
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class QueryPlanTest {
+
+    private static final String START_MARKER = "_start";
+    private static final String END_MARKER = "_end";
+    private static final Pattern QUERY_TEXT = Pattern.compile("\"Query Text\": \"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern SEQ_SCAN = Pattern.compile(
+            "\"Node Type\": \"Seq Scan\".*?\"Relation Name\": \"(\\w+)\"", Pattern.DOTALL);
+    private static final Pattern TRANSFERS_SORT = Pattern.compile(
+            "\"Node Type\": \"(?:Incremental )?Sort\"(?:(?!\"Node Type\").)*" +
+            "\"Node Type\": \"[^\"]*Scan\"(?:(?!\"Node Type\").)*\"Relation Name\": \"(transfers)\"",
+            Pattern.DOTALL);
+
+    private static final long USER_ID = 1_000_010L;
+    private static final long CARD_ID = 1_000_037L;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16.1")
+            .withCommand("postgres",
+                    "-c", "fsync=off",
+                    "-c", "shared_preload_libraries=auto_explain",
+                    "-c", "auto_explain.log_min_duration=0",
+                    "-c", "auto_explain.log_format=json");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private BlockRequestRepository blockRequestRepository;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private TransferIdempotencyRepository idempotencyRepository;
+
+    @Test
+    void repositoryQueries_onSeededDatabase_doNotUseSequentialScans() throws Exception {
+        seed();
+
+        List<String> violations = findPlanNodes(capturePlans("repository_queries", this::runRepositoryQueries),
+                SEQ_SCAN);
+
+        assertTrue(violations.isEmpty(), "Sequential scans found:\n" + String.join("\n", violations));
+    }
+
+    @Test
+    void transferHistoryQueries_onSeededDatabase_doNotSortTransfers() throws Exception {
+        seed();
+
+        String plans = capturePlans("transfer_history", this::runTransferHistoryQueries);
+        List<String> sequentialScans = findPlanNodes(plans, SEQ_SCAN);
+        List<String> transferSorts = findPlanNodes(plans, TRANSFERS_SORT);
+
+        assertTrue(sequentialScans.isEmpty(), "Sequential scans found:\n" + String.join("\n", sequentialScans));
+        assertTrue(transferSorts.isEmpty(), "Sorts over transfers found:\n" + String.join("\n", transferSorts));
+    }
+
+    /**
+     * Выполняет запросы между маркерами в журнале сервера и возвращает их планы.
+     */
+    private String capturePlans(String marker, Runnable queries) throws InterruptedException {
+        jdbcTemplate.queryForObject("SELECT '" + marker + START_MARKER + "'", String.class);
+        queries.run();
+        jdbcTemplate.queryForObject("SELECT '" + marker + END_MARKER + "'", String.class);
+        return awaitPlans(marker + START_MARKER, marker + END_MARKER);
+    }
+
+    private void runRepositoryQueries() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = LocalDate.now();
+
+        userRepository.findByEmail("user10@mail.ru");
+        userRepository.existsByEmail("user10@mail.ru");
+        userRepository.findRoleById(USER_ID);
+        userRepository.updatePassword(USER_ID, "hash");
+
+        cardRepository.existsByCardNumberHash("hash37");
+        cardRepository.findByCardNumberHash("hash37");
+        cardRepository.findByCardNumberHashIsNullOrCardNumberMaskedIsNullOrderById(Limit.of(100));
+        cardRepository.findByUserIdWithFilters(USER_ID, null, PageRequest.of(0, 10));
+        cardRepository.findByUserIdWithFilters(USER_ID, Card.CardStatus.ACTIVE, PageRequest.of(0, 10));
+        cardRepository.findResponseById(CARD_ID);
+        cardRepository.findBalanceById(CARD_ID);
+        cardRepository.findByIdForUpdate(CARD_ID);
+        cardRepository.findCardNumberById(CARD_ID);
+        List<Long> cardIds = cardRepository.findIdsByUserId(USER_ID);
+        cardRepository.findAllByIdInForUpdate(List.of(CARD_ID, CARD_ID + 1));
+        cardRepository.debitIfAvailable(CARD_ID, USER_ID, BigDecimal.ONE, today);
+        cardRepository.creditIfActive(CARD_ID + 1, BigDecimal.ONE, today);
+
+        try (Stream<?> transfers = transferRepository.streamAllTransfers(CARD_ID, null, null)) {
+            transfers.forEach(transfer -> { });
+        }
+
+        blockRequestRepository.findByCardUserId(USER_ID);
+        blockRequestRepository.findByCardIdAndStatus(CARD_ID, BlockRequest.BlockStatus.PENDING);
+        blockRequestRepository.findByStatus(BlockRequest.BlockStatus.PENDING);
+        blockRequestRepository.findFirstPageByStatus(BlockRequest.BlockStatus.PENDING, Limit.of(21));
+        blockRequestRepository.findPageByStatusAfter(BlockRequest.BlockStatus.APPROVED, now.minusDays(30),
+                1_000_000L, Limit.of(21));
+        List<Long> requestIds = List.of(100L, 200L, 300L);
+        blockRequestRepository.findPendingByIdInForUpdate(requestIds, today);
+        blockRequestRepository.updateStatusByIdIn(requestIds, BlockRequest.BlockStatus.APPROVED, now);
+        cardRepository.updateStatusByIdIn(List.of(CARD_ID, CARD_ID + 1), Card.CardStatus.BLOCKED);
+        cardRepository.updateStatusByIdInAndStatus(List.of(CARD_ID, CARD_ID + 1),
+                Card.CardStatus.PENDING_BLOCK, Card.CardStatus.ACTIVE);
+
+        refreshTokenRepository.findByTokenHashWithUser("token37");
+        refreshTokenRepository.markUsed(1_000_037L, now);
+        refreshTokenRepository.revokeFamily("family18", now);
+        refreshTokenRepository.deleteExpiredBefore(now);
+
+        revokedTokenRepository.deleteExpiredBefore(now);
+
+        idempotencyRepository.findWithTransfer(USER_ID, "key37");
+        idempotencyRepository.deleteCreatedBefore(now.minusDays(1));
+    }
+
+    private void runTransferHistoryQueries() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> cardIds = cardRepository.findIdsByUserId(USER_ID);
+
+        transferRepository.findCardsTransfersFirstPage(cardIds, 21);
+        transferRepository.findCardsTransfersPageBefore(cardIds, now.minusDays(1), 1_000_500L, 21);
+        transferRepository.findCardsTransfersPageBefore(List.of(CARD_ID), now, Long.MIN_VALUE, 1000);
+        transferRepository.findCounterpartTransfersFirstPage(cardIds, CARD_ID + 100, 21);
+        transferRepository.findCounterpartTransfersPageBefore(cardIds, CARD_ID + 100, now.minusDays(1),
+                1_000_500L, 21);
+    }
+
+    /**
+     * Заполняет таблицы объемом, при котором последовательное сканирование заметно дороже
+     * индексного, и обновляет статистику планировщика.
+     */
+    private void seed() {
+        jdbcTemplate.execute("""
+                INSERT INTO users (id, email, password, first_name, last_name, role, created_at)
+                SELECT 1000000 + g, 'user' || g || '@mail.ru', 'x', 'First', 'Last', 'ROLE_USER', now()
+                FROM generate_series(1, 5000) g""");
+        jdbcTemplate.execute("""
+                INSERT INTO cards (id, card_number, card_holder, expiry_date, status, balance, user_id,
+                                   created_at, card_number_hash, card_number_masked)
+                SELECT 1000000 + g, 'enc' || g, 'Holder', current_date + 365,
+                       CASE WHEN g % 10 = 0 THEN 'BLOCKED' ELSE 'ACTIVE' END, 1000,
+                       1000000 + (g - 1) / 4 + 1, now(), 'hash' || g, '**** **** **** ' || lpad((g % 10000)::text, 4, '0')
+                FROM generate_series(1, 20000) g""");
+        jdbcTemplate.execute("""
+                INSERT INTO transfers (id, from_card_id, to_card_id, amount, transfer_date, status, description)
+                SELECT 1000000 + g, 1000000 + g % 20000 + 1, 1000000 + (g * 7) % 20000 + 1, 10,
+                       now() - g * interval '1 minute', 'SUCCESS', NULL
+                FROM generate_series(1, 200000) g""");
+        jdbcTemplate.execute("""
+                INSERT INTO block_requests (card_id, reason, status, requested_at, processed_at)
+                SELECT 1000000 + g, 'reason', CASE WHEN g % 100 = 0 THEN 'PENDING' ELSE 'APPROVED' END,
+                       now() - g * interval '1 minute', CASE WHEN g % 100 = 0 THEN NULL ELSE now() END
+                FROM generate_series(1, 20000) g""");
+        jdbcTemplate.execute("""
+                INSERT INTO refresh_tokens (id, user_id, token_hash, family_id, expires_at, created_at, revoked_at)
+                SELECT 1000000 + g, 1000000 + g % 5000 + 1, 'token' || g, 'family' || g / 2,
+                       now() + CASE WHEN g % 100 = 0 THEN interval '-1 day' ELSE interval '14 days' END, now(), NULL
+                FROM generate_series(1, 20000) g""");
+        jdbcTemplate.execute("""
+                INSERT INTO revoked_tokens (jti, user_id, expires_at, revoked_at)
+                SELECT 'jti' || g, 1000000 + g % 5000 + 1,
+                       now() + CASE WHEN g % 100 = 0 THEN interval '-1 minute' ELSE interval '15 minutes' END, now()
+                FROM generate_series(1, 20000) g""");
+        jdbcTemplate.execute("""
+                INSERT INTO transfer_idempotency (user_id, idempotency_key, request_hash, transfer_id, created_at)
+                SELECT 1000000 + g % 5000 + 1, 'key' || g, 'request' || g, 1000000 + g,
+                       now() - CASE WHEN g % 100 = 0 THEN interval '2 days' ELSE interval '1 hour' END
+                FROM generate_series(1, 20000) g""");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    /**
+     * Ждет, пока журнал сервера дойдет до маркера окончания, и возвращает часть журнала между маркерами.
+     */
+    private String awaitPlans(String startMarker, String endMarker) throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            String logs = postgres.getLogs();
+            int start = logs.lastIndexOf(startMarker);
+            int end = logs.lastIndexOf(endMarker);
+            if (start >= 0 && end > start) {
+                return logs.substring(start, end);
+            }
+            Thread.sleep(100);
+        }
+        return fail("auto_explain output was not found in the PostgreSQL log");
+    }
+
+    /**
+     * Находит в планах узлы, подходящие под шаблон, и возвращает их в виде "таблица: текст запроса".
+     */
+    private List<String> findPlanNodes(String plans, Pattern node) {
+        List<String> violations = new ArrayList<>();
+        Matcher query = QUERY_TEXT.matcher(plans);
+        List<int[]> bounds = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        while (query.find()) {
+            bounds.add(new int[]{query.start(), query.end()});
+            texts.add(query.group(1));
+        }
+
+        for (int i = 0; i < bounds.size(); i++) {
+            int planEnd = i + 1 < bounds.size() ? bounds.get(i + 1)[0] : plans.length();
+            Matcher match = node.matcher(plans.substring(bounds.get(i)[1], planEnd));
+            while (match.find()) {
+                violations.add(match.group(1) + ": " + texts.get(i));
+            }
+        }
+        return violations;
+    }
+}
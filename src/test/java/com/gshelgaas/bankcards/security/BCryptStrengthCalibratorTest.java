@@ -0,0 +1,27 @@
+package com.gshelgaas.bankcards.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BCryptStrengthCalibratorTest {
+
+    @Test
+    void calibrate_withTinyTarget_returnsMinStrength() {
+        assertEquals(6, BCryptStrengthCalibrator.calibrate(Duration.ofNanos(1), 6, 12));
+    }
+
+    @Test
+    void calibrate_withHugeTarget_returnsMaxStrength() {
+        assertEquals(12, BCryptStrengthCalibrator.calibrate(Duration.ofHours(1), 6, 12));
+    }
+
+    @Test
+    void calibrate_withRealisticTarget_staysWithinBounds() {
+        int strength = BCryptStrengthCalibrator.calibrate(Duration.ofMillis(50), 4, 31);
+
+        assertTrue(strength >= 4 && strength <= 31);
+    }
+}
@@ -1,64 +1,117 @@
 package com.gshelgaas.bankcards.security;
 
+import com.gshelgaas.bankcards.entity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(MockitoExtension.class)
 class JwtUtilTest {
 
-    @Test
-    void generateToken_withValidEmail_returnsToken() {
-        JwtUtil jwtUtil = new JwtUtil();
-        ReflectionTestUtils.setField(jwtUtil, "secret", "testSecretKeyForTestingPurposesOnly123");
-        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600000L);
+    private static final String SECRET = "testSecretKeyForTestingPurposesOnly123";
+
+    private static final AuthenticatedUser USER =
+            new AuthenticatedUser(1L, "test@test.ru", User.Role.ROLE_USER, "encodedPassword");
 
-        String email = "test@test.ru";
+    @Test
+    void generateToken_withValidUser_returnsToken() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 3600000L);
 
-        String token = jwtUtil.generateToken(email);
+        String token = jwtUtil.generateToken(USER);
 
         assertNotNull(token);
         assertFalse(token.isEmpty());
     }
 
     @Test
-    void extractEmail_withValidToken_returnsEmail() {
-        JwtUtil jwtUtil = new JwtUtil();
-        ReflectionTestUtils.setField(jwtUtil, "secret", "testSecretKeyForTestingPurposesOnly123");
-        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600000L);
+    void parseAndValidate_withValidToken_returnsClaimsWithEmail() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 3600000L);
 
-        String email = "test@test.ru";
-        String token = jwtUtil.generateToken(email);
+        String token = jwtUtil.generateToken(USER);
 
-        String extractedEmail = jwtUtil.extractEmail(token);
+        Optional<Claims> claims = jwtUtil.parseAndValidate(token);
 
-        assertEquals(email, extractedEmail);
+        assertTrue(claims.isPresent());
+        assertEquals("test@test.ru", claims.get().getSubject());
     }
 
     @Test
-    void validateToken_withValidToken_returnsTrue() {
-        JwtUtil jwtUtil = new JwtUtil();
-        ReflectionTestUtils.setField(jwtUtil, "secret", "testSecretKeyForTestingPurposesOnly123");
-        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600000L);
+    void generateToken_eachToken_hasUniqueId() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 3600000L);
 
-        String token = jwtUtil.generateToken("test@test.ru");
+        String first = jwtUtil.parseAndValidate(jwtUtil.generateToken(USER)).orElseThrow().getId();
+        String second = jwtUtil.parseAndValidate(jwtUtil.generateToken(USER)).orElseThrow().getId();
 
-        boolean isValid = jwtUtil.validateToken(token);
+        assertNotNull(first);
+        assertNotEquals(first, second);
+    }
 
-        assertTrue(isValid);
+    @Test
+    void parseAndValidate_withInvalidToken_returnsEmpty() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 3600000L);
+
+        assertTrue(jwtUtil.parseAndValidate("invalid.token.here").isEmpty());
     }
 
     @Test
-    void validateToken_withInvalidToken_returnsFalse() {
-        JwtUtil jwtUtil = new JwtUtil();
-        ReflectionTestUtils.setField(jwtUtil, "secret", "testSecretKeyForTestingPurposesOnly123");
-        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600000L);
+    void parseAndValidate_withExpiredToken_returnsEmpty() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, -1000L);
+
+        String token = jwtUtil.generateToken(USER);
+
+        assertTrue(jwtUtil.parseAndValidate(token).isEmpty());
+    }
+
+    @Test
+    void parseAndValidate_withTokenSignedByOtherKey_returnsEmpty() {
+        JwtUtil issuer = new JwtUtil("anotherSecretKeyForTestingPurposes12345", 3600000L);
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 3600000L);
+
+        String token = issuer.generateToken(USER);
+
+        assertTrue(jwtUtil.parseAndValidate(token).isEmpty());
+    }
+
+    @Test
+    void toPrincipal_withGeneratedToken_restoresUserWithoutPassword() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 3600000L);
+
+        String token = jwtUtil.generateToken(
+                new AuthenticatedUser(42L, "admin@mail.ru", User.Role.ROLE_ADMIN, "encodedPassword"));
+
+        AuthenticatedUser principal = jwtUtil.parseAndValidate(token)
+                .flatMap(jwtUtil::toPrincipal)
+                .orElseThrow();
+
+        assertEquals(42L, principal.getId());
+        assertEquals("admin@mail.ru", principal.getEmail());
+        assertEquals(User.Role.ROLE_ADMIN, principal.getRole());
+        assertNull(principal.getPassword());
+        assertTrue(principal.getAuthorities().stream()
+                .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN")));
+    }
+
+    @Test
+    void toPrincipal_withTokenWithoutUserClaims_returnsEmpty() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 3600000L);
+
+        String legacyToken = Jwts.builder()
+                .setSubject("test@test.ru")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 3600000L))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .compact();
 
-        boolean isValid = jwtUtil.validateToken("invalid.token.here");
+        Claims claims = jwtUtil.parseAndValidate(legacyToken).orElseThrow();
 
-        assertFalse(isValid);
+        assertTrue(jwtUtil.toPrincipal(claims).isEmpty());
     }
-}
\ No newline at end of file
+}
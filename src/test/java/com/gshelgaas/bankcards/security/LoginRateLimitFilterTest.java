@@ -0,0 +1,125 @@
+package com.gshelgaas.bankcards.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginRateLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final LoginRateLimiter rateLimiter = new LoginRateLimiter(
+            5, Duration.ofMinutes(1), 2, Duration.ofMinutes(1), 1000, meterRegistry);
+
+    private final LoginRateLimitFilter filter = new LoginRateLimitFilter(rateLimiter, new ObjectMapper());
+
+    @Test
+    void doFilter_withinLimit_passesBodyToChain() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(loginRequest("10.0.0.1", "user@example.com"), new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        String body = new String(chain.getRequest().getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(body.contains("user@example.com"));
+    }
+
+    @Test
+    void doFilter_tooManyFailedAttemptsForEmail_returns429WithRetryAfter() throws Exception {
+        filter.doFilter(loginRequest("10.0.0.1", "user@example.com"), new MockHttpServletResponse(), failedLogin());
+        filter.doFilter(loginRequest("10.0.0.2", "USER@example.com"), new MockHttpServletResponse(), failedLogin());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(loginRequest("10.0.0.3", "user@example.com"), response, chain);
+
+        assertEquals(429, response.getStatus());
+        assertEquals("30", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("TOO_MANY_REQUESTS"));
+        assertNull(chain.getRequest());
+        assertEquals(1.0, meterRegistry.counter("auth.login.rate_limit", "key", "email", "result", "rejected").count());
+    }
+
+    @Test
+    void doFilter_successfulLoginsWhileAnotherClientFails_doNotConsumeEmailLimit() throws Exception {
+        filter.doFilter(loginRequest("10.0.0.2", "user@example.com"), new MockHttpServletResponse(), failedLogin());
+
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+            filter.doFilter(loginRequest("10.0.0.1", "user@example.com"), response, chain);
+
+            assertEquals(200, response.getStatus());
+            assertNotNull(chain.getRequest());
+        }
+
+        MockHttpServletResponse attackerResponse = new MockHttpServletResponse();
+        filter.doFilter(loginRequest("10.0.0.2", "user@example.com"), attackerResponse, failedLogin());
+        assertEquals(401, attackerResponse.getStatus());
+
+        attackerResponse = new MockHttpServletResponse();
+        filter.doFilter(loginRequest("10.0.0.2", "user@example.com"), attackerResponse, failedLogin());
+        assertEquals(429, attackerResponse.getStatus());
+        assertEquals(3.0, meterRegistry.counter("auth.login.rate_limit", "key", "email", "result", "refunded").count());
+    }
+
+    @Test
+    void doFilter_tooManyAttemptsFromIp_rejectsBeforeReadingBody() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            filter.doFilter(loginRequest("10.0.0.1", "user" + i + "@example.com"),
+                    new MockHttpServletResponse(), new MockFilterChain());
+        }
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(loginRequest("10.0.0.1", "other@example.com"), response, chain);
+
+        assertEquals(429, response.getStatus());
+        assertEquals("12", response.getHeader("Retry-After"));
+        assertNull(chain.getRequest());
+        assertEquals(0.0, meterRegistry.counter("auth.login.rate_limit", "key", "email", "result", "rejected").count());
+    }
+
+    @Test
+    void doFilter_otherEndpoint_isNotLimited() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/refresh");
+            request.setServletPath("/auth/refresh");
+            request.setRemoteAddr("10.0.0.1");
+            MockFilterChain chain = new MockFilterChain();
+
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+            assertNotNull(chain.getRequest());
+        }
+    }
+
+    private MockFilterChain failedLogin() {
+        return new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                response.setStatus(401);
+            }
+        });
+    }
+
+    private MockHttpServletRequest loginRequest(String ip, String email) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login");
+        request.setServletPath("/auth/login");
+        request.setRemoteAddr(ip);
+        request.setContentType("application/json");
+        request.setContent(("{\"email\":\"" + email + "\",\"password\":\"secret\"}").getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
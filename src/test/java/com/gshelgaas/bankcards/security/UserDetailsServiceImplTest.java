@@ -2,17 +2,30 @@ package com.gshelgaas.bankcards.security;
 
 import com.gshelgaas.bankcards.entity.User;
 import com.gshelgaas.bankcards.repository.UserRepository;
+import com.gshelgaas.bankcards.service.UserChangedEvent;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,9 +34,15 @@ class UserDetailsServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
-    @InjectMocks
     private UserDetailsServiceImpl userDetailsService;
 
+    @BeforeEach
+    void setUp() {
+        userDetailsService = new UserDetailsServiceImpl(userRepository, Caffeine.newBuilder()
+                .maximumSize(100)
+                .buildAsync());
+    }
+
     @Test
     void loadUserByUsername_withValidEmail_returnsUserDetails() {
         String email = "user@mail.ru";
@@ -39,6 +58,8 @@ class UserDetailsServiceImplTest {
         UserDetails userDetails = userDetailsService.loadUserByUsername(email);
 
         assertNotNull(userDetails);
+        assertInstanceOf(AuthenticatedUser.class, userDetails);
+        assertEquals(1L, ((AuthenticatedUser) userDetails).getId());
         assertEquals(email, userDetails.getUsername());
         assertEquals("encodedPassword", userDetails.getPassword());
         assertTrue(userDetails.getAuthorities().stream()
@@ -74,4 +95,155 @@ class UserDetailsServiceImplTest {
         assertTrue(userDetails.getAuthorities().stream()
                 .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN")));
     }
-}
\ No newline at end of file
+
+    @Test
+    void updatePassword_storesNewHashAndEvictsCachedUser() {
+        String email = "user@mail.ru";
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user(1L, email)));
+        AuthenticatedUser principal = (AuthenticatedUser) userDetailsService.loadUserByUsername(email);
+
+        UserDetails updated = userDetailsService.updatePassword(principal, "{bcrypt}newHash");
+
+        assertEquals("{bcrypt}newHash", updated.getPassword());
+        assertEquals(email, updated.getUsername());
+        verify(userRepository).updatePassword(1L, "{bcrypt}newHash");
+
+        userDetailsService.loadUserByUsername(email);
+        verify(userRepository, times(2)).findByEmail(email);
+    }
+
+    @Test
+    void isStillValid_withUnchangedRole_returnsTrue() {
+        AuthenticatedUser principal = new AuthenticatedUser(1L, "user@mail.ru", User.Role.ROLE_USER, null);
+        when(userRepository.findRoleById(1L)).thenReturn(Optional.of(User.Role.ROLE_USER));
+
+        assertTrue(userDetailsService.isStillValid(principal));
+    }
+
+    @Test
+    void isStillValid_withChangedRole_returnsFalse() {
+        AuthenticatedUser principal = new AuthenticatedUser(1L, "admin@mail.ru", User.Role.ROLE_ADMIN, null);
+        when(userRepository.findRoleById(1L)).thenReturn(Optional.of(User.Role.ROLE_USER));
+
+        assertFalse(userDetailsService.isStillValid(principal));
+    }
+
+    @Test
+    void isStillValid_withDeletedUser_returnsFalse() {
+        AuthenticatedUser principal = new AuthenticatedUser(1L, "user@mail.ru", User.Role.ROLE_USER, null);
+        when(userRepository.findRoleById(1L)).thenReturn(Optional.empty());
+
+        assertFalse(userDetailsService.isStillValid(principal));
+    }
+
+    @Test
+    void loadUserByUsername_repeatedLookups_queriesRepositoryOnce() {
+        String email = "user@mail.ru";
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user(1L, email)));
+
+        userDetailsService.loadUserByUsername(email);
+        userDetailsService.loadUserByUsername(email);
+
+        verify(userRepository, times(1)).findByEmail(email);
+    }
+
+    @Test
+    void loadUserByUsername_whenCredentialsErased_keepsCachedPassword() {
+        String email = "user@mail.ru";
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user(1L, email)));
+
+        AuthenticatedUser first = (AuthenticatedUser) userDetailsService.loadUserByUsername(email);
+        first.eraseCredentials();
+
+        UserDetails second = userDetailsService.loadUserByUsername(email);
+
+        assertNotSame(first, second);
+        assertEquals("encodedPassword", second.getPassword());
+    }
+
+    @Test
+    void loadUserByUsername_withNonExistingEmail_doesNotCacheMiss() {
+        String email = "new@test.ru";
+        when(userRepository.findByEmail(email))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(user(3L, email)));
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername(email));
+
+        assertEquals(email, userDetailsService.loadUserByUsername(email).getUsername());
+    }
+
+    @Test
+    void onUserChanged_withUserId_evictsCachedUser() {
+        String email = "user@mail.ru";
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user(1L, email)));
+
+        userDetailsService.loadUserByUsername(email);
+        userDetailsService.onUserChanged(new UserChangedEvent(1L, null));
+        userDetailsService.loadUserByUsername(email);
+
+        verify(userRepository, times(2)).findByEmail(email);
+    }
+
+    @Test
+    void loadUserByUsername_underConcurrentLoad_queriesEachUserOnce() throws Exception {
+        int users = 50;
+        int requests = 10_000;
+        when(userRepository.findByEmail(anyString())).thenAnswer(invocation -> {
+            String email = invocation.getArgument(0);
+            return Optional.of(user(Long.parseLong(email.substring(4, email.indexOf('@'))), email));
+        });
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<UserDetails>> results = IntStream.range(0, requests)
+                    .mapToObj(i -> executor.submit(
+                            () -> userDetailsService.loadUserByUsername("user" + (i % users) + "@mail.ru")))
+                    .toList();
+
+            for (Future<UserDetails> result : results) {
+                assertNotNull(result.get());
+            }
+        }
+
+        // Без кеша каждый запрос выполнял бы findByEmail: 10 000 запросов к БД вместо 50
+        verify(userRepository, times(users)).findByEmail(anyString());
+    }
+
+    @Test
+    void loadUserByUsername_cacheMissesOnVirtualThreads_doNotPinCarrierThreads() throws Exception {
+        when(userRepository.findByEmail(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            return Optional.of(user(1L, invocation.getArgument(0)));
+        });
+        Path dump = Files.createTempFile("pinned", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(10));
+            recording.start();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<UserDetails>> results = IntStream.range(0, 20)
+                        .mapToObj(i -> executor.submit(
+                                () -> userDetailsService.loadUserByUsername("user" + i + "@mail.ru")))
+                        .toList();
+                for (Future<UserDetails> result : results) {
+                    assertNotNull(result.get());
+                }
+            }
+            recording.stop();
+            recording.dump(dump);
+
+            assertEquals(List.of(), RecordingFile.readAllEvents(dump));
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+    }
+
+    private static User user(Long id, String email) {
+        return User.builder()
+                .id(id)
+                .email(email)
+                .password("encodedPassword")
+                .role(User.Role.ROLE_USER)
+                .build();
+    }
+}
@@ -0,0 +1,144 @@
+package com.gshelgaas.bankcards.service;
+
+import com.gshelgaas.bankcards.dto.TransferRequestDto;
+import com.gshelgaas.bankcards.entity.Card;
+import com.gshelgaas.bankcards.entity.Transfer;
+import com.gshelgaas.bankcards.entity.User;
+import com.gshelgaas.bankcards.exception.ConflictException;
+import com.gshelgaas.bankcards.exception.ForbiddenException;
+import com.gshelgaas.bankcards.exception.NotFoundException;
+import com.gshelgaas.bankcards.repository.CardRepository;
+import com.gshelgaas.bankcards.repository.TransferRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AtomicTransferEngineTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @InjectMocks
+    private AtomicTransferEngine transferEngine;
+
+    private Card createTestCard(Long id, Long userId, Card.CardStatus status, BigDecimal balance) {
+        return Card.builder()
+                .id(id)
+                .cardHolder("Test User")
+                .expiryDate(LocalDate.now().plusYears(1))
+                .status(status)
+                .balance(balance)
+                .user(User.builder().id(userId).build())
+                .build();
+    }
+
+    private TransferRequestDto request(Long fromCardId, Long toCardId, long amount) {
+        return TransferRequestDto.builder()
+                .fromCardId(fromCardId)
+                .toCardId(toCardId)
+                .amount(BigDecimal.valueOf(amount))
+                .description("Test transfer")
+                .build();
+    }
+
+    @Test
+    void execute_withValidData_debitsCreditsAndSavesTransfer() {
+        when(cardRepository.debitIfAvailable(eq(1L), eq(1L), eq(BigDecimal.valueOf(100)), any())).thenReturn(1);
+        when(cardRepository.creditIfActive(eq(2L), eq(BigDecimal.valueOf(100)), any())).thenReturn(1);
+        when(cardRepository.getReferenceById(1L)).thenReturn(Card.builder().id(1L).build());
+        when(cardRepository.getReferenceById(2L)).thenReturn(Card.builder().id(2L).build());
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Transfer result = transferEngine.execute(request(1L, 2L, 100), 1L);
+
+        assertEquals(1L, result.getFromCard().getId());
+        assertEquals(2L, result.getToCard().getId());
+        assertEquals(Transfer.TransferStatus.SUCCESS, result.getStatus());
+        verify(cardRepository, never()).findById(any());
+        verify(cardRepository, never()).save(any(Card.class));
+    }
+
+    @Test
+    void execute_fromHigherIdCard_creditsBeforeDebit() {
+        when(cardRepository.creditIfActive(eq(1L), any(), any())).thenReturn(1);
+        when(cardRepository.debitIfAvailable(eq(2L), eq(1L), any(), any())).thenReturn(1);
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        transferEngine.execute(request(2L, 1L, 100), 1L);
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).creditIfActive(eq(1L), any(), any());
+        inOrder.verify(cardRepository).debitIfAvailable(eq(2L), eq(1L), any(), any());
+    }
+
+    @Test
+    void execute_withInsufficientFunds_throwsConflict() {
+        when(cardRepository.debitIfAvailable(eq(1L), eq(1L), any(), any())).thenReturn(0);
+        when(cardRepository.findById(1L))
+                .thenReturn(Optional.of(createTestCard(1L, 1L, Card.CardStatus.ACTIVE, BigDecimal.TEN)));
+        when(cardRepository.findById(2L))
+                .thenReturn(Optional.of(createTestCard(2L, 2L, Card.CardStatus.ACTIVE, BigDecimal.TEN)));
+
+        ConflictException exception = assertThrows(ConflictException.class,
+                () -> transferEngine.execute(request(1L, 2L, 100), 1L));
+
+        assertEquals("Insufficient funds", exception.getMessage());
+        verify(cardRepository, never()).creditIfActive(any(), any(), any());
+        verify(transferRepository, never()).save(any(Transfer.class));
+    }
+
+    @Test
+    void execute_withForeignCard_throwsForbidden() {
+        when(cardRepository.debitIfAvailable(eq(1L), eq(1L), any(), any())).thenReturn(0);
+        when(cardRepository.findById(1L))
+                .thenReturn(Optional.of(createTestCard(1L, 999L, Card.CardStatus.ACTIVE, BigDecimal.TEN)));
+        when(cardRepository.findById(2L))
+                .thenReturn(Optional.of(createTestCard(2L, 2L, Card.CardStatus.ACTIVE, BigDecimal.TEN)));
+
+        assertThrows(ForbiddenException.class, () -> transferEngine.execute(request(1L, 2L, 5), 1L));
+        verify(transferRepository, never()).save(any(Transfer.class));
+    }
+
+    @Test
+    void execute_withBlockedRecipient_throwsConflict() {
+        when(cardRepository.debitIfAvailable(eq(1L), eq(1L), any(), any())).thenReturn(1);
+        when(cardRepository.creditIfActive(eq(2L), any(), any())).thenReturn(0);
+        when(cardRepository.findById(1L))
+                .thenReturn(Optional.of(createTestCard(1L, 1L, Card.CardStatus.ACTIVE, BigDecimal.TEN)));
+        when(cardRepository.findById(2L))
+                .thenReturn(Optional.of(createTestCard(2L, 2L, Card.CardStatus.BLOCKED, BigDecimal.TEN)));
+
+        ConflictException exception = assertThrows(ConflictException.class,
+                () -> transferEngine.execute(request(1L, 2L, 5), 1L));
+
+        assertEquals("Cards must be active for transfer", exception.getMessage());
+        verify(transferRepository, never()).save(any(Transfer.class));
+    }
+
+    @Test
+    void execute_withMissingRecipient_throwsNotFound() {
+        when(cardRepository.debitIfAvailable(eq(1L), eq(1L), any(), any())).thenReturn(1);
+        when(cardRepository.creditIfActive(eq(2L), any(), any())).thenReturn(0);
+        when(cardRepository.findById(1L))
+                .thenReturn(Optional.of(createTestCard(1L, 1L, Card.CardStatus.ACTIVE, BigDecimal.TEN)));
+        when(cardRepository.findById(2L)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> transferEngine.execute(request(1L, 2L, 5), 1L));
+    }
+}
@@ -2,23 +2,42 @@ package com.gshelgaas.bankcards.service;
 
 import com.gshelgaas.bankcards.dto.AuthRequestDto;
 import com.gshelgaas.bankcards.dto.AuthResponseDto;
+import com.gshelgaas.bankcards.entity.RefreshToken;
+import com.gshelgaas.bankcards.entity.User;
+import com.gshelgaas.bankcards.exception.UnauthorizedException;
+import com.gshelgaas.bankcards.repository.RefreshTokenRepository;
+import com.gshelgaas.bankcards.repository.UserRepository;
+import com.gshelgaas.bankcards.security.AuthenticatedUser;
 import com.gshelgaas.bankcards.security.JwtUtil;
+import com.gshelgaas.bankcards.util.EncryptionUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Collections;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,10 +47,25 @@ class AuthServiceTest {
     private AuthenticationManager authenticationManager;
 
     @Mock
-    private UserDetailsService userDetailsService;
+    private JwtUtil jwtUtil;
 
     @Mock
-    private JwtUtil jwtUtil;
+    private TokenRevocationService tokenRevocationService;
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private EncryptionUtil encryptionUtil;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
 
     @InjectMocks
     private AuthServiceImpl authService;
@@ -39,19 +73,34 @@ class AuthServiceTest {
     @Test
     void login_withValidCredentials_returnsToken() {
         AuthRequestDto authRequest = new AuthRequestDto("user@mail.ru", "user123");
-        UserDetails userDetails = new User("user@mail.ru", "user123", Collections.emptyList());
+        AuthenticatedUser user = new AuthenticatedUser(1L, "user@mail.ru", User.Role.ROLE_USER, "encoded");
 
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
-                .thenReturn(null);
-        when(userDetailsService.loadUserByUsername("user@mail.ru")).thenReturn(userDetails);
-        when(jwtUtil.generateToken("user@mail.ru")).thenReturn("jwt-token");
+                .thenReturn(UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities()));
+        when(jwtUtil.generateToken(user)).thenReturn("jwt-token");
+        when(jwtUtil.getExpiration()).thenReturn(900000L);
+        when(encryptionUtil.hash(anyString())).thenReturn("refresh-hash");
 
         AuthResponseDto result = authService.login(authRequest);
 
         assertNotNull(result);
         assertEquals("jwt-token", result.getToken());
-        verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
-        verify(jwtUtil).generateToken("user@mail.ru");
+        assertNotNull(result.getRefreshToken());
+        assertEquals(900L, result.getExpiresIn());
+        verify(jwtUtil).generateToken(user);
+        InOrder inOrder = inOrder(authenticationManager, transactionTemplate, refreshTokenRepository);
+        inOrder.verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
+        inOrder.verify(transactionTemplate).execute(any(TransactionCallback.class));
+        inOrder.verify(refreshTokenRepository).save(any(RefreshToken.class));
+
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        verify(encryptionUtil).hash(result.getRefreshToken());
+        assertEquals("refresh-hash", saved.getValue().getTokenHash());
+        assertNotNull(saved.getValue().getFamilyId());
+        assertNull(saved.getValue().getRevokedAt());
+        assertTrue(saved.getValue().getExpiresAt().isAfter(LocalDateTime.now().plusDays(13)));
+        assertEquals(1, meterRegistry.get("auth.login").tag("outcome", "success").timer().count());
     }
 
     @Test
@@ -62,24 +111,173 @@ class AuthServiceTest {
                 .thenThrow(new BadCredentialsException("Bad credentials"));
 
         assertThrows(BadCredentialsException.class, () -> authService.login(authRequest));
-        verify(userDetailsService, never()).loadUserByUsername(anyString());
-        verify(jwtUtil, never()).generateToken(anyString());
+        assertEquals(1, meterRegistry.get("auth.login").tag("outcome", "failure").timer().count());
+        verify(jwtUtil, never()).generateToken(any(AuthenticatedUser.class));
+        verifyNoInteractions(refreshTokenRepository, transactionTemplate);
     }
 
     @Test
     void login_withAdminCredentials_returnsToken() {
         AuthRequestDto authRequest = new AuthRequestDto("admin@mail.ru", "admin123");
-        UserDetails userDetails = new User("admin@mail.ru", "admin123", Collections.emptyList());
+        AuthenticatedUser user = new AuthenticatedUser(2L, "admin@mail.ru", User.Role.ROLE_ADMIN, "encoded");
 
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
-                .thenReturn(null);
-        when(userDetailsService.loadUserByUsername("admin@mail.ru")).thenReturn(userDetails);
-        when(jwtUtil.generateToken("admin@mail.ru")).thenReturn("admin-jwt-token");
+                .thenReturn(UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities()));
+        when(jwtUtil.generateToken(user)).thenReturn("admin-jwt-token");
+        when(encryptionUtil.hash(anyString())).thenReturn("refresh-hash");
 
         AuthResponseDto result = authService.login(authRequest);
 
         assertNotNull(result);
         assertEquals("admin-jwt-token", result.getToken());
-        verify(jwtUtil).generateToken("admin@mail.ru");
+        verify(jwtUtil).generateToken(user);
+    }
+
+    @Test
+    void logout_withValidToken_revokesToken() {
+        Claims claims = Jwts.claims().setId("jti-1").setSubject("user@mail.ru")
+                .setExpiration(new Date(System.currentTimeMillis() + 3600000L));
+        AuthenticatedUser user = new AuthenticatedUser(1L, "user@mail.ru", User.Role.ROLE_USER, null);
+
+        when(jwtUtil.parseAndValidate("jwt-token")).thenReturn(Optional.of(claims));
+        when(jwtUtil.toPrincipal(claims)).thenReturn(Optional.of(user));
+
+        authService.logout("jwt-token", null);
+
+        verify(tokenRevocationService).revoke("jti-1", 1L,
+                LocalDateTime.ofInstant(claims.getExpiration().toInstant(), ZoneId.systemDefault()));
+    }
+
+    @Test
+    void logout_withInvalidToken_throwsException() {
+        when(jwtUtil.parseAndValidate("invalid")).thenReturn(Optional.empty());
+
+        assertThrows(UnauthorizedException.class, () -> authService.logout("invalid", null));
+        verifyNoInteractions(tokenRevocationService);
+    }
+
+    @Test
+    void logout_withTokenWithoutId_throwsException() {
+        Claims claims = Jwts.claims().setSubject("user@mail.ru")
+                .setExpiration(new Date(System.currentTimeMillis() + 3600000L));
+        when(jwtUtil.parseAndValidate("legacy-token")).thenReturn(Optional.of(claims));
+
+        assertThrows(IllegalArgumentException.class, () -> authService.logout("legacy-token", null));
+        verifyNoInteractions(tokenRevocationService);
+    }
+
+    @Test
+    void logout_withRefreshToken_revokesRefreshTokenFamily() {
+        Claims claims = Jwts.claims().setId("jti-1").setSubject("user@mail.ru")
+                .setExpiration(new Date(System.currentTimeMillis() + 3600000L));
+        AuthenticatedUser user = new AuthenticatedUser(1L, "user@mail.ru", User.Role.ROLE_USER, null);
+        RefreshToken stored = refreshToken(userEntity(1L), LocalDateTime.now().plusDays(1), null);
+
+        when(jwtUtil.parseAndValidate("jwt-token")).thenReturn(Optional.of(claims));
+        when(jwtUtil.toPrincipal(claims)).thenReturn(Optional.of(user));
+        when(encryptionUtil.hash("refresh-token")).thenReturn("refresh-hash");
+        when(refreshTokenRepository.findByTokenHashWithUser("refresh-hash")).thenReturn(Optional.of(stored));
+
+        authService.logout("jwt-token", "refresh-token");
+
+        verify(refreshTokenRepository).revokeFamily(eq("family-1"), any(LocalDateTime.class));
+    }
+
+    @Test
+    void refresh_withValidToken_rotatesTokensWithoutPasswordCheck() {
+        User owner = userEntity(1L);
+        RefreshToken stored = refreshToken(owner, LocalDateTime.now().plusDays(1), null);
+
+        when(encryptionUtil.hash("refresh-token")).thenReturn("refresh-hash");
+        when(encryptionUtil.hash(argThat(token -> !token.equals("refresh-token")))).thenReturn("rotated-hash");
+        when(refreshTokenRepository.findByTokenHashWithUser("refresh-hash")).thenReturn(Optional.of(stored));
+        when(refreshTokenRepository.markUsed(eq(10L), any(LocalDateTime.class))).thenReturn(1);
+        when(jwtUtil.generateToken(any(AuthenticatedUser.class))).thenReturn("new-jwt-token");
+
+        AuthResponseDto result = authService.refresh("refresh-token");
+
+        assertEquals("new-jwt-token", result.getToken());
+        assertNotNull(result.getRefreshToken());
+        assertNotEquals("refresh-token", result.getRefreshToken());
+
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        assertEquals("rotated-hash", saved.getValue().getTokenHash());
+        assertEquals("family-1", saved.getValue().getFamilyId());
+        assertSame(owner, saved.getValue().getUser());
+
+        ArgumentCaptor<AuthenticatedUser> principal = ArgumentCaptor.forClass(AuthenticatedUser.class);
+        verify(jwtUtil).generateToken(principal.capture());
+        assertEquals(1L, principal.getValue().getId());
+        assertEquals(User.Role.ROLE_USER, principal.getValue().getRole());
+        verifyNoInteractions(authenticationManager);
+    }
+
+    @Test
+    void refresh_withUnknownToken_throwsException() {
+        when(encryptionUtil.hash("unknown")).thenReturn("unknown-hash");
+        when(refreshTokenRepository.findByTokenHashWithUser("unknown-hash")).thenReturn(Optional.empty());
+
+        assertThrows(UnauthorizedException.class, () -> authService.refresh("unknown"));
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void refresh_withUsedToken_revokesFamily() {
+        RefreshToken stored = refreshToken(userEntity(1L), LocalDateTime.now().plusDays(1), LocalDateTime.now());
+
+        when(encryptionUtil.hash("refresh-token")).thenReturn("refresh-hash");
+        when(refreshTokenRepository.findByTokenHashWithUser("refresh-hash")).thenReturn(Optional.of(stored));
+
+        assertThrows(UnauthorizedException.class, () -> authService.refresh("refresh-token"));
+        verify(refreshTokenRepository).revokeFamily(eq("family-1"), any(LocalDateTime.class));
+        verify(refreshTokenRepository, never()).markUsed(any(), any());
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void refresh_withConcurrentlyUsedToken_revokesFamily() {
+        RefreshToken stored = refreshToken(userEntity(1L), LocalDateTime.now().plusDays(1), null);
+
+        when(encryptionUtil.hash("refresh-token")).thenReturn("refresh-hash");
+        when(refreshTokenRepository.findByTokenHashWithUser("refresh-hash")).thenReturn(Optional.of(stored));
+        when(refreshTokenRepository.markUsed(eq(10L), any(LocalDateTime.class))).thenReturn(0);
+
+        assertThrows(UnauthorizedException.class, () -> authService.refresh("refresh-token"));
+        verify(refreshTokenRepository).revokeFamily(eq("family-1"), any(LocalDateTime.class));
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void refresh_withExpiredToken_throwsException() {
+        RefreshToken stored = refreshToken(userEntity(1L), LocalDateTime.now().minusMinutes(1), null);
+
+        when(encryptionUtil.hash("refresh-token")).thenReturn("refresh-hash");
+        when(refreshTokenRepository.findByTokenHashWithUser("refresh-hash")).thenReturn(Optional.of(stored));
+
+        assertThrows(UnauthorizedException.class, () -> authService.refresh("refresh-token"));
+        verify(refreshTokenRepository, never()).markUsed(any(), any());
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    private static User userEntity(Long id) {
+        return User.builder()
+                .id(id)
+                .email("user@mail.ru")
+                .password("encoded")
+                .role(User.Role.ROLE_USER)
+                .build();
+    }
+
+    private static RefreshToken refreshToken(User user, LocalDateTime expiresAt, LocalDateTime revokedAt) {
+        return RefreshToken.builder()
+                .id(10L)
+                .user(user)
+                .tokenHash("refresh-hash")
+                .familyId("family-1")
+                .createdAt(LocalDateTime.now().minusDays(1))
+                .expiresAt(expiresAt)
+                .revokedAt(revokedAt)
+                .build();
     }
-}
\ No newline at end of file
+}
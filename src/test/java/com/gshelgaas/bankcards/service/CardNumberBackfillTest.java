@@ -0,0 +1,69 @@
+package com.gshelgaas.bankcards.service;
+
+import com.gshelgaas.bankcards.entity.Card;
+import com.gshelgaas.bankcards.repository.CardRepository;
+import com.gshelgaas.bankcards.util.EncryptionUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardNumberBackfillTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private EncryptionUtil encryptionUtil;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CardNumberBackfill backfill;
+
+    @BeforeEach
+    void setUp() {
+        backfill = new CardNumberBackfill(cardRepository, encryptionUtil, new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(backfill, "batchSize", 2);
+    }
+
+    @Test
+    void backfill_processesBatchesUntilNoCardsLeft() {
+        Card first = Card.builder().id(1L).cardNumber("enc1").build();
+        Card second = Card.builder().id(2L).cardNumber("enc2").build();
+        Card third = Card.builder().id(3L).cardNumber("enc3").build();
+        when(cardRepository.findByCardNumberHashIsNullOrCardNumberMaskedIsNullOrderById(Limit.of(2)))
+                .thenReturn(List.of(first, second))
+                .thenReturn(List.of(third));
+        when(encryptionUtil.decrypt(anyString())).thenReturn("4111111111111111", "4222222222222222", "4333333333333333333");
+        when(encryptionUtil.hash(anyString())).thenAnswer(invocation -> "hash-" + invocation.getArgument(0));
+
+        long updated = backfill.backfill();
+
+        assertEquals(3, updated);
+        assertEquals("hash-4111111111111111", first.getCardNumberHash());
+        assertEquals("**** **** **** 1111", first.getCardNumberMasked());
+        assertEquals("hash-4333333333333333333", third.getCardNumberHash());
+        assertEquals("****3333", third.getCardNumberMasked());
+        verify(cardRepository, times(2)).findByCardNumberHashIsNullOrCardNumberMaskedIsNullOrderById(Limit.of(2));
+    }
+
+    @Test
+    void backfill_withNothingToUpdate_returnsZero() {
+        when(cardRepository.findByCardNumberHashIsNullOrCardNumberMaskedIsNullOrderById(Limit.of(2))).thenReturn(List.of());
+
+        assertEquals(0, backfill.backfill());
+        verifyNoInteractions(encryptionUtil);
+    }
+}
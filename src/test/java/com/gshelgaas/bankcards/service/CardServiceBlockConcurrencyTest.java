@@ -0,0 +1,166 @@
+package com.gshelgaas.bankcards.service;
+
+import com.gshelgaas.bankcards.dto.BlockRequestDto;
+import com.gshelgaas.bankcards.entity.BlockRequest;
+import com.gshelgaas.bankcards.entity.Card;
+import com.gshelgaas.bankcards.entity.User;
+import com.gshelgaas.bankcards.exception.ConflictException;
+import com.gshelgaas.bankcards.repository.BlockRequestRepository;
+import com.gshelgaas.bankcards.repository.CardRepository;
+import com.gshelgaas.bankcards.repository.UserRepository;
+import com.gshelgaas.bankcards.util.EncryptionUtil;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тест конкурентных запросов на блокировку одной карты.
+ * Репозиторий карт эмулирует построчную блокировку SELECT ... FOR UPDATE, которая
+ * освобождается по завершении "транзакции", а репозиторий запросов - частичный
+ * уникальный индекс по карте для запросов в статусе PENDING.
+ */
+class CardServiceBlockConcurrencyTest {
+
+    private static final long CARD_ID = 1L;
+    private static final long USER_ID = 1L;
+    private static final int THREADS = 16;
+    private static final long LOCK_TIMEOUT_MS = 2_000;
+
+    private final ReentrantLock rowLock = new ReentrantLock();
+    private final ThreadLocal<Boolean> holdsRowLock = ThreadLocal.withInitial(() -> false);
+    private final Map<Long, BlockRequest> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicLong requestIds = new AtomicLong();
+
+    private CardRepository cardRepository;
+    private Card card;
+    private CardServiceImpl cardService;
+
+    @BeforeEach
+    void setUp() {
+        card = Card.builder()
+                .id(CARD_ID)
+                .cardNumber("encrypted")
+                .cardHolder("Test User")
+                .expiryDate(LocalDate.now().plusYears(1))
+                .status(Card.CardStatus.ACTIVE)
+                .user(User.builder().id(USER_ID).build())
+                .build();
+
+        cardRepository = mock(CardRepository.class, withSettings().stubOnly());
+        BlockRequestRepository blockRequestRepository = mock(BlockRequestRepository.class, withSettings().stubOnly());
+
+        when(cardRepository.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(blockRequestRepository.saveAndFlush(any(BlockRequest.class))).thenAnswer(invocation -> {
+            BlockRequest request = invocation.getArgument(0);
+            if (pendingRequests.putIfAbsent(request.getCard().getId(), request) != null) {
+                throw new DataIntegrityViolationException("duplicate key value violates unique constraint");
+            }
+            request.setId(requestIds.incrementAndGet());
+            return request;
+        });
+
+        cardService = new CardServiceImpl(cardRepository,
+                mock(UserRepository.class),
+                blockRequestRepository,
+                mock(EncryptionUtil.class),
+                Caffeine.newBuilder().<Long, CardRepository.BalanceView>buildAsync(),
+                mock(ApplicationEventPublisher.class));
+    }
+
+    @Test
+    void requestCardBlock_concurrentRequestsWithRowLock_createSinglePendingRequest() throws Exception {
+        when(cardRepository.findByIdForUpdate(anyLong())).thenAnswer(invocation -> {
+            if (!rowLock.tryLock(LOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Timed out while locking card " + CARD_ID);
+            }
+            holdsRowLock.set(true);
+            return Optional.of(card);
+        });
+
+        int conflicts = requestBlockConcurrently();
+
+        assertEquals(1, pendingRequests.size());
+        assertEquals(THREADS - 1, conflicts);
+        assertEquals(Card.CardStatus.PENDING_BLOCK, card.getStatus());
+    }
+
+    @Test
+    void requestCardBlock_concurrentRequestsPastStatusCheck_uniqueIndexAdmitsSingleRequest() throws Exception {
+        when(cardRepository.findByIdForUpdate(anyLong())).thenAnswer(invocation -> Optional.of(Card.builder()
+                .id(CARD_ID)
+                .cardNumber("encrypted")
+                .cardHolder("Test User")
+                .expiryDate(card.getExpiryDate())
+                .status(Card.CardStatus.ACTIVE)
+                .user(card.getUser())
+                .build()));
+
+        int conflicts = requestBlockConcurrently();
+
+        assertEquals(1, pendingRequests.size());
+        assertEquals(THREADS - 1, conflicts);
+    }
+
+    /**
+     * Запускает запросы на блокировку из всех потоков одновременно и возвращает количество конфликтов.
+     */
+    private int requestBlockConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    requestBlockInTransaction();
+                } catch (ConflictException e) {
+                    conflicts.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        return conflicts.get();
+    }
+
+    private void requestBlockInTransaction() {
+        try {
+            cardService.requestCardBlock(CARD_ID, USER_ID, new BlockRequestDto("Lost card"));
+        } finally {
+            if (holdsRowLock.get()) {
+                holdsRowLock.set(false);
+                rowLock.unlock();
+            }
+        }
+    }
+}
@@ -1,19 +1,32 @@
 package com.gshelgaas.bankcards.service;
 
+import com.gshelgaas.bankcards.dto.BlockRequestBulkResultDto;
+import com.gshelgaas.bankcards.dto.BlockRequestDto;
+import com.gshelgaas.bankcards.dto.BlockRequestPageResponseDto;
+import com.gshelgaas.bankcards.dto.BlockRequestResponseDto;
 import com.gshelgaas.bankcards.dto.CardRequestDto;
 import com.gshelgaas.bankcards.dto.CardResponseDto;
+import com.gshelgaas.bankcards.entity.BlockRequest;
 import com.gshelgaas.bankcards.entity.Card;
 import com.gshelgaas.bankcards.entity.User;
 import com.gshelgaas.bankcards.exception.ConflictException;
+import com.gshelgaas.bankcards.exception.ForbiddenException;
 import com.gshelgaas.bankcards.exception.NotFoundException;
+import com.gshelgaas.bankcards.repository.BlockRequestRepository;
 import com.gshelgaas.bankcards.repository.CardRepository;
 import com.gshelgaas.bankcards.repository.UserRepository;
 import com.gshelgaas.bankcards.util.EncryptionUtil;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -21,6 +34,7 @@ import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -38,9 +52,18 @@ class CardServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private BlockRequestRepository blockRequestRepository;
+
     @Mock
     private EncryptionUtil encryptionUtil;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private AsyncCache<Long, CardRepository.BalanceView> cardBalanceCache = Caffeine.newBuilder().buildAsync();
+
     @InjectMocks
     private CardServiceImpl cardService;
 
@@ -49,6 +72,7 @@ class CardServiceTest {
         return Card.builder()
                 .id(id)
                 .cardNumber("encrypted")
+                .cardNumberMasked("**** **** **** 1111")
                 .cardHolder("Test User")
                 .expiryDate(LocalDate.now().plusYears(1))
                 .status(status)
@@ -57,6 +81,23 @@ class CardServiceTest {
                 .build();
     }
 
+    private BlockRequestResponseDto blockRequestResponse(Long id, LocalDateTime requestedAt) {
+        return new BlockRequestResponseDto(id, id * 10, "Lost", BlockRequest.BlockStatus.PENDING, requestedAt, null);
+    }
+
+    private BlockRequestRepository.PendingBlockRequestView pendingRequest(Long id, Long cardId, boolean cardExpired) {
+        BlockRequestRepository.PendingBlockRequestView view = mock(BlockRequestRepository.PendingBlockRequestView.class);
+        lenient().when(view.getId()).thenReturn(id);
+        lenient().when(view.getCardId()).thenReturn(cardId);
+        lenient().when(view.getCardExpired()).thenReturn(cardExpired);
+        return view;
+    }
+
+    private CardResponseDto createTestCardResponse(Long id, Long userId, Card.CardStatus status) {
+        return new CardResponseDto(id, "**** **** **** 1111", "Test User",
+                LocalDate.now().plusYears(1), status, BigDecimal.valueOf(500), userId);
+    }
+
     @Test
     void createCard_withValidData_returnsCardResponse() {
         Long userId = 1L;
@@ -72,9 +113,9 @@ class CardServiceTest {
         savedCard.setBalance(BigDecimal.valueOf(1000));
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(cardRepository.existsByCardNumber(anyString())).thenReturn(false);
+        when(encryptionUtil.hash("4111111111111111")).thenReturn("hash");
+        when(cardRepository.existsByCardNumberHash("hash")).thenReturn(false);
         when(encryptionUtil.encrypt(anyString())).thenReturn("encrypted");
-        when(encryptionUtil.decrypt(anyString())).thenReturn("4111111111111111");
         when(cardRepository.save(any(Card.class))).thenReturn(savedCard);
 
         CardResponseDto result = cardService.createCard(requestDto, userId);
@@ -82,7 +123,9 @@ class CardServiceTest {
         assertNotNull(result);
         assertEquals("Test User", result.getCardHolder());
         assertEquals(BigDecimal.valueOf(1000), result.getBalance());
-        verify(cardRepository).save(any(Card.class));
+        verify(cardRepository).save(argThat(card -> "**** **** **** 1111".equals(card.getCardNumberMasked())
+                && "hash".equals(card.getCardNumberHash())));
+        verify(encryptionUtil, never()).decrypt(anyString());
     }
 
     @Test
@@ -98,10 +141,12 @@ class CardServiceTest {
         User user = User.builder().id(userId).build();
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(cardRepository.existsByCardNumber(anyString())).thenReturn(true);
+        when(encryptionUtil.hash("4111111111111111")).thenReturn("hash");
+        when(cardRepository.existsByCardNumberHash("hash")).thenReturn(true);
 
         assertThrows(ConflictException.class, () -> cardService.createCard(requestDto, userId));
         verify(cardRepository, never()).save(any(Card.class));
+        verify(encryptionUtil, never()).encrypt(anyString());
     }
 
     @Test
@@ -141,23 +186,51 @@ class CardServiceTest {
     @Test
     void getCardById_withValidId_returnsCardResponse() {
         Long cardId = 1L;
-        Card card = createTestCard(cardId, 1L, Card.CardStatus.ACTIVE);
+        CardResponseDto card = createTestCardResponse(cardId, 1L, Card.CardStatus.ACTIVE);
 
-        when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
-        when(encryptionUtil.decrypt(anyString())).thenReturn("4111111111111111");
+        when(cardRepository.findResponseById(cardId)).thenReturn(Optional.of(card));
 
         CardResponseDto result = cardService.getCardById(cardId);
 
         assertNotNull(result);
         assertEquals(cardId, result.getId());
         assertEquals("Test User", result.getCardHolder());
-        verify(cardRepository).findById(cardId);
+        verify(cardRepository).findResponseById(cardId);
+        verify(cardRepository, never()).findById(any());
+    }
+
+    @Test
+    void getCardById_withoutStoredMask_fallsBackToDecryption() {
+        Long cardId = 1L;
+        CardResponseDto card = createTestCardResponse(cardId, 1L, Card.CardStatus.ACTIVE);
+        card.setCardNumber(null);
+
+        when(cardRepository.findResponseById(cardId)).thenReturn(Optional.of(card));
+        when(cardRepository.findCardNumberById(cardId)).thenReturn(Optional.of("encrypted"));
+        when(encryptionUtil.decrypt("encrypted")).thenReturn("4222222222222222");
+
+        CardResponseDto result = cardService.getCardById(cardId);
+
+        assertEquals("**** **** **** 2222", result.getCardNumber());
+    }
+
+    @Test
+    void getCardById_withExpiredActiveCard_returnsExpiredStatus() {
+        Long cardId = 1L;
+        CardResponseDto card = createTestCardResponse(cardId, 1L, Card.CardStatus.ACTIVE);
+        card.setExpiryDate(LocalDate.now().minusDays(1));
+
+        when(cardRepository.findResponseById(cardId)).thenReturn(Optional.of(card));
+
+        CardResponseDto result = cardService.getCardById(cardId);
+
+        assertEquals("EXPIRED", result.getStatus());
     }
 
     @Test
     void getCardById_withNonExistingId_throwsException() {
         Long cardId = 999L;
-        when(cardRepository.findById(cardId)).thenReturn(Optional.empty());
+        when(cardRepository.findResponseById(cardId)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> cardService.getCardById(cardId));
     }
@@ -167,18 +240,19 @@ class CardServiceTest {
         Long userId = 1L;
         Pageable pageable = PageRequest.of(0, 10);
 
-        Card card = createTestCard(1L, userId, Card.CardStatus.ACTIVE);
-        Page<Card> cardPage = new PageImpl<>(List.of(card));
+        CardResponseDto card = createTestCardResponse(1L, userId, Card.CardStatus.ACTIVE);
+        Page<CardResponseDto> cardPage = new PageImpl<>(List.of(card));
 
         when(userRepository.existsById(userId)).thenReturn(true);
         when(cardRepository.findByUserIdWithFilters(userId, null, pageable)).thenReturn(cardPage);
-        when(encryptionUtil.decrypt(anyString())).thenReturn("4111111111111111");
 
         Page<CardResponseDto> result = cardService.getUserCards(userId, null, pageable);
 
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
+        assertEquals("**** **** **** 1111", result.getContent().get(0).getCardNumber());
         verify(cardRepository).findByUserIdWithFilters(userId, null, pageable);
+        verifyNoInteractions(encryptionUtil);
     }
 
     @Test
@@ -186,12 +260,11 @@ class CardServiceTest {
         Long userId = 1L;
         Pageable pageable = PageRequest.of(0, 10);
 
-        Card card = createTestCard(1L, userId, Card.CardStatus.ACTIVE);
-        Page<Card> cardPage = new PageImpl<>(List.of(card));
+        CardResponseDto card = createTestCardResponse(1L, userId, Card.CardStatus.ACTIVE);
+        Page<CardResponseDto> cardPage = new PageImpl<>(List.of(card));
 
         when(userRepository.existsById(userId)).thenReturn(true);
         when(cardRepository.findByUserIdWithFilters(userId, Card.CardStatus.ACTIVE, pageable)).thenReturn(cardPage);
-        when(encryptionUtil.decrypt(anyString())).thenReturn("4111111111111111");
 
         Page<CardResponseDto> result = cardService.getUserCards(userId, "ACTIVE", pageable);
 
@@ -227,17 +300,82 @@ class CardServiceTest {
     void getAllCards_returnsPageOfCards() {
         Pageable pageable = PageRequest.of(0, 10);
 
-        Card card = createTestCard(1L, 1L, Card.CardStatus.ACTIVE);
-        Page<Card> cardPage = new PageImpl<>(List.of(card));
+        CardResponseDto card = createTestCardResponse(1L, 1L, Card.CardStatus.ACTIVE);
+        Page<CardResponseDto> cardPage = new PageImpl<>(List.of(card));
 
-        when(cardRepository.findAll(pageable)).thenReturn(cardPage);
-        when(encryptionUtil.decrypt(anyString())).thenReturn("4111111111111111");
+        when(cardRepository.findAllResponses(pageable)).thenReturn(cardPage);
 
         Page<CardResponseDto> result = cardService.getAllCards(pageable);
 
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
-        verify(cardRepository).findAll(pageable);
+        verify(cardRepository).findAllResponses(pageable);
+        verify(cardRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void getCardBalance_withOwner_returnsBalance() {
+        CardRepository.BalanceView balance = mock(CardRepository.BalanceView.class);
+        when(balance.getUserId()).thenReturn(1L);
+        when(balance.getBalance()).thenReturn(BigDecimal.valueOf(500));
+        when(cardRepository.findBalanceById(1L)).thenReturn(Optional.of(balance));
+
+        assertEquals(BigDecimal.valueOf(500), cardService.getCardBalance(1L, 1L));
+        verify(cardRepository, never()).findById(any());
+    }
+
+    @Test
+    void getCardBalance_withForeignCard_throwsException() {
+        CardRepository.BalanceView balance = mock(CardRepository.BalanceView.class);
+        when(balance.getUserId()).thenReturn(2L);
+        when(cardRepository.findBalanceById(1L)).thenReturn(Optional.of(balance));
+
+        assertThrows(ForbiddenException.class, () -> cardService.getCardBalance(1L, 1L));
+    }
+
+    @Test
+    void getCardBalance_repeatedCalls_queryDatabaseOnce() {
+        CardRepository.BalanceView balance = mock(CardRepository.BalanceView.class);
+        when(balance.getUserId()).thenReturn(1L);
+        when(balance.getBalance()).thenReturn(BigDecimal.valueOf(500));
+        when(cardRepository.findBalanceById(1L)).thenReturn(Optional.of(balance));
+
+        cardService.getCardBalance(1L, 1L);
+        cardService.getCardBalance(1L, 1L);
+
+        verify(cardRepository, times(1)).findBalanceById(1L);
+    }
+
+    @Test
+    void getCardBalance_cachedForeignCard_throwsException() {
+        CardRepository.BalanceView balance = mock(CardRepository.BalanceView.class);
+        when(balance.getUserId()).thenReturn(1L);
+        when(balance.getBalance()).thenReturn(BigDecimal.valueOf(500));
+        when(cardRepository.findBalanceById(1L)).thenReturn(Optional.of(balance));
+
+        cardService.getCardBalance(1L, 1L);
+
+        assertThrows(ForbiddenException.class, () -> cardService.getCardBalance(1L, 2L));
+    }
+
+    @Test
+    void getCardBalance_withNonExistingCard_throwsException() {
+        when(cardRepository.findBalanceById(999L)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> cardService.getCardBalance(999L, 1L));
+    }
+
+    @Test
+    void onCardBalanceChanged_evictsCachedBalance() {
+        CardRepository.BalanceView balance = mock(CardRepository.BalanceView.class);
+        when(balance.getUserId()).thenReturn(1L);
+        when(cardRepository.findBalanceById(1L)).thenReturn(Optional.of(balance));
+
+        cardService.getCardBalance(1L, 1L);
+        cardService.onCardBalanceChanged(new CardBalanceChangedEvent(List.of(1L, 2L)));
+        cardService.getCardBalance(1L, 1L);
+
+        verify(cardRepository, times(2)).findBalanceById(1L);
     }
 
     @Test
@@ -247,7 +385,6 @@ class CardServiceTest {
 
         when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
         when(cardRepository.save(any(Card.class))).thenReturn(card);
-        when(encryptionUtil.decrypt(anyString())).thenReturn("4111111111111111");
 
         CardResponseDto result = cardService.blockCard(cardId);
 
@@ -274,7 +411,6 @@ class CardServiceTest {
 
         when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
         when(cardRepository.save(any(Card.class))).thenReturn(card);
-        when(encryptionUtil.decrypt(anyString())).thenReturn("4111111111111111");
 
         CardResponseDto result = cardService.activateCard(cardId);
 
@@ -282,6 +418,131 @@ class CardServiceTest {
         verify(cardRepository).save(any(Card.class));
     }
 
+    @Test
+    void requestCardBlock_withOwnCard_fetchesCardOnceAndCreatesRequest() {
+        Card card = createTestCard(1L, 1L, Card.CardStatus.ACTIVE);
+        BlockRequestDto request = BlockRequestDto.builder().reason("Lost").build();
+
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(card));
+        when(blockRequestRepository.saveAndFlush(any(BlockRequest.class))).thenAnswer(invocation -> {
+            BlockRequest saved = invocation.getArgument(0);
+            saved.setId(10L);
+            return saved;
+        });
+
+        BlockRequestResponseDto result = cardService.requestCardBlock(1L, 1L, request);
+
+        assertEquals(10L, result.getId());
+        assertEquals(1L, result.getCardId());
+        assertEquals("PENDING", result.getStatus());
+        assertEquals(Card.CardStatus.PENDING_BLOCK, card.getStatus());
+        verify(cardRepository, times(1)).findByIdForUpdate(1L);
+        verify(cardRepository, never()).findById(any());
+        verify(blockRequestRepository, never()).findByCardIdAndStatus(any(), any());
+    }
+
+    @Test
+    void requestCardBlock_withForeignCard_throwsException() {
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(createTestCard(1L, 2L, Card.CardStatus.ACTIVE)));
+
+        assertThrows(ForbiddenException.class, () -> cardService.requestCardBlock(1L, 1L, new BlockRequestDto()));
+        verifyNoInteractions(blockRequestRepository);
+    }
+
+    @Test
+    void requestCardBlock_withPendingBlockCard_throwsConflict() {
+        when(cardRepository.findByIdForUpdate(1L))
+                .thenReturn(Optional.of(createTestCard(1L, 1L, Card.CardStatus.PENDING_BLOCK)));
+
+        assertThrows(ConflictException.class, () -> cardService.requestCardBlock(1L, 1L, new BlockRequestDto()));
+        verifyNoInteractions(blockRequestRepository);
+    }
+
+    @Test
+    void requestCardBlock_withPendingRequestViolation_throwsConflict() {
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(createTestCard(1L, 1L, Card.CardStatus.ACTIVE)));
+        when(blockRequestRepository.saveAndFlush(any(BlockRequest.class)))
+                .thenThrow(new DataIntegrityViolationException("ux_block_requests_card_pending"));
+
+        assertThrows(ConflictException.class, () -> cardService.requestCardBlock(1L, 1L, new BlockRequestDto()));
+    }
+
+    @Test
+    void getBlockRequests_withMoreRowsThanPageSize_returnsNextCursor() {
+        LocalDateTime requestedAt = LocalDateTime.of(2026, 1, 1, 12, 0);
+        when(blockRequestRepository.findFirstPageByStatus(BlockRequest.BlockStatus.PENDING, Limit.of(2)))
+                .thenReturn(List.of(blockRequestResponse(1L, requestedAt), blockRequestResponse(2L, requestedAt)));
+
+        BlockRequestPageResponseDto page = cardService.getBlockRequests("pending", null, 1);
+
+        assertEquals(1, page.getContent().size());
+        assertTrue(page.isHasNext());
+        assertNotNull(page.getNextCursor());
+
+        when(blockRequestRepository.findPageByStatusAfter(BlockRequest.BlockStatus.PENDING, requestedAt, 1L,
+                Limit.of(2)))
+                .thenReturn(List.of(blockRequestResponse(2L, requestedAt)));
+
+        BlockRequestPageResponseDto next = cardService.getBlockRequests("PENDING", page.getNextCursor(), 1);
+
+        assertEquals(2L, next.getContent().get(0).getId());
+        assertFalse(next.isHasNext());
+        assertNull(next.getNextCursor());
+    }
+
+    @Test
+    void getBlockRequests_withInvalidStatus_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> cardService.getBlockRequests("UNKNOWN", null, 10));
+        verifyNoInteractions(blockRequestRepository);
+    }
+
+    @Test
+    void approveBlockRequests_updatesEligibleRequestsAndCardsInBulk() {
+        List<BlockRequestRepository.PendingBlockRequestView> pending = List.of(
+                pendingRequest(1L, 10L, false), pendingRequest(2L, 20L, true), pendingRequest(3L, 30L, false));
+        when(blockRequestRepository.findPendingByIdInForUpdate(eq(List.of(3L, 1L, 2L, 3L, 9L)), any(LocalDate.class)))
+                .thenReturn(pending);
+
+        BlockRequestBulkResultDto result = cardService.approveBlockRequests(List.of(3L, 1L, 2L, 3L, 9L));
+
+        assertEquals(List.of(1L, 3L), result.getProcessedIds());
+        assertEquals(List.of(2L, 9L), result.getSkippedIds());
+        verify(blockRequestRepository).updateStatusByIdIn(eq(List.of(1L, 3L)),
+                eq(BlockRequest.BlockStatus.APPROVED), any(LocalDateTime.class));
+        verify(cardRepository).updateStatusByIdIn(List.of(10L, 30L), Card.CardStatus.BLOCKED);
+        verify(blockRequestRepository, never()).save(any());
+        verify(cardRepository, never()).save(any());
+    }
+
+    @Test
+    void approveBlockRequests_withoutPendingRequests_updatesNothing() {
+        when(blockRequestRepository.findPendingByIdInForUpdate(eq(List.of(1L)), any(LocalDate.class)))
+                .thenReturn(List.of());
+
+        BlockRequestBulkResultDto result = cardService.approveBlockRequests(List.of(1L));
+
+        assertTrue(result.getProcessedIds().isEmpty());
+        assertEquals(List.of(1L), result.getSkippedIds());
+        verify(blockRequestRepository, never()).updateStatusByIdIn(any(), any(), any());
+        verify(cardRepository, never()).updateStatusByIdIn(any(), any());
+    }
+
+    @Test
+    void rejectBlockRequests_reactivatesPendingBlockCards() {
+        List<BlockRequestRepository.PendingBlockRequestView> pending = List.of(pendingRequest(1L, 10L, true));
+        when(blockRequestRepository.findPendingByIdInForUpdate(eq(List.of(1L, 2L)), any(LocalDate.class)))
+                .thenReturn(pending);
+
+        BlockRequestBulkResultDto result = cardService.rejectBlockRequests(List.of(1L, 2L));
+
+        assertEquals(List.of(1L), result.getProcessedIds());
+        assertEquals(List.of(2L), result.getSkippedIds());
+        verify(blockRequestRepository).updateStatusByIdIn(eq(List.of(1L)),
+                eq(BlockRequest.BlockStatus.REJECTED), any(LocalDateTime.class));
+        verify(cardRepository).updateStatusByIdInAndStatus(List.of(10L),
+                Card.CardStatus.PENDING_BLOCK, Card.CardStatus.ACTIVE);
+    }
+
     @Test
     void deleteCard_withValidId_deletesCard() {
         Long cardId = 1L;
@@ -0,0 +1,119 @@
+package com.gshelgaas.bankcards.service;
+
+import com.gshelgaas.bankcards.entity.RevokedToken;
+import com.gshelgaas.bankcards.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @InjectMocks
+    private TokenRevocationServiceImpl tokenRevocationService;
+
+    @Test
+    void revoke_withNewToken_savesRecord() {
+        LocalDateTime expiresAt = LocalDateTime.now().plusHours(1);
+        when(revokedTokenRepository.existsById("jti-1")).thenReturn(false);
+
+        tokenRevocationService.revoke("jti-1", 1L, expiresAt);
+
+        ArgumentCaptor<RevokedToken> saved = ArgumentCaptor.forClass(RevokedToken.class);
+        verify(revokedTokenRepository).save(saved.capture());
+        assertEquals("jti-1", saved.getValue().getJti());
+        assertEquals(1L, saved.getValue().getUserId());
+        assertEquals(expiresAt, saved.getValue().getExpiresAt());
+        assertNotNull(saved.getValue().getRevokedAt());
+    }
+
+    @Test
+    void revoke_withAlreadyRevokedToken_doesNotSaveAgain() {
+        when(revokedTokenRepository.existsById("jti-1")).thenReturn(true);
+
+        tokenRevocationService.revoke("jti-1", 1L, LocalDateTime.now().plusHours(1));
+
+        verify(revokedTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void isRevoked_withTokenRevokedLocally_returnsTrueWithoutQuery() {
+        when(revokedTokenRepository.existsById("jti-1")).thenReturn(false);
+        tokenRevocationService.revoke("jti-1", 1L, LocalDateTime.now().plusHours(1));
+        clearInvocations(revokedTokenRepository);
+
+        assertTrue(tokenRevocationService.isRevoked("jti-1"));
+        verifyNoInteractions(revokedTokenRepository);
+    }
+
+    @Test
+    void isRevoked_withFilterMiss_returnsFalseWithoutQuery() {
+        when(revokedTokenRepository.countByExpiresAtAfter(any())).thenReturn(1L);
+        when(revokedTokenRepository.streamActiveJtis(any())).thenReturn(Stream.of("jti-revoked"));
+        tokenRevocationService.refreshFilter();
+
+        assertFalse(tokenRevocationService.isRevoked("jti-active"));
+        verify(revokedTokenRepository, never()).existsById(any());
+    }
+
+    @Test
+    void isRevoked_withFilterHit_confirmsInDatabase() {
+        when(revokedTokenRepository.countByExpiresAtAfter(any())).thenReturn(1L);
+        when(revokedTokenRepository.streamActiveJtis(any())).thenReturn(Stream.of("jti-revoked"));
+        when(revokedTokenRepository.existsById("jti-revoked")).thenReturn(true);
+        tokenRevocationService.refreshFilter();
+
+        assertTrue(tokenRevocationService.isRevoked("jti-revoked"));
+        verify(revokedTokenRepository).existsById("jti-revoked");
+    }
+
+    @Test
+    void isRevoked_beforeFirstRefresh_checksDatabase() {
+        when(revokedTokenRepository.existsById("jti-1")).thenReturn(false);
+
+        assertFalse(tokenRevocationService.isRevoked("jti-1"));
+        verify(revokedTokenRepository).existsById("jti-1");
+    }
+
+    @Test
+    void isRevoked_withTokenWithoutId_returnsFalse() {
+        assertFalse(tokenRevocationService.isRevoked(null));
+        verifyNoInteractions(revokedTokenRepository);
+    }
+
+    @Test
+    void refreshFilter_keepsLocallyRevokedTokenMissingFromSnapshot() {
+        when(revokedTokenRepository.existsById("jti-1")).thenReturn(false);
+        tokenRevocationService.revoke("jti-1", 1L, LocalDateTime.now().plusHours(1));
+        when(revokedTokenRepository.countByExpiresAtAfter(any())).thenReturn(0L);
+        when(revokedTokenRepository.streamActiveJtis(any())).thenReturn(Stream.empty());
+
+        tokenRevocationService.refreshFilter();
+        clearInvocations(revokedTokenRepository);
+
+        assertTrue(tokenRevocationService.isRevoked("jti-1"));
+        verifyNoInteractions(revokedTokenRepository);
+    }
+
+    @Test
+    void purgeExpired_deletesExpiredRecords() {
+        when(revokedTokenRepository.deleteExpiredBefore(any())).thenReturn(3);
+
+        tokenRevocationService.purgeExpired();
+
+        verify(revokedTokenRepository).deleteExpiredBefore(any(LocalDateTime.class));
+    }
+}
@@ -0,0 +1,162 @@
+package com.gshelgaas.bankcards.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gshelgaas.bankcards.dto.TransferRequestDto;
+import com.gshelgaas.bankcards.dto.TransferResponseDto;
+import com.gshelgaas.bankcards.entity.Card;
+import com.gshelgaas.bankcards.entity.Transfer;
+import com.gshelgaas.bankcards.entity.User;
+import com.gshelgaas.bankcards.repository.CardRepository;
+import com.gshelgaas.bankcards.repository.TransferIdempotencyRepository;
+import com.gshelgaas.bankcards.repository.TransferRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * Нагрузочный тест блокировок при встречных переводах.
+ * Репозиторий карт эмулирует построчные блокировки SELECT ... FOR UPDATE:
+ * строки захватываются в порядке, в котором сервис передал идентификаторы,
+ * и освобождаются по завершении "транзакции".
+ */
+class TransferServiceConcurrencyTest {
+
+    private static final int CARD_COUNT = 4;
+    private static final int TRANSFERS_PER_DIRECTION = 2_000;
+    private static final int THREADS = 16;
+    private static final long LOCK_TIMEOUT_MS = 2_000;
+    private static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(1_000_000);
+
+    private final Map<Long, Card> cards = new ConcurrentHashMap<>();
+    private final Map<Long, ReentrantLock> rowLocks = new ConcurrentHashMap<>();
+    private final ThreadLocal<Deque<ReentrantLock>> heldLocks = ThreadLocal.withInitial(ArrayDeque::new);
+    private final AtomicInteger lockTimeouts = new AtomicInteger();
+
+    private TransferServiceImpl transferService;
+
+    @BeforeEach
+    void setUp() {
+        User user = User.builder().id(1L).build();
+        for (long id = 1; id <= CARD_COUNT; id++) {
+            cards.put(id, Card.builder()
+                    .id(id)
+                    .cardNumber("encrypted-" + id)
+                    .cardHolder("Test User")
+                    .expiryDate(LocalDate.now().plusYears(1))
+                    .status(Card.CardStatus.ACTIVE)
+                    .balance(INITIAL_BALANCE)
+                    .user(user)
+                    .build());
+            rowLocks.put(id, new ReentrantLock());
+        }
+
+        CardRepository cardRepository = mock(CardRepository.class, withSettings().stubOnly());
+        TransferRepository transferRepository = mock(TransferRepository.class, withSettings().stubOnly());
+        AtomicLong transferIds = new AtomicLong();
+
+        when(cardRepository.findAllByIdInForUpdate(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            List<Card> locked = new ArrayList<>();
+            for (Long id : ids) {
+                ReentrantLock lock = rowLocks.get(id);
+                if (!lock.tryLock(LOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    lockTimeouts.incrementAndGet();
+                    throw new IllegalStateException("Deadlock detected while locking card " + id);
+                }
+                heldLocks.get().push(lock);
+                locked.add(cards.get(id));
+            }
+            return locked;
+        });
+        when(cardRepository.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> {
+            Transfer transfer = invocation.getArgument(0);
+            transfer.setId(transferIds.incrementAndGet());
+            return transfer;
+        });
+
+        transferService = new TransferServiceImpl(transferRepository,
+                cardRepository,
+                new EntityTransferEngine(cardRepository, transferRepository),
+                mock(JdbcTemplate.class),
+                mock(EntityManager.class),
+                new ObjectMapper().findAndRegisterModules(),
+                mock(TransferIdempotencyRepository.class),
+                Caffeine.newBuilder().<String, TransferResponseDto>build(),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new SimpleMeterRegistry(),
+                mock(ApplicationEventPublisher.class));
+    }
+
+    @Test
+    void transferBetweenCards_concurrentOppositeTransfers_keepBalancesConsistentWithoutDeadlocks()
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < TRANSFERS_PER_DIRECTION; i++) {
+            for (long id = 1; id <= CARD_COUNT; id++) {
+                long from = id;
+                long to = id % CARD_COUNT + 1;
+                futures.add(executor.submit(() -> transferInTransaction(from, to)));
+                futures.add(executor.submit(() -> transferInTransaction(to, from)));
+            }
+        }
+
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(0, lockTimeouts.get());
+        for (Card card : cards.values()) {
+            assertEquals(0, INITIAL_BALANCE.compareTo(card.getBalance()),
+                    "Unexpected balance for card " + card.getId());
+        }
+    }
+
+    private void transferInTransaction(long fromCardId, long toCardId) {
+        TransferRequestDto request = TransferRequestDto.builder()
+                .fromCardId(fromCardId)
+                .toCardId(toCardId)
+                .amount(BigDecimal.ONE)
+                .build();
+        try {
+            transferService.transferBetweenCards(request, 1L);
+        } finally {
+            Deque<ReentrantLock> locks = heldLocks.get();
+            while (!locks.isEmpty()) {
+                locks.pop().unlock();
+            }
+        }
+    }
+}
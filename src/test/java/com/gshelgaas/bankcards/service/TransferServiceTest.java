@@ -1,29 +1,64 @@
 package com.gshelgaas.bankcards.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gshelgaas.bankcards.dto.TransferBatchItemResultDto;
+import com.gshelgaas.bankcards.dto.TransferExportFormat;
+import com.gshelgaas.bankcards.dto.TransferFilterDto;
+import com.gshelgaas.bankcards.dto.TransferPageResponseDto;
 import com.gshelgaas.bankcards.dto.TransferRequestDto;
 import com.gshelgaas.bankcards.dto.TransferResponseDto;
 import com.gshelgaas.bankcards.entity.Card;
 import com.gshelgaas.bankcards.entity.Transfer;
+import com.gshelgaas.bankcards.entity.TransferIdempotency;
 import com.gshelgaas.bankcards.entity.User;
 import com.gshelgaas.bankcards.exception.ConflictException;
 import com.gshelgaas.bankcards.exception.ForbiddenException;
 import com.gshelgaas.bankcards.exception.NotFoundException;
+import com.gshelgaas.bankcards.jfr.TransferBatchEvent;
 import com.gshelgaas.bankcards.repository.CardRepository;
+import com.gshelgaas.bankcards.repository.TransferIdempotencyRepository;
 import com.gshelgaas.bankcards.repository.TransferRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,9 +70,43 @@ class TransferServiceTest {
     @Mock
     private CardRepository cardRepository;
 
-    @InjectMocks
+    @Mock
+    private TransferIdempotencyRepository idempotencyRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     private TransferServiceImpl transferService;
 
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private Cache<String, TransferResponseDto> idempotencyCache;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyCache = Caffeine.newBuilder().maximumSize(100).build();
+        transferService = new TransferServiceImpl(transferRepository,
+                cardRepository,
+                new EntityTransferEngine(cardRepository, transferRepository),
+                jdbcTemplate,
+                entityManager,
+                new ObjectMapper().findAndRegisterModules(),
+                idempotencyRepository,
+                idempotencyCache,
+                new TransactionTemplate(transactionManager),
+                meterRegistry,
+                eventPublisher);
+    }
+
     private Card createTestCard(Long id, Long userId, Card.CardStatus status) {
         User user = User.builder().id(userId).build();
         return Card.builder()
@@ -75,8 +144,7 @@ class TransferServiceTest {
                 .status(Transfer.TransferStatus.SUCCESS)
                 .build();
 
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(fromCard, toCard));
         when(cardRepository.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(transferRepository.save(any(Transfer.class))).thenReturn(savedTransfer);
 
@@ -89,6 +157,10 @@ class TransferServiceTest {
         assertEquals(BigDecimal.valueOf(400), fromCard.getBalance());
         assertEquals(BigDecimal.valueOf(600), toCard.getBalance());
         verify(transferRepository).save(any(Transfer.class));
+        assertEquals(1, meterRegistry.timer("transfer.execute", "mode", "single", "outcome", "success").count());
+        ArgumentCaptor<CardBalanceChangedEvent> event = ArgumentCaptor.forClass(CardBalanceChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(List.of(1L, 2L), event.getValue().getCardIds());
     }
 
     @Test
@@ -105,13 +177,14 @@ class TransferServiceTest {
         Card fromCard = createTestCard(1L, userId, Card.CardStatus.ACTIVE);
         Card toCard = createTestCard(2L, 2L, Card.CardStatus.ACTIVE);
 
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(fromCard, toCard));
 
         assertThrows(ConflictException.class,
                 () -> transferService.transferBetweenCards(request, userId));
 
         verify(transferRepository, never()).save(any(Transfer.class));
+        assertEquals(1, meterRegistry.timer("transfer.execute", "mode", "single", "outcome", "insufficient_funds").count());
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -126,13 +199,13 @@ class TransferServiceTest {
         Card fromCard = createTestCard(1L, 999L, Card.CardStatus.ACTIVE);
         Card toCard = createTestCard(2L, 2L, Card.CardStatus.ACTIVE);
 
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(fromCard, toCard));
 
         assertThrows(ForbiddenException.class,
                 () -> transferService.transferBetweenCards(request, userId));
 
         verify(transferRepository, never()).save(any(Transfer.class));
+        assertEquals(1, meterRegistry.timer("transfer.execute", "mode", "single", "outcome", "forbidden").count());
     }
 
     @Test
@@ -150,9 +223,7 @@ class TransferServiceTest {
         fromCard.setExpiryDate(LocalDate.now().minusDays(1));
         Card toCard = createTestCard(2L, 2L, Card.CardStatus.ACTIVE);
 
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
-        when(cardRepository.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(fromCard, toCard));
 
         assertThrows(ConflictException.class,
                 () -> transferService.transferBetweenCards(request, userId));
@@ -172,11 +243,11 @@ class TransferServiceTest {
         Card fromCard = createTestCard(1L, userId, Card.CardStatus.BLOCKED);
         Card toCard = createTestCard(2L, 2L, Card.CardStatus.ACTIVE);
 
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(fromCard, toCard));
 
         assertThrows(ConflictException.class,
                 () -> transferService.transferBetweenCards(request, userId));
+        assertEquals(1, meterRegistry.timer("transfer.execute", "mode", "single", "outcome", "inactive").count());
     }
 
     @Test
@@ -188,50 +259,189 @@ class TransferServiceTest {
                 .amount(BigDecimal.valueOf(100))
                 .build();
 
-        when(cardRepository.findById(1L)).thenReturn(Optional.empty());
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of());
 
         assertThrows(NotFoundException.class,
                 () -> transferService.transferBetweenCards(request, userId));
     }
 
+    private TransferResponseDto historyRow(Long id, LocalDateTime transferDate) {
+        return new TransferResponseDto(id, 1L, 2L, BigDecimal.TEN, transferDate,
+                Transfer.TransferStatus.SUCCESS, null);
+    }
+
+    private TransferRepository.TransferHistoryView historyView(Long id, LocalDateTime transferDate) {
+        return historyView(id, transferDate, null);
+    }
+
+    private TransferRepository.TransferHistoryView historyView(Long id, LocalDateTime transferDate,
+                                                               String description) {
+        TransferRepository.TransferHistoryView view = mock(TransferRepository.TransferHistoryView.class);
+        lenient().when(view.getId()).thenReturn(id);
+        lenient().when(view.getFromCardId()).thenReturn(1L);
+        lenient().when(view.getToCardId()).thenReturn(2L);
+        lenient().when(view.getAmount()).thenReturn(BigDecimal.TEN);
+        lenient().when(view.getTransferDate()).thenReturn(transferDate);
+        lenient().when(view.getStatus()).thenReturn("SUCCESS");
+        lenient().when(view.getDescription()).thenReturn(description);
+        return view;
+    }
+
     @Test
-    void getUserTransfers_returnsUserTransfers() {
+    void getUserTransfers_withMoreRowsThanPageSize_returnsNextCursor() {
         Long userId = 1L;
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(cardRepository.findIdsByUserId(userId)).thenReturn(List.of(1L, 2L));
+        List<TransferRepository.TransferHistoryView> rows =
+                List.of(historyView(5L, now), historyView(4L, now), historyView(3L, now.minusDays(1)));
+        when(transferRepository.findCardsTransfersFirstPage(List.of(1L, 2L), 3)).thenReturn(rows);
 
-        User user = User.builder().id(userId).build();
-        Card fromCard = createTestCard(1L, userId, Card.CardStatus.ACTIVE);
-        Card toCard = createTestCard(2L, 2L, Card.CardStatus.ACTIVE);
+        TransferPageResponseDto result = transferService.getUserTransfers(userId, new TransferFilterDto(), null, 2);
 
-        Transfer transfer = Transfer.builder()
-                .id(1L)
-                .fromCard(fromCard)
-                .toCard(toCard)
-                .amount(BigDecimal.valueOf(100))
-                .transferDate(LocalDateTime.now())
-                .status(Transfer.TransferStatus.SUCCESS)
-                .build();
+        assertEquals(List.of(5L, 4L), result.getContent().stream().map(TransferResponseDto::getId).toList());
+        assertTrue(result.isHasNext());
+        assertNotNull(result.getNextCursor());
+    }
+
+    @Test
+    void getUserTransfers_withCursor_continuesAfterLastRow() {
+        Long userId = 1L;
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        LocalDateTime from = now.minusMonths(1);
+        when(cardRepository.findIdsByUserId(userId)).thenReturn(List.of(7L, 8L));
+        List<TransferRepository.TransferHistoryView> firstPage = List.of(historyView(5L, now), historyView(4L, now));
+        when(transferRepository.findCardsTransfersFirstPage(List.of(7L, 8L), 2)).thenReturn(firstPage);
+        String cursor = transferService.getUserTransfers(userId, new TransferFilterDto(), null, 1).getNextCursor();
+
+        List<TransferRepository.TransferHistoryView> nextPage = List.of(historyView(4L, now));
+        when(transferRepository.findCardsTransfersPageBefore(List.of(7L), now, 5L, 2)).thenReturn(nextPage);
+
+        TransferPageResponseDto result = transferService.getUserTransfers(userId,
+                TransferFilterDto.builder().cardId(7L).dateFrom(from).build(), cursor, 1);
+
+        assertEquals(1, result.getContent().size());
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+    }
 
-        when(transferRepository.findByFromCardUserIdOrToCardUserId(userId, userId))
-                .thenReturn(List.of(transfer));
+    @Test
+    void getUserTransfers_withForeignCardFilter_returnsTransfersWithThatCard() {
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(cardRepository.findIdsByUserId(1L)).thenReturn(List.of(1L, 2L));
+        List<TransferRepository.TransferHistoryView> rows = List.of(historyView(5L, now));
+        when(transferRepository.findCounterpartTransfersFirstPage(List.of(1L, 2L), 9L, 11)).thenReturn(rows);
 
-        List<TransferResponseDto> result = transferService.getUserTransfers(userId);
+        TransferPageResponseDto result = transferService.getUserTransfers(1L,
+                TransferFilterDto.builder().cardId(9L).build(), null, 10);
 
-        assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals(1L, result.get(0).getId());
-        verify(transferRepository).findByFromCardUserIdOrToCardUserId(userId, userId);
+        assertEquals(List.of(5L), result.getContent().stream().map(TransferResponseDto::getId).toList());
+        assertFalse(result.isHasNext());
     }
 
     @Test
-    void getUserTransfers_withNoTransfers_returnsEmptyList() {
-        Long userId = 1L;
-        when(transferRepository.findByFromCardUserIdOrToCardUserId(userId, userId))
+    void getUserTransfers_withDateTo_startsBeforePeriodEnd() {
+        LocalDateTime dateTo = LocalDateTime.of(2024, 5, 1, 0, 0);
+        when(cardRepository.findIdsByUserId(1L)).thenReturn(List.of(1L));
+        when(transferRepository.findCardsTransfersPageBefore(List.of(1L), dateTo, Long.MIN_VALUE, 11))
                 .thenReturn(List.of());
 
-        List<TransferResponseDto> result = transferService.getUserTransfers(userId);
+        TransferPageResponseDto result = transferService.getUserTransfers(1L,
+                TransferFilterDto.builder().dateTo(dateTo).build(), null, 10);
 
-        assertNotNull(result);
-        assertTrue(result.isEmpty());
+        assertTrue(result.getContent().isEmpty());
+        verify(transferRepository, never()).findCardsTransfersFirstPage(anyList(), anyInt());
+    }
+
+    @Test
+    void getUserTransfers_withDateFrom_endsPageAtEarlierTransfer() {
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(cardRepository.findIdsByUserId(1L)).thenReturn(List.of(1L));
+        List<TransferRepository.TransferHistoryView> rows = List.of(historyView(5L, now),
+                historyView(4L, now.minusDays(2)), historyView(3L, now.minusDays(3)));
+        when(transferRepository.findCardsTransfersFirstPage(List.of(1L), 3)).thenReturn(rows);
+
+        TransferPageResponseDto result = transferService.getUserTransfers(1L,
+                TransferFilterDto.builder().dateFrom(now.minusDays(1)).build(), null, 2);
+
+        assertEquals(List.of(5L), result.getContent().stream().map(TransferResponseDto::getId).toList());
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void getUserTransfers_withoutCards_returnsEmptyPageWithoutQuery() {
+        when(cardRepository.findIdsByUserId(1L)).thenReturn(List.of());
+
+        TransferPageResponseDto result = transferService.getUserTransfers(1L, new TransferFilterDto(), null, 10);
+
+        assertTrue(result.getContent().isEmpty());
+        assertFalse(result.isHasNext());
+        verifyNoInteractions(transferRepository);
+    }
+
+    @Test
+    void getUserTransfers_withInvalidCursor_throwsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> transferService.getUserTransfers(1L, new TransferFilterDto(), "not-a-cursor", 10));
+        verifyNoInteractions(transferRepository);
+    }
+
+    @Test
+    void exportUserTransfers_asCsv_writesHeaderAndEscapedRows() throws Exception {
+        LocalDateTime date = LocalDateTime.of(2024, 5, 1, 12, 30);
+        TransferRepository.TransferHistoryView withComma = historyView(2L, date, "rent, \"May\" payment");
+        when(withComma.getAmount()).thenReturn(new BigDecimal("10.50"));
+        List<TransferRepository.TransferHistoryView> rows = List.of(withComma, historyView(1L, date));
+        when(cardRepository.findIdsByUserId(1L)).thenReturn(List.of(1L, 2L));
+        when(transferRepository.findCardsTransfersFirstPage(List.of(1L, 2L), 1000)).thenReturn(rows);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        transferService.exportUserTransfers(1L, new TransferFilterDto(), TransferExportFormat.CSV, out);
+
+        assertEquals("""
+                id,fromCardId,toCardId,amount,transferDate,status,description
+                2,1,2,10.50,2024-05-01T12:30,SUCCESS,"rent, ""May"" payment"
+                1,1,2,10,2024-05-01T12:30,SUCCESS,
+                """, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportUserTransfers_asCsv_neutralizesSpreadsheetFormulas() throws Exception {
+        LocalDateTime date = LocalDateTime.of(2024, 5, 1, 12, 30);
+        List<TransferRepository.TransferHistoryView> rows = List.of(
+                historyView(4L, date, "=HYPERLINK(\"http://evil\",\"x\")"),
+                historyView(3L, date, "+1"),
+                historyView(2L, date, "@SUM(A1)"),
+                historyView(1L, date, "\t-1"));
+        when(cardRepository.findIdsByUserId(1L)).thenReturn(List.of(1L, 2L));
+        when(transferRepository.findCardsTransfersFirstPage(List.of(1L, 2L), 1000)).thenReturn(rows);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        transferService.exportUserTransfers(1L, new TransferFilterDto(), TransferExportFormat.CSV, out);
+
+        assertEquals("""
+                id,fromCardId,toCardId,amount,transferDate,status,description
+                4,1,2,10,2024-05-01T12:30,SUCCESS,"'=HYPERLINK(""http://evil"",""x"")"
+                3,1,2,10,2024-05-01T12:30,SUCCESS,"'+1"
+                2,1,2,10,2024-05-01T12:30,SUCCESS,"'@SUM(A1)"
+                1,1,2,10,2024-05-01T12:30,SUCCESS,"'\t-1"
+                """, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportAllTransfers_asNdjson_writesOneObjectPerLine() throws Exception {
+        LocalDateTime date = LocalDateTime.of(2024, 5, 1, 12, 30);
+        when(transferRepository.streamAllTransfers(7L, null, null))
+                .thenReturn(Stream.of(historyRow(2L, date), historyRow(1L, date)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        transferService.exportAllTransfers(TransferFilterDto.builder().cardId(7L).build(),
+                TransferExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":2,"));
+        assertTrue(lines[1].startsWith("{\"id\":1,"));
     }
 
     @Test
@@ -245,10 +455,287 @@ class TransferServiceTest {
 
         Card fromCard = createTestCard(1L, userId, Card.CardStatus.ACTIVE);
 
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.empty());
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(fromCard));
 
         assertThrows(NotFoundException.class,
                 () -> transferService.transferBetweenCards(request, userId));
     }
-}
\ No newline at end of file
+
+    @Test
+    void transferBetweenCards_locksCardsInAscendingIdOrder() {
+        Long userId = 1L;
+        TransferRequestDto request = TransferRequestDto.builder()
+                .fromCardId(2L)
+                .toCardId(1L)
+                .amount(BigDecimal.valueOf(100))
+                .build();
+
+        Card fromCard = createTestCard(2L, userId, Card.CardStatus.ACTIVE);
+        Card toCard = createTestCard(1L, 2L, Card.CardStatus.ACTIVE);
+
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(toCard, fromCard));
+        when(cardRepository.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        transferService.transferBetweenCards(request, userId);
+
+        verify(cardRepository).findAllByIdInForUpdate(List.of(1L, 2L));
+        verify(cardRepository, never()).findById(any());
+        assertEquals(BigDecimal.valueOf(400), fromCard.getBalance());
+        assertEquals(BigDecimal.valueOf(600), toCard.getBalance());
+    }
+
+    @Test
+    void transferBetweenCards_withNewIdempotencyKey_executesTransferOnce() {
+        Long userId = 1L;
+        TransferRequestDto request = TransferRequestDto.builder()
+                .fromCardId(1L)
+                .toCardId(2L)
+                .amount(BigDecimal.valueOf(100))
+                .build();
+
+        Card fromCard = createTestCard(1L, userId, Card.CardStatus.ACTIVE);
+        Card toCard = createTestCard(2L, 2L, Card.CardStatus.ACTIVE);
+
+        when(idempotencyRepository.findWithTransfer(userId, "key-1")).thenReturn(Optional.empty());
+        when(idempotencyRepository.saveAndFlush(any(TransferIdempotency.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(fromCard, toCard));
+        when(cardRepository.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> {
+            Transfer transfer = invocation.getArgument(0);
+            transfer.setId(10L);
+            return transfer;
+        });
+
+        TransferResponseDto first = transferService.transferBetweenCards(request, userId, "key-1");
+        TransferResponseDto replay = transferService.transferBetweenCards(request, userId, "key-1");
+
+        assertEquals(10L, first.getId());
+        assertSame(first, replay);
+        assertEquals(BigDecimal.valueOf(400), fromCard.getBalance());
+        verify(transferRepository, times(1)).save(any(Transfer.class));
+        verify(idempotencyRepository, times(1)).findWithTransfer(userId, "key-1");
+    }
+
+    @Test
+    void transferBetweenCards_withTooLongIdempotencyKey_throwsBeforeDatabaseAccess() {
+        TransferRequestDto request = TransferRequestDto.builder()
+                .fromCardId(1L)
+                .toCardId(2L)
+                .amount(BigDecimal.valueOf(100))
+                .build();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> transferService.transferBetweenCards(request, 1L, "k".repeat(256)));
+
+        verifyNoInteractions(idempotencyRepository, cardRepository, transferRepository, transactionManager);
+    }
+
+    @Test
+    void transferBetweenCards_withBlankIdempotencyKey_throwsBeforeDatabaseAccess() {
+        TransferRequestDto request = TransferRequestDto.builder()
+                .fromCardId(1L)
+                .toCardId(2L)
+                .amount(BigDecimal.valueOf(100))
+                .build();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> transferService.transferBetweenCards(request, 1L, "   "));
+
+        verifyNoInteractions(idempotencyRepository, cardRepository, transferRepository, transactionManager);
+    }
+
+    @Test
+    void transferBetweenCards_withStoredIdempotencyKey_replaysWithoutTransfer() {
+        Long userId = 1L;
+        TransferRequestDto request = TransferRequestDto.builder()
+                .fromCardId(1L)
+                .toCardId(2L)
+                .amount(BigDecimal.valueOf(100))
+                .build();
+
+        TransferIdempotency stored = TransferIdempotency.builder()
+                .userId(userId)
+                .idempotencyKey("key-1")
+                .requestHash(hashOf(request))
+                .transfer(Transfer.builder()
+                        .id(7L)
+                        .fromCard(createTestCard(1L, userId, Card.CardStatus.ACTIVE))
+                        .toCard(createTestCard(2L, 2L, Card.CardStatus.ACTIVE))
+                        .amount(BigDecimal.valueOf(100))
+                        .transferDate(LocalDateTime.now())
+                        .status(Transfer.TransferStatus.SUCCESS)
+                        .build())
+                .build();
+        when(idempotencyRepository.findWithTransfer(userId, "key-1")).thenReturn(Optional.of(stored));
+
+        TransferResponseDto result = transferService.transferBetweenCards(request, userId, "key-1");
+
+        assertEquals(7L, result.getId());
+        verify(cardRepository, never()).findAllByIdInForUpdate(any());
+        verify(transferRepository, never()).save(any(Transfer.class));
+    }
+
+    @Test
+    void transferBetweenCards_withReusedKeyAndDifferentRequest_throwsConflict() {
+        Long userId = 1L;
+        TransferRequestDto original = TransferRequestDto.builder()
+                .fromCardId(1L)
+                .toCardId(2L)
+                .amount(BigDecimal.valueOf(100))
+                .build();
+        TransferRequestDto changed = TransferRequestDto.builder()
+                .fromCardId(1L)
+                .toCardId(2L)
+                .amount(BigDecimal.valueOf(200))
+                .build();
+
+        TransferIdempotency stored = TransferIdempotency.builder()
+                .userId(userId)
+                .idempotencyKey("key-1")
+                .requestHash(hashOf(original))
+                .build();
+        when(idempotencyRepository.findWithTransfer(userId, "key-1")).thenReturn(Optional.of(stored));
+
+        assertThrows(ConflictException.class,
+                () -> transferService.transferBetweenCards(changed, userId, "key-1"));
+        verify(transferRepository, never()).save(any(Transfer.class));
+    }
+
+    private String hashOf(TransferRequestDto request) {
+        return ReflectionTestUtils.invokeMethod(transferService, "hashRequest", request);
+    }
+
+    private TransferRequestDto batchItem(Long fromCardId, Long toCardId, long amount) {
+        return TransferRequestDto.builder()
+                .fromCardId(fromCardId)
+                .toCardId(toCardId)
+                .amount(BigDecimal.valueOf(amount))
+                .build();
+    }
+
+    private void stubTransferInserts() {
+        lenient().when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class),
+                any(BatchPreparedStatementSetter.class), any(KeyHolder.class)))
+                .thenAnswer(invocation -> {
+                    BatchPreparedStatementSetter setter = invocation.getArgument(1);
+                    KeyHolder keyHolder = invocation.getArgument(2);
+                    for (int i = 0; i < setter.getBatchSize(); i++) {
+                        keyHolder.getKeyList().add(Map.of("id", 100L + i));
+                    }
+                    return new int[setter.getBatchSize()];
+                });
+    }
+
+    @Test
+    void transferBatch_withValidItems_locksCardsOnceAndAppliesNetDeltas() {
+        List<Card> cards = List.of(
+                createTestCard(1L, 1L, Card.CardStatus.ACTIVE),
+                createTestCard(2L, 1L, Card.CardStatus.ACTIVE),
+                createTestCard(3L, 2L, Card.CardStatus.ACTIVE));
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L, 3L))).thenReturn(cards);
+        stubTransferInserts();
+
+        List<TransferBatchItemResultDto> results = transferService.transferBatch(List.of(
+                batchItem(1L, 2L, 100),
+                batchItem(2L, 3L, 50),
+                batchItem(1L, 3L, 20)), 1L);
+
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(r -> "SUCCESS".equals(r.getStatus())));
+        assertEquals(List.of(100L, 101L, 102L), results.stream().map(TransferBatchItemResultDto::getTransferId).toList());
+
+        verify(cardRepository, times(1)).findAllByIdInForUpdate(anyList());
+        ArgumentCaptor<List<Object[]>> deltas = ArgumentCaptor.captor();
+        verify(jdbcTemplate).batchUpdate(anyString(), deltas.capture());
+        assertArrayEquals(new Object[]{BigDecimal.valueOf(-120), 1L}, deltas.getValue().get(0));
+        assertArrayEquals(new Object[]{BigDecimal.valueOf(50), 2L}, deltas.getValue().get(1));
+        assertArrayEquals(new Object[]{BigDecimal.valueOf(70), 3L}, deltas.getValue().get(2));
+        InOrder inOrder = inOrder(jdbcTemplate, entityManager);
+        inOrder.verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+        inOrder.verify(entityManager, times(3)).detach(any(Card.class));
+        cards.forEach(card -> verify(entityManager).detach(card));
+        verify(cardRepository, never()).save(any(Card.class));
+        verify(transferRepository, never()).save(any(Transfer.class));
+        ArgumentCaptor<CardBalanceChangedEvent> event = ArgumentCaptor.forClass(CardBalanceChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(List.of(1L, 2L, 3L), event.getValue().getCardIds());
+        assertEquals(1, meterRegistry.timer("transfer.execute", "mode", "batch", "outcome", "success").count());
+        assertEquals(3.0, meterRegistry.counter("transfer.batch.items", "outcome", "success").count());
+    }
+
+    @Test
+    void transferBatch_withFailingItems_reportsErrorsAndSkipsThem() {
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L, 3L, 4L))).thenReturn(List.of(
+                createTestCard(1L, 1L, Card.CardStatus.ACTIVE),
+                createTestCard(2L, 1L, Card.CardStatus.ACTIVE),
+                createTestCard(3L, 2L, Card.CardStatus.BLOCKED)));
+        stubTransferInserts();
+
+        List<TransferBatchItemResultDto> results = transferService.transferBatch(List.of(
+                batchItem(1L, 2L, 400),
+                batchItem(1L, 2L, 200),
+                batchItem(1L, 3L, 10),
+                batchItem(3L, 1L, 10),
+                batchItem(1L, 4L, 10)), 1L);
+
+        assertEquals("SUCCESS", results.get(0).getStatus());
+        assertEquals(100L, results.get(0).getTransferId());
+        assertEquals("Insufficient funds", results.get(1).getError());
+        assertEquals("Cards must be active for transfer", results.get(2).getError());
+        assertEquals("Card does not belong to user", results.get(3).getError());
+        assertEquals("To card not found", results.get(4).getError());
+        assertTrue(results.subList(1, 5).stream()
+                .allMatch(r -> "FAILED".equals(r.getStatus()) && r.getTransferId() == null));
+        assertEquals(1, meterRegistry.timer("transfer.execute", "mode", "batch", "outcome", "partial").count());
+        assertEquals(1.0, meterRegistry.counter("transfer.batch.items", "outcome", "success").count());
+        assertEquals(4.0, meterRegistry.counter("transfer.batch.items", "outcome", "failed").count());
+    }
+
+    @Test
+    void transferBatch_withAllItemsFailed_writesNothing() {
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(
+                createTestCard(1L, 1L, Card.CardStatus.ACTIVE),
+                createTestCard(2L, 1L, Card.CardStatus.ACTIVE)));
+
+        List<TransferBatchItemResultDto> results =
+                transferService.transferBatch(List.of(batchItem(1L, 2L, 1000)), 1L);
+
+        assertEquals("FAILED", results.get(0).getStatus());
+        verifyNoInteractions(jdbcTemplate);
+        verifyNoInteractions(eventPublisher);
+        assertEquals(1, meterRegistry.timer("transfer.execute", "mode", "batch", "outcome", "failed").count());
+    }
+
+    @Test
+    void transferBatch_withEnabledRecording_writesBatchEvent() throws Exception {
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(
+                createTestCard(1L, 1L, Card.CardStatus.ACTIVE),
+                createTestCard(2L, 1L, Card.CardStatus.ACTIVE)));
+        stubTransferInserts();
+
+        Path file = Files.createTempFile("transfer-batch", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(TransferBatchEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+
+            transferService.transferBatch(List.of(batchItem(1L, 2L, 100), batchItem(1L, 2L, 1000)), 1L);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("bankcards.TransferBatch"))
+                .toList();
+        Files.delete(file);
+
+        assertEquals(1, events.size());
+        assertEquals(1L, events.get(0).getLong("userId"));
+        assertEquals(2, events.get(0).getInt("items"));
+        assertEquals(1, events.get(0).getInt("succeeded"));
+        assertEquals(1, events.get(0).getInt("failed"));
+        assertEquals("partial", events.get(0).getString("outcome"));
+    }
+}
@@ -7,11 +7,14 @@ import com.gshelgaas.bankcards.exception.ConflictException;
 import com.gshelgaas.bankcards.exception.NotFoundException;
 import com.gshelgaas.bankcards.exception.UnauthorizedException;
 import com.gshelgaas.bankcards.repository.UserRepository;
+import com.gshelgaas.bankcards.security.AuthenticatedUser;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -33,6 +36,9 @@ class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @Mock
     private SecurityContext securityContext;
 
@@ -72,6 +78,11 @@ class UserServiceTest {
         assertEquals("test@test.ru", result.getEmail());
         assertEquals("ROLE_USER", result.getRole());
         verify(userRepository).save(any(User.class));
+
+        ArgumentCaptor<UserChangedEvent> event = ArgumentCaptor.forClass(UserChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(1L, event.getValue().getUserId());
+        assertEquals("test@test.ru", event.getValue().getEmail());
     }
 
     @Test
@@ -87,6 +98,7 @@ class UserServiceTest {
 
         assertThrows(ConflictException.class, () -> userService.createUser(requestDto));
         verify(userRepository, never()).save(any(User.class));
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -165,6 +177,7 @@ class UserServiceTest {
         userService.deleteUser(userId);
 
         verify(userRepository).deleteById(userId);
+        verify(eventPublisher).publishEvent(any(UserChangedEvent.class));
     }
 
     @Test
@@ -174,30 +187,24 @@ class UserServiceTest {
 
         assertThrows(NotFoundException.class, () -> userService.deleteUser(userId));
         verify(userRepository, never()).deleteById(userId);
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
-    void getCurrentUser_withAuthenticatedUser_returnsUser() {
-        String userEmail = "user@mail.ru";
-        User user = User.builder()
-                .id(1L)
-                .email(userEmail)
-                .firstName("Test")
-                .lastName("User")
-                .build();
+    void getCurrentUser_withAuthenticatedUser_returnsPrincipalWithoutQuery() {
+        AuthenticatedUser principal = new AuthenticatedUser(1L, "user@mail.ru", User.Role.ROLE_USER, null);
 
         when(securityContext.getAuthentication()).thenReturn(authentication);
         when(authentication.isAuthenticated()).thenReturn(true);
-        when(authentication.getName()).thenReturn(userEmail);
-        when(userRepository.findByEmail(userEmail)).thenReturn(Optional.of(user));
+        when(authentication.getPrincipal()).thenReturn(principal);
 
         SecurityContextHolder.setContext(securityContext);
 
-        User result = userService.getCurrentUser();
+        AuthenticatedUser result = userService.getCurrentUser();
 
-        assertNotNull(result);
-        assertEquals(userEmail, result.getEmail());
-        verify(userRepository).findByEmail(userEmail);
+        assertSame(principal, result);
+        assertEquals(1L, result.getId());
+        verifyNoInteractions(userRepository);
     }
 
     @Test
@@ -206,22 +213,19 @@ class UserServiceTest {
         SecurityContextHolder.setContext(securityContext);
 
         assertThrows(UnauthorizedException.class, () -> userService.getCurrentUser());
-        verify(userRepository, never()).findByEmail(anyString());
+        verifyNoInteractions(userRepository);
     }
 
     @Test
-    void getCurrentUser_withNonExistingEmail_throwsException() {
-        String userEmail = "notfound@test.ru";
-
+    void getCurrentUser_withAnonymousPrincipal_throwsException() {
         when(securityContext.getAuthentication()).thenReturn(authentication);
         when(authentication.isAuthenticated()).thenReturn(true);
-        when(authentication.getName()).thenReturn(userEmail);
-        when(userRepository.findByEmail(userEmail)).thenReturn(Optional.empty());
+        when(authentication.getPrincipal()).thenReturn("anonymousUser");
 
         SecurityContextHolder.setContext(securityContext);
 
-        assertThrows(NotFoundException.class, () -> userService.getCurrentUser());
-        verify(userRepository).findByEmail(userEmail);
+        assertThrows(UnauthorizedException.class, () -> userService.getCurrentUser());
+        verifyNoInteractions(userRepository);
     }
 
     @Test
@@ -0,0 +1,71 @@
+package com.gshelgaas.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void mightContain_withAddedValues_returnsTrue() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        String[] values = IntStream.range(0, 10_000)
+                .mapToObj(i -> UUID.randomUUID().toString())
+                .toArray(String[]::new);
+
+        for (String value : values) {
+            filter.put(value);
+        }
+
+        for (String value : values) {
+            assertTrue(filter.mightContain(value));
+        }
+    }
+
+    @Test
+    void mightContain_withOtherValues_keepsFalsePositiveRateNearConfigured() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> filter.put(UUID.randomUUID().toString()));
+
+        long falsePositives = IntStream.range(0, 100_000)
+                .filter(i -> filter.mightContain(UUID.randomUUID().toString()))
+                .count();
+
+        assertTrue(falsePositives < 2_000, "False positives: " + falsePositives);
+    }
+
+    @Test
+    void mightContain_withEmptyFilter_returnsFalse() {
+        BloomFilter filter = BloomFilter.create(100, 0.01);
+
+        assertFalse(filter.mightContain("jti"));
+    }
+
+    @Test
+    void put_fromConcurrentThreads_losesNoValues() throws Exception {
+        BloomFilter filter = BloomFilter.create(50_000, 0.01);
+
+        Thread[] threads = IntStream.range(0, 8)
+                .mapToObj(t -> Thread.ofVirtual().start(() ->
+                        IntStream.range(0, 5_000).forEach(i -> filter.put(t + "-" + i))))
+                .toArray(Thread[]::new);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int t = 0; t < 8; t++) {
+            for (int i = 0; i < 5_000; i++) {
+                assertTrue(filter.mightContain(t + "-" + i));
+            }
+        }
+    }
+
+    @Test
+    void create_withInvalidFalsePositiveRate_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(100, 1));
+    }
+}
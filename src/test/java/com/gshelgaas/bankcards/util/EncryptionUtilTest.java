@@ -1,19 +1,29 @@
 package com.gshelgaas.bankcards.util;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(MockitoExtension.class)
 class EncryptionUtilTest {
 
+    private static final String SECRET = "myTestEncryptionKey1234567890123456";
+    private static final String HASH_SECRET = "myTestHashKey1234567890123456";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @Test
     void encryptAndDecrypt_withValidData_returnsOriginalData() {
-        EncryptionUtil encryptionUtil = new EncryptionUtil();
-        ReflectionTestUtils.setField(encryptionUtil, "secret", "myTestEncryptionKey1234567890123456");
+        EncryptionUtil encryptionUtil = new EncryptionUtil(SECRET, HASH_SECRET, meterRegistry);
 
         String originalData = "4111111111111111";
 
@@ -27,8 +37,7 @@ class EncryptionUtilTest {
 
     @Test
     void encrypt_differentInputs_produceDifferentOutputs() {
-        EncryptionUtil encryptionUtil = new EncryptionUtil();
-        ReflectionTestUtils.setField(encryptionUtil, "secret", "myTestEncryptionKey1234567890123456");
+        EncryptionUtil encryptionUtil = new EncryptionUtil(SECRET, HASH_SECRET, meterRegistry);
 
         String data1 = "4111111111111111";
         String data2 = "4222222222222222";
@@ -41,24 +50,21 @@ class EncryptionUtilTest {
 
     @Test
     void encrypt_nullInput_throwsException() {
-        EncryptionUtil encryptionUtil = new EncryptionUtil();
-        ReflectionTestUtils.setField(encryptionUtil, "secret", "myTestEncryptionKey1234567890123456");
+        EncryptionUtil encryptionUtil = new EncryptionUtil(SECRET, HASH_SECRET, meterRegistry);
 
         assertThrows(RuntimeException.class, () -> encryptionUtil.encrypt(null));
     }
 
     @Test
     void decrypt_nullInput_throwsException() {
-        EncryptionUtil encryptionUtil = new EncryptionUtil();
-        ReflectionTestUtils.setField(encryptionUtil, "secret", "myTestEncryptionKey1234567890123456");
+        EncryptionUtil encryptionUtil = new EncryptionUtil(SECRET, HASH_SECRET, meterRegistry);
 
         assertThrows(RuntimeException.class, () -> encryptionUtil.decrypt(null));
     }
 
     @Test
     void encrypt_emptyString_returnsEncrypted() {
-        EncryptionUtil encryptionUtil = new EncryptionUtil();
-        ReflectionTestUtils.setField(encryptionUtil, "secret", "myTestEncryptionKey1234567890123456");
+        EncryptionUtil encryptionUtil = new EncryptionUtil(SECRET, HASH_SECRET, meterRegistry);
 
         String encrypted = encryptionUtil.encrypt("");
         String decrypted = encryptionUtil.decrypt(encrypted);
@@ -66,4 +72,62 @@ class EncryptionUtilTest {
         assertNotNull(encrypted);
         assertEquals("", decrypted);
     }
-}
\ No newline at end of file
+
+    @Test
+    void hash_sameInput_isDeterministicAndHexEncoded() {
+        EncryptionUtil encryptionUtil = new EncryptionUtil(SECRET, HASH_SECRET, meterRegistry);
+
+        String hash1 = encryptionUtil.hash("4111111111111111");
+        String hash2 = encryptionUtil.hash("4111111111111111");
+
+        assertEquals(hash1, hash2);
+        assertEquals(64, hash1.length());
+        assertNotEquals(hash1, encryptionUtil.hash("4222222222222222"));
+    }
+
+    @Test
+    void hash_differentKeys_produceDifferentHashes() {
+        EncryptionUtil first = new EncryptionUtil(SECRET, HASH_SECRET, meterRegistry);
+        EncryptionUtil second = new EncryptionUtil(SECRET, "anotherHashKey1234567890123456", meterRegistry);
+
+        assertNotEquals(first.hash("4111111111111111"), second.hash("4111111111111111"));
+    }
+
+    @Test
+    void encryptAndDecrypt_concurrentCalls_reuseCiphersSafely() throws Exception {
+        EncryptionUtil encryptionUtil = new EncryptionUtil(SECRET, HASH_SECRET, meterRegistry);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Boolean>> results = IntStream.range(0, 1000)
+                    .mapToObj(i -> executor.submit(() -> {
+                        String cardNumber = String.format("4%015d", i);
+                        return cardNumber.equals(encryptionUtil.decrypt(encryptionUtil.encrypt(cardNumber)));
+                    }))
+                    .toList();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        }
+    }
+
+    @Test
+    void decrypt_afterFailedCall_keepsWorking() {
+        EncryptionUtil encryptionUtil = new EncryptionUtil(SECRET, HASH_SECRET, meterRegistry);
+
+        assertThrows(RuntimeException.class, () -> encryptionUtil.decrypt("bm90LWNpcGhlcnRleHQ="));
+        assertEquals("4111111111111111", encryptionUtil.decrypt(encryptionUtil.encrypt("4111111111111111")));
+    }
+
+    @Test
+    void encryptDecryptAndHash_recordOperationTimers() {
+        EncryptionUtil encryptionUtil = new EncryptionUtil(SECRET, HASH_SECRET, meterRegistry);
+
+        encryptionUtil.decrypt(encryptionUtil.encrypt("4111111111111111"));
+        encryptionUtil.hash("4111111111111111");
+        assertThrows(RuntimeException.class, () -> encryptionUtil.decrypt("bm90LWNpcGhlcnRleHQ="));
+
+        assertEquals(1, meterRegistry.timer("encryption.operation", "operation", "encrypt").count());
+        assertEquals(2, meterRegistry.timer("encryption.operation", "operation", "decrypt").count());
+        assertEquals(1, meterRegistry.timer("encryption.operation", "operation", "hash").count());
+    }
+}
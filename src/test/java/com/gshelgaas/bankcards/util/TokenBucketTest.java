@@ -0,0 +1,87 @@
+package com.gshelgaas.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    void tryAcquire_withinCapacity_allowsBurst() {
+        TokenBucket bucket = new TokenBucket(5, MINUTE);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(0));
+        }
+    }
+
+    @Test
+    void tryAcquire_overCapacity_returnsTimeUntilNextToken() {
+        TokenBucket bucket = new TokenBucket(5, MINUTE);
+        IntStream.range(0, 5).forEach(i -> bucket.tryAcquire(0));
+
+        assertEquals(MINUTE / 5, bucket.tryAcquire(0));
+        assertEquals(MINUTE / 5 - 1000, bucket.tryAcquire(1000));
+    }
+
+    @Test
+    void tryAcquire_afterRefill_allowsAgain() {
+        TokenBucket bucket = new TokenBucket(5, MINUTE);
+        IntStream.range(0, 5).forEach(i -> bucket.tryAcquire(0));
+
+        assertEquals(0, bucket.tryAcquire(MINUTE / 5));
+        assertTrue(bucket.tryAcquire(MINUTE / 5) > 0);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(2 * MINUTE));
+        }
+        assertTrue(bucket.tryAcquire(2 * MINUTE) > 0);
+    }
+
+    @Test
+    void tryAcquire_concurrently_neverExceedsCapacity() {
+        TokenBucket bucket = new TokenBucket(100, MINUTE);
+        AtomicInteger acquired = new AtomicInteger();
+
+        IntStream.range(0, 10_000).parallel()
+                .filter(i -> bucket.tryAcquire(0) == 0)
+                .forEach(i -> acquired.incrementAndGet());
+
+        assertEquals(100, acquired.get());
+    }
+
+    @Test
+    void refund_afterAcquire_returnsToken() {
+        TokenBucket bucket = new TokenBucket(5, MINUTE);
+        IntStream.range(0, 5).forEach(i -> bucket.tryAcquire(0));
+
+        bucket.refund(0);
+
+        assertEquals(0, bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(0) > 0);
+    }
+
+    @Test
+    void refund_fullBucket_doesNotExceedCapacity() {
+        TokenBucket bucket = new TokenBucket(5, MINUTE);
+
+        bucket.refund(0);
+        bucket.refund(0);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(0));
+        }
+        assertTrue(bucket.tryAcquire(0) > 0);
+    }
+
+    @Test
+    void constructor_withNonPositiveCapacity_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, MINUTE));
+    }
+}